@@ -7,10 +7,12 @@ import org.springframework.boot.web.server.ErrorPageRegistrar;
 import org.springframework.boot.web.server.ErrorPageRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import static aug.bueno.cloudstorage.controller.util.MessageWrapperUtil.FILE_NOT_FOUND_MSG;
 
 @SpringBootApplication
+@EnableScheduling
 public class CloudStorageApplication {
 
     public static void main(String[] args) {
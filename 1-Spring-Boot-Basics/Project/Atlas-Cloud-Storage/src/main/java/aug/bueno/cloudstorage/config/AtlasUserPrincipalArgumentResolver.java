@@ -0,0 +1,37 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.services.UserService;
+import org.springframework.core.MethodParameter;
+import org.springframework.security.authentication.InsufficientAuthenticationException;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/*
+ * Lets handler methods take the current AtlasUserPrincipal as a plain argument
+ */
+public class AtlasUserPrincipalArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private UserService userService;
+
+    public AtlasUserPrincipalArgumentResolver(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean supportsParameter(final MethodParameter parameter) {
+        return AtlasUserPrincipal.class.equals(parameter.getParameterType());
+    }
+
+    @Override
+    public Object resolveArgument(final MethodParameter parameter, final ModelAndViewContainer mavContainer,
+                                  final NativeWebRequest webRequest, final WebDataBinderFactory binderFactory) {
+
+        // An authentication whose user no longer exists is treated like no authentication at all
+        return userService.findPrincipal(SecurityContextHolder.getContext().getAuthentication())
+                .orElseThrow(() -> new InsufficientAuthenticationException("No user for the current authentication"));
+    }
+}
@@ -0,0 +1,105 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.dto.ConnectionPoolMetricsDTO;
+import aug.bueno.cloudstorage.services.util.LatencyHistogram;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static aug.bueno.cloudstorage.config.StatementMetricsInterceptor.toMillis;
+
+/*
+ * How long requests wait for a connection of the Hikari pool and hold it, and the pool gauges. A pool that is too
+ * small shows as threads awaiting a connection and a high acquire time long before connection timeouts.
+ * Nothing is tracked when the data source isn't a Hikari pool.
+ */
+@Component
+public class ConnectionPoolMetricsTracker implements MetricsTrackerFactory {
+
+    private Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolMetricsTracker.class);
+
+    private HikariDataSource hikariDataSource;
+
+    private final LatencyHistogram acquire = new LatencyHistogram();
+    private final LatencyHistogram usage = new LatencyHistogram();
+    private final LongAdder timeouts = new LongAdder();
+
+    public ConnectionPoolMetricsTracker(DataSource dataSource) {
+
+        if (dataSource instanceof HikariDataSource) {
+            this.hikariDataSource = (HikariDataSource) dataSource;
+            // Hikari also takes it once the pool is running
+            this.hikariDataSource.setMetricsTrackerFactory(this);
+        } else {
+            LOGGER.info("No connection pool metrics, the data source is a {}", dataSource.getClass().getName());
+        }
+    }
+
+    @Override
+    public IMetricsTracker create(final String poolName, final PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(final long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(final long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    public Optional<ConnectionPoolMetricsDTO> getConnectionPoolMetrics() {
+
+        if (Objects.isNull(hikariDataSource)) {
+            return Optional.empty();
+        }
+
+        final ConnectionPoolMetricsDTO.ConnectionPoolMetricsDTOBuilder metrics = ConnectionPoolMetricsDTO.builder()
+                .poolName(hikariDataSource.getPoolName())
+                .maximumPoolSize(hikariDataSource.getMaximumPoolSize())
+                .minimumIdle(hikariDataSource.getMinimumIdle())
+                .acquisitions(acquire.getCount())
+                .acquireMeanMillis(toMillis(acquire.getMeanNanos()))
+                .acquireP99Millis(toMillis(acquire.getPercentileNanos(0.99)))
+                .acquireMaxMillis(toMillis(acquire.getMaxNanos()))
+                .usageMeanMillis(toMillis(usage.getMeanNanos()))
+                .usageP99Millis(toMillis(usage.getPercentileNanos(0.99)))
+                .usageMaxMillis(toMillis(usage.getMaxNanos()))
+                .timeouts(timeouts.sum());
+
+        // Null until the pool has started
+        final HikariPoolMXBean pool = hikariDataSource.getHikariPoolMXBean();
+
+        if (Objects.nonNull(pool)) {
+            metrics.activeConnections(pool.getActiveConnections())
+                    .idleConnections(pool.getIdleConnections())
+                    .totalConnections(pool.getTotalConnections())
+                    .threadsAwaitingConnection(pool.getThreadsAwaitingConnection());
+        }
+        return Optional.of(metrics.build());
+    }
+
+    public void reset() {
+        acquire.reset();
+        usage.reset();
+        timeouts.reset();
+    }
+}
@@ -0,0 +1,41 @@
+package aug.bueno.cloudstorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class CredentialMigrationConfig {
+
+    /*
+     * Runs the migration itself, one at a time: a second start while one runs is rejected
+     */
+    @Bean
+    public ThreadPoolTaskExecutor credentialMigrationCoordinator() {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("credential-migration-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+
+    /*
+     * Re-encrypts the slices of a batch. A full queue makes the coordinator run the slice itself, which slows the
+     * migration down instead of failing it
+     */
+    @Bean
+    public ThreadPoolTaskExecutor credentialMigrationExecutor(@Value("${atlas.security.credential-migration.threads:2}") int threads) {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(threads);
+        executor.setThreadNamePrefix("credential-migration-worker-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,28 @@
+package aug.bueno.cloudstorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class FileProcessingConfig {
+
+    /*
+     * Fixed pool with a bounded queue. When the queue is full the task is rejected instead of run by the caller,
+     * the file stays PENDING and the sweep of FileProcessingService submits it again later
+     */
+    @Bean
+    public ThreadPoolTaskExecutor fileProcessingExecutor(@Value("${atlas.processing.threads:2}") int threads,
+                                                         @Value("${atlas.processing.queue-capacity:100}") int queueCapacity) {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("file-processing-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
@@ -0,0 +1,29 @@
+package aug.bueno.cloudstorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class HomePageConfig {
+
+    /*
+     * Runs the queries of the home page side by side, see HomePageService. They mostly wait on the database, so more
+     * threads than cores. When the pool and its queue are full the request thread runs the query itself: the page gets
+     * slower rather than failing
+     */
+    @Bean
+    public ThreadPoolTaskExecutor homePageExecutor(@Value("${atlas.home.threads:8}") int threads,
+                                                   @Value("${atlas.home.queue-capacity:64}") int queueCapacity) {
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("home-page-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+}
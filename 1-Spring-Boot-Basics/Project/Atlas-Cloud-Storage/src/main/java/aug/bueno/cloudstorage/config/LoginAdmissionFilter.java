@@ -0,0 +1,118 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.services.util.StripedTokenBuckets;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+import static aug.bueno.cloudstorage.controller.util.MessageWrapperUtil.LOGIN_THROTTLED_MSG;
+
+/*
+ * Admission control for the form login, ahead of AuthenticationService and its deliberately slow password hash.
+ * A login attempt takes a token from the bucket of its client IP and of its user name, and a permit to run at all;
+ * without any of them it is answered 429 straight away instead of waiting, so a burst of bad logins can't tie up the
+ * request threads the rest of the application needs.
+ *
+ * The IP is the remote address of the connection, a proxy in front must be configured to pass the client one.
+ */
+@Component
+public class LoginAdmissionFilter extends OncePerRequestFilter {
+
+    private static final RequestMatcher LOGIN = new AntPathRequestMatcher("/login", "POST");
+
+    private Logger LOGGER = LoggerFactory.getLogger(LoginAdmissionFilter.class);
+
+    private StripedTokenBuckets ipBuckets;
+    private StripedTokenBuckets userNameBuckets;
+    private Semaphore authenticationPermits;
+
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder saturated = new LongAdder();
+
+    public LoginAdmissionFilter(@Value("${atlas.security.login-admission.stripes:4096}") int stripes,
+                                @Value("${atlas.security.login-admission.ip.capacity:30}") int ipCapacity,
+                                @Value("${atlas.security.login-admission.ip.refill-period:2s}") Duration ipRefillPeriod,
+                                @Value("${atlas.security.login-admission.username.capacity:10}") int userNameCapacity,
+                                @Value("${atlas.security.login-admission.username.refill-period:6s}") Duration userNameRefillPeriod,
+                                @Value("${atlas.security.login-admission.max-concurrent:0}") int maxConcurrent) {
+        this.ipBuckets = new StripedTokenBuckets(stripes, ipCapacity, ipRefillPeriod);
+        this.userNameBuckets = new StripedTokenBuckets(stripes, userNameCapacity, userNameRefillPeriod);
+        // Password hashing is CPU bound, more logins at once than cores only makes each one slower
+        this.authenticationPermits = new Semaphore(maxConcurrent > 0 ? maxConcurrent : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !LOGIN.matches(request);
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+
+        if (!ipBuckets.tryAcquire(request.getRemoteAddr())) {
+            this.reject(response, ipBuckets.getRefillPeriod(), throttled);
+            return;
+        }
+
+        // Same normalisation for every spelling of a user name, so varying the case doesn't get fresh buckets
+        final String userName = Objects.toString(request.getParameter("username"), "").trim().toLowerCase(Locale.ROOT);
+
+        if (!userNameBuckets.tryAcquire(userName)) {
+            this.reject(response, userNameBuckets.getRefillPeriod(), throttled);
+            return;
+        }
+
+        if (!authenticationPermits.tryAcquire()) {
+            this.reject(response, Duration.ofSeconds(1), saturated);
+            return;
+        }
+
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            authenticationPermits.release();
+        }
+    }
+
+    /**
+     * Login attempts turned away because their IP or user name ran out of tokens.
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * Login attempts turned away because the maximum of concurrent logins was reached.
+     */
+    public long getSaturatedCount() {
+        return saturated.sum();
+    }
+
+    private void reject(final HttpServletResponse response, final Duration retryAfter, final LongAdder counter)
+            throws IOException {
+
+        counter.increment();
+        LOGGER.debug("Login attempt rejected, retry after {}", retryAfter);
+
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfter.toMillis() + 999) / 1000)));
+        response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), LOGIN_THROTTLED_MSG);
+    }
+}
@@ -1,22 +1,60 @@
 package aug.bueno.cloudstorage.config;
 
+import aug.bueno.cloudstorage.services.UserService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistration;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.VersionResourceResolver;
+
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 public class MvcConfig implements WebMvcConfigurer {
 
+    private UserService userService;
+    private boolean contentVersioned;
+    private Duration cacheMaxAge;
+
+    public MvcConfig(UserService userService,
+                     @Value("${spring.web.resources.chain.strategy.content.enabled:false}") boolean contentVersioned,
+                     @Value("${spring.web.resources.cache.cachecontrol.max-age:0s}") Duration cacheMaxAge) {
+        this.userService = userService;
+        this.contentVersioned = contentVersioned;
+        this.cacheMaxAge = cacheMaxAge;
+    }
+
     public void addViewControllers(ViewControllerRegistry registry) {
         registry.addViewController("/login").setViewName("login");
         registry.addViewController("/result").setViewName("result");
     }
 
+    /*
+     * The @EnableWebMvc of GlobalExceptionHandler turns the resource handling of Spring Boot off, its properties are
+     * applied here. With content versioning, @{/css/...} links are rewritten to a URL with the hash of the file, which
+     * can then be cached for as long as cacheMaxAge: a changed file gets another URL.
+     */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry
+        final ResourceHandlerRegistration registration = registry
                 .addResourceHandler("/**/*.css", "/**/*.js")
                 .addResourceLocations("classpath:/static/");
+
+        if (contentVersioned) {
+            registration
+                    .setCacheControl(CacheControl.maxAge(cacheMaxAge).cachePublic())
+                    .resourceChain(true)
+                    .addResolver(new VersionResourceResolver().addContentVersionStrategy("/**"));
+        }
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(new AtlasUserPrincipalArgumentResolver(userService));
     }
-}
\ No newline at end of file
+}
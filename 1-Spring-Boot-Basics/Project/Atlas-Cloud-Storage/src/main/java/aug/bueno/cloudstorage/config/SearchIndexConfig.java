@@ -0,0 +1,28 @@
+package aug.bueno.cloudstorage.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class SearchIndexConfig {
+
+    /*
+     * Builds the search indexes at startup, one slice of the users per thread, see SearchIndexService
+     */
+    @Bean
+    public ThreadPoolTaskExecutor searchIndexExecutor(@Value("${atlas.search.threads:0}") int threads) {
+        final int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(poolSize);
+        executor.setThreadNamePrefix("search-index-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
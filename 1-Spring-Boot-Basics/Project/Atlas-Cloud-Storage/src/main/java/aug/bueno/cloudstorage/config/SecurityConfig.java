@@ -2,14 +2,30 @@
 package aug.bueno.cloudstorage.config;
 
 import aug.bueno.cloudstorage.services.AuthenticationService;
+import aug.bueno.cloudstorage.services.QuotaService;
+import aug.bueno.cloudstorage.services.SessionTokenService;
+import aug.bueno.cloudstorage.services.UserService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.authentication.builders.AuthenticationManagerBuilder;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.http.SessionCreationPolicy;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
+import org.springframework.security.web.csrf.CookieCsrfTokenRepository;
+import org.springframework.security.web.csrf.CsrfFilter;
+import org.springframework.security.web.savedrequest.NullRequestCache;
 
 /*
  * - [X] You have to restrict unauthorized users from accessing pages other than the login and signup pages
+ *
+ * With atlas.security.session.stateless nothing is kept in an HTTP session: the login is a signed cookie (see
+ * SessionTokenContextRepository), the CSRF token a cookie too, and there is no saved request to go back to after the login.
+ * Any node can then serve any request, there is no need for sticky sessions or session replication.
  */
 
 
@@ -18,9 +34,31 @@ import org.springframework.security.config.annotation.web.configuration.WebSecur
 public class SecurityConfig extends WebSecurityConfigurerAdapter {
 
     private AuthenticationService authenticationService;
+    private QuotaService quotaService;
+    private UserService userService;
+    private LoginAdmissionFilter loginAdmissionFilter;
+    private SessionTokenService sessionTokenService;
+    private boolean stateless;
 
-    public SecurityConfig(AuthenticationService authenticationService) {
+    public SecurityConfig(AuthenticationService authenticationService, QuotaService quotaService, UserService userService,
+                          LoginAdmissionFilter loginAdmissionFilter, SessionTokenService sessionTokenService,
+                          @Value("${atlas.security.session.stateless:false}") boolean stateless) {
         this.authenticationService = authenticationService;
+        this.quotaService = quotaService;
+        this.userService = userService;
+        this.loginAdmissionFilter = loginAdmissionFilter;
+        this.sessionTokenService = sessionTokenService;
+        this.stateless = stateless;
+    }
+
+    /*
+     * The admission filter is a bean so its counters can be read, it must only run in the security chain
+     */
+    @Bean
+    public FilterRegistrationBean<LoginAdmissionFilter> loginAdmissionFilterRegistration() {
+        final FilterRegistrationBean<LoginAdmissionFilter> registration = new FilterRegistrationBean<>(loginAdmissionFilter);
+        registration.setEnabled(false);
+        return registration;
     }
 
     @Override
@@ -32,8 +70,12 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
     protected void configure(HttpSecurity http) throws Exception {
         http.authorizeRequests()
                 .antMatchers("/signup", "/css/**", "/js/**").permitAll()
+                .antMatchers("/admin/**").hasRole("ADMIN")
                 .anyRequest().authenticated();
 
+        http.addFilterBefore(new UploadQuotaFilter(quotaService, userService), CsrfFilter.class);
+        http.addFilterBefore(loginAdmissionFilter, UsernamePasswordAuthenticationFilter.class);
+
         http.formLogin()
                 .defaultSuccessUrl("/home", true);
 
@@ -45,6 +87,30 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
                 .logoutUrl("/logout")
                 .logoutSuccessUrl("/login");
 
+        if (stateless) {
+            this.configureStateless(http);
+        }
+    }
+
+    private void configureStateless(HttpSecurity http) throws Exception {
+        final SessionTokenContextRepository sessionTokenContextRepository = new SessionTokenContextRepository(
+                sessionTokenService, userService, authenticationService, "/home");
+
+        // The failure handler would otherwise create a session to hold the exception, the page only needs ?error
+        final SimpleUrlAuthenticationFailureHandler failureHandler = new SimpleUrlAuthenticationFailureHandler("/login?error");
+        failureHandler.setAllowSessionCreation(false);
+
+        http.sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS);
+        http.csrf().csrfTokenRepository(new CookieCsrfTokenRepository());
+        http.requestCache().requestCache(new NullRequestCache());
+        http.securityContext().securityContextRepository(sessionTokenContextRepository);
+
+        http.formLogin()
+                .successHandler(sessionTokenContextRepository)
+                .failureHandler(failureHandler);
+
+        http.logout()
+                .addLogoutHandler(sessionTokenContextRepository);
     }
 }
 
@@ -0,0 +1,128 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.dto.SessionTokenDTO;
+import aug.bueno.cloudstorage.services.AuthenticationService;
+import aug.bueno.cloudstorage.services.SessionTokenService;
+import aug.bueno.cloudstorage.services.UserService;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.authentication.AuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
+import org.springframework.security.web.authentication.logout.LogoutHandler;
+import org.springframework.security.web.context.HttpRequestResponseHolder;
+import org.springframework.security.web.context.SecurityContextRepository;
+import org.springframework.web.util.WebUtils;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+ * The stateless mode of SecurityConfig: the security context comes from a signed session token cookie instead of the
+ * HTTP session. A form login sets the cookie, every request with a valid one is authenticated from it, logout drops it.
+ * The principal is resolved through the user cache of UserService, so the token of a deleted user stops working.
+ *
+ * Nothing is saved at the end of a request, the response is committed by then; the cookie is written by the login
+ * itself, or renewed when the context is loaded.
+ */
+public class SessionTokenContextRepository implements SecurityContextRepository, AuthenticationSuccessHandler, LogoutHandler {
+
+    public static final String COOKIE_NAME = "ATLAS_SESSION";
+
+    private SessionTokenService sessionTokenService;
+    private UserService userService;
+    private AuthenticationService authenticationService;
+    private AuthenticationSuccessHandler redirectHandler;
+
+    public SessionTokenContextRepository(SessionTokenService sessionTokenService, UserService userService,
+                                         AuthenticationService authenticationService, String defaultSuccessUrl) {
+        this.sessionTokenService = sessionTokenService;
+        this.userService = userService;
+        this.authenticationService = authenticationService;
+
+        final SimpleUrlAuthenticationSuccessHandler successHandler = new SimpleUrlAuthenticationSuccessHandler(defaultSuccessUrl);
+        successHandler.setAlwaysUseDefaultTargetUrl(true);
+        this.redirectHandler = successHandler;
+    }
+
+    @Override
+    public SecurityContext loadContext(final HttpRequestResponseHolder requestResponseHolder) {
+        final HttpServletRequest request = requestResponseHolder.getRequest();
+        final HttpServletResponse response = requestResponseHolder.getResponse();
+        final SecurityContext context = SecurityContextHolder.createEmptyContext();
+
+        final Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+
+        if (Objects.isNull(cookie)) {
+            return context;
+        }
+
+        final Optional<SessionTokenDTO> sessionToken = sessionTokenService.verify(cookie.getValue());
+        final Optional<AtlasUserPrincipal> principal = sessionToken.flatMap(token ->
+                userService.findPrincipal(token.getUserID(), token.getUserName()));
+
+        if (principal.isEmpty()) {
+            this.writeCookie(request, response, "", Duration.ZERO);
+            return context;
+        }
+
+        context.setAuthentication(new UsernamePasswordAuthenticationToken(principal.get(), null,
+                authenticationService.getAuthorities(principal.get().getUserName())));
+
+        if (sessionTokenService.needsRenewal(sessionToken.get()) && !response.isCommitted()) {
+            this.writeCookie(request, response, sessionTokenService.issue(principal.get()), sessionTokenService.getTtl());
+        }
+        return context;
+    }
+
+    @Override
+    public void saveContext(final SecurityContext context, final HttpServletRequest request,
+                            final HttpServletResponse response) {
+    }
+
+    @Override
+    public boolean containsContext(final HttpServletRequest request) {
+        final Cookie cookie = WebUtils.getCookie(request, COOKIE_NAME);
+        return Objects.nonNull(cookie) && sessionTokenService.verify(cookie.getValue()).isPresent();
+    }
+
+    @Override
+    public void onAuthenticationSuccess(final HttpServletRequest request, final HttpServletResponse response,
+                                        final Authentication authentication) throws IOException, ServletException {
+
+        this.writeCookie(request, response,
+                sessionTokenService.issue((AtlasUserPrincipal) authentication.getPrincipal()), sessionTokenService.getTtl());
+        redirectHandler.onAuthenticationSuccess(request, response, authentication);
+    }
+
+    @Override
+    public void logout(final HttpServletRequest request, final HttpServletResponse response,
+                       final Authentication authentication) {
+        this.writeCookie(request, response, "", Duration.ZERO);
+    }
+
+    private void writeCookie(final HttpServletRequest request, final HttpServletResponse response, final String value,
+                             final Duration maxAge) {
+
+        final String path = request.getContextPath().isEmpty() ? "/" : request.getContextPath();
+
+        response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(COOKIE_NAME, value)
+                .path(path)
+                .maxAge(maxAge)
+                .httpOnly(true)
+                .secure(request.isSecure())
+                .sameSite("Lax")
+                .build()
+                .toString());
+    }
+}
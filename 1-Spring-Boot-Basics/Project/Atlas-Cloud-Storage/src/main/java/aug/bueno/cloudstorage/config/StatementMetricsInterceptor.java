@@ -0,0 +1,124 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.dto.StatementMetricsDTO;
+import aug.bueno.cloudstorage.services.util.LatencyHistogram;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/*
+ * Times every mapper statement and counts the rows it returned or changed, by statement ID
+ * (e.g. aug.bueno.cloudstorage.repository.mapper.FileMapper.getFile). MyBatis picks interceptor beans up by itself.
+ *
+ * The time is the one of the executor call: waiting for a connection, the JDBC round trips and the result mapping.
+ * Statements queued by a BATCH executor only count their rows once flushed, which isn't seen here.
+ */
+@Component
+@Intercepts({
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class})
+})
+public class StatementMetricsInterceptor implements Interceptor {
+
+    private final Map<String, StatementStats> statements = new ConcurrentHashMap<>();
+
+    @Override
+    public Object intercept(final Invocation invocation) throws Throwable {
+        final StatementStats stats = statements.computeIfAbsent(
+                ((MappedStatement) invocation.getArgs()[0]).getId(), id -> new StatementStats());
+        final long start = System.nanoTime();
+        boolean failed = true;
+        long rows = 0;
+
+        try {
+            final Object result = invocation.proceed();
+
+            rows = countRows(result);
+            failed = false;
+            return result;
+        } finally {
+            stats.record(System.nanoTime() - start, rows, failed);
+        }
+    }
+
+    public List<StatementMetricsDTO> getStatementMetrics() {
+        return statements.entrySet().stream()
+                .map(entry -> entry.getValue().toDTO(entry.getKey()))
+                .sorted(Comparator.comparingDouble(StatementMetricsDTO::getTotalMillis).reversed())
+                .collect(Collectors.toList());
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    /*
+     * A query returns its rows, an update its update count; a batched update returns a negative placeholder
+     */
+    private static long countRows(final Object result) {
+
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+
+        if (result instanceof Integer) {
+            return Math.max(0, (Integer) result);
+        }
+        return 0;
+    }
+
+    static double toMillis(final long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private static class StatementStats {
+
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        void record(final long nanos, final long rowCount, final boolean failed) {
+            latency.record(nanos);
+            rows.add(rowCount);
+
+            if (failed) {
+                failures.increment();
+            }
+        }
+
+        StatementMetricsDTO toDTO(final String statement) {
+            return StatementMetricsDTO.builder()
+                    .statement(statement)
+                    .calls(latency.getCount())
+                    .failures(failures.sum())
+                    .rows(rows.sum())
+                    .totalMillis(toMillis(latency.getTotalNanos()))
+                    .meanMillis(toMillis(latency.getMeanNanos()))
+                    .p50Millis(toMillis(latency.getPercentileNanos(0.5)))
+                    .p95Millis(toMillis(latency.getPercentileNanos(0.95)))
+                    .p99Millis(toMillis(latency.getPercentileNanos(0.99)))
+                    .maxMillis(toMillis(latency.getMaxNanos()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.services.QuotaService;
+import aug.bueno.cloudstorage.services.UserService;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
+import org.springframework.security.web.util.matcher.OrRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Optional;
+
+import static aug.bueno.cloudstorage.controller.util.MessageWrapperUtil.QUOTA_EXCEEDED_MSG;
+
+/*
+ * Turns uploads that can't fit in the user quota away by their Content-Length, before the body is read. It sits in
+ * the security chain ahead of the CSRF filter, whose lookup of the _csrf parameter would parse a multipart body.
+ * The Content-Length of a multipart request is a little more than the file, which only makes the check stricter.
+ * The parts already stored by open upload sessions count, see QuotaService.fits. Requests without a length go through
+ * and are checked when the content is stored, see QuotaService.addFile and QuotaService.reservePending.
+ */
+public class UploadQuotaFilter extends OncePerRequestFilter {
+
+    private static final RequestMatcher FORM_UPLOAD = new AntPathRequestMatcher("/file/upload", "POST");
+    private static final RequestMatcher UPLOAD_PART = new AntPathRequestMatcher("/file/uploads/*/parts/*", "PUT");
+
+    private QuotaService quotaService;
+    private UserService userService;
+
+    public UploadQuotaFilter(QuotaService quotaService, UserService userService) {
+        this.quotaService = quotaService;
+        this.userService = userService;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(final HttpServletRequest request) {
+        return !new OrRequestMatcher(FORM_UPLOAD, UPLOAD_PART).matches(request) || request.getContentLengthLong() < 0;
+    }
+
+    @Override
+    protected void doFilterInternal(final HttpServletRequest request, final HttpServletResponse response,
+                                    final FilterChain filterChain) throws ServletException, IOException {
+
+        final Optional<AtlasUserPrincipal> user = userService.findPrincipal(SecurityContextHolder.getContext().getAuthentication());
+
+        if (user.isPresent() && !quotaService.fits(user.get().getUserID(), request.getContentLengthLong())) {
+
+            if (FORM_UPLOAD.matches(request)) {
+                response.sendRedirect(request.getContextPath() + "/result?errorMessage=" + QUOTA_EXCEEDED_MSG);
+            } else {
+                response.sendError(HttpStatus.PAYLOAD_TOO_LARGE.value(), QUOTA_EXCEEDED_MSG);
+            }
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+}
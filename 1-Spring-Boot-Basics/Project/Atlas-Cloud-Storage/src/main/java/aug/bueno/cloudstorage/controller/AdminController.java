@@ -0,0 +1,74 @@
+package aug.bueno.cloudstorage.controller;
+
+import aug.bueno.cloudstorage.dto.CredentialMigrationStatusDTO;
+import aug.bueno.cloudstorage.dto.DataAccessMetricsDTO;
+import aug.bueno.cloudstorage.dto.StorageUsageDTO;
+import aug.bueno.cloudstorage.services.CredentialMigrationService;
+import aug.bueno.cloudstorage.services.DataAccessMetricsService;
+import aug.bueno.cloudstorage.services.QuotaService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/*
+ * Only for the users listed in atlas.security.admin-usernames, see SecurityConfig
+ */
+@RestController
+@RequestMapping("/admin")
+public class AdminController {
+
+    private static final int MAX_LIMIT = 1000;
+
+    private QuotaService quotaService;
+    private CredentialMigrationService credentialMigrationService;
+    private DataAccessMetricsService dataAccessMetricsService;
+
+    public AdminController(QuotaService quotaService, CredentialMigrationService credentialMigrationService,
+                           DataAccessMetricsService dataAccessMetricsService) {
+        this.quotaService = quotaService;
+        this.credentialMigrationService = credentialMigrationService;
+        this.dataAccessMetricsService = dataAccessMetricsService;
+    }
+
+    @GetMapping("/storage/top-consumers")
+    public List<StorageUsageDTO> getTopConsumers(@RequestParam(value = "limit", defaultValue = "10") final int limit) {
+        return quotaService.findTopConsumers(Math.max(1, Math.min(limit, MAX_LIMIT)));
+    }
+
+    /**
+     * Starts moving the credentials still encrypted with their own key to data keys, 409 when it is already running.
+     */
+    @PostMapping("/credentials/migration")
+    public ResponseEntity<CredentialMigrationStatusDTO> startCredentialMigration() {
+        final boolean started = credentialMigrationService.start();
+
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .body(credentialMigrationService.getStatus());
+    }
+
+    @GetMapping("/credentials/migration")
+    public CredentialMigrationStatusDTO getCredentialMigrationStatus() {
+        return credentialMigrationService.getStatus();
+    }
+
+    @GetMapping("/metrics/data-access")
+    public DataAccessMetricsDTO getDataAccessMetrics() {
+        return dataAccessMetricsService.getMetrics();
+    }
+
+    /**
+     * Clears the statement and pool timings, to measure from now on.
+     */
+    @DeleteMapping("/metrics/data-access")
+    public ResponseEntity<Void> resetDataAccessMetrics() {
+        dataAccessMetricsService.reset();
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,11 +1,13 @@
 package aug.bueno.cloudstorage.controller;
 
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
 import aug.bueno.cloudstorage.dto.CredentialFormDTO;
 import aug.bueno.cloudstorage.services.CredentialService;
-import aug.bueno.cloudstorage.services.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
@@ -28,30 +30,45 @@ public class CredentialController {
     private Logger LOGGER = LoggerFactory.getLogger(CredentialController.class);
 
     private CredentialService credenialService;
-    private UserService userService;
 
-    public CredentialController(CredentialService credenialService, UserService userService) {
+    public CredentialController(CredentialService credenialService) {
         this.credenialService = credenialService;
-        this.userService = userService;
     }
 
     @PostMapping()
     public String insertOrUpdateNewCredential(
-            final Authentication auth,
+            final AtlasUserPrincipal principal,
             final ModelMap model,
             @ModelAttribute("credentialForm") final CredentialFormDTO credentialFormDTO) {
 
         LOGGER.info(credentialFormDTO.toString());
 
-        int userID = userService.findUserByUserName(auth.getName()).get().getUserID();
+        int userID = principal.getUserID();
 
         boolean result = credenialService.insertOrUpdateCredential(credentialFormDTO, userID);
 
         return result ? "redirect:/result?isSuccess=" + result : "redirect:/result?error=" + true;
     }
 
+    /**
+     * The password of one credential in clear, fetched when the user opens it for editing so the home page never
+     * carries them. Never cached.
+     */
+    @GetMapping(value = "/{credentialID}/reveal", produces = MediaType.TEXT_PLAIN_VALUE)
+    @ResponseBody
+    public ResponseEntity<String> revealPassword(final AtlasUserPrincipal principal,
+                                                 @PathVariable final Integer credentialID) {
+
+        return credenialService.findDecryptedPassword(credentialID, principal.getUserID())
+                .map(password -> ResponseEntity.ok()
+                        .cacheControl(CacheControl.noStore())
+                        .body(password))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
     @GetMapping("/delete")
     public String deleteCredential(
+            final AtlasUserPrincipal principal,
             final ModelMap model,
             final @ModelAttribute("credentialForm") CredentialFormDTO credentialFormDTO,
             final @RequestParam("id") Integer credentialID
@@ -63,7 +80,7 @@ public class CredentialController {
         try {
 
             if (credentialID > 0) {
-                result = credenialService.deleteByCredentialID(credentialID);
+                result = credenialService.deleteByCredentialIDAndUserID(credentialID, principal.getUserID());
             }
 
             return result ? "redirect:/result?isSuccess=" + true : "redirect:/result?error=" + true;
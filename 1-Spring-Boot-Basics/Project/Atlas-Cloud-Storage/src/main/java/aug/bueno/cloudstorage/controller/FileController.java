@@ -1,23 +1,31 @@
 package aug.bueno.cloudstorage.controller;
 
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
 import aug.bueno.cloudstorage.dto.FileFormDTO;
+import aug.bueno.cloudstorage.services.CompressionService;
+import aug.bueno.cloudstorage.services.ExportService;
+import aug.bueno.cloudstorage.services.FilePreviewService;
 import aug.bueno.cloudstorage.services.FileService;
-import aug.bueno.cloudstorage.services.UserService;
-import org.apache.tomcat.util.http.fileupload.IOUtils;
+import aug.bueno.cloudstorage.services.exception.QuotaExceededException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
-import org.springframework.security.core.Authentication;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.time.Duration;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -41,21 +49,23 @@ public class FileController {
     private Logger LOGGER = LoggerFactory.getLogger(NoteController.class);
 
     private FileService fileService;
-    private UserService userService;
+    private FilePreviewService filePreviewService;
+    private ExportService exportService;
 
-    public FileController(FileService fileService, UserService userService) {
+    public FileController(FileService fileService, FilePreviewService filePreviewService, ExportService exportService) {
         this.fileService = fileService;
-        this.userService = userService;
+        this.filePreviewService = filePreviewService;
+        this.exportService = exportService;
     }
 
     @PostMapping(value = "/upload")
     public String insertNewFile(
-            final Authentication auth,
+            final AtlasUserPrincipal principal,
             final ModelMap modelMap,
             @RequestParam("fileUpload") final MultipartFile file
     ) {
 
-        final int userID = userService.findUserByUserName(auth.getName()).get().getUserID();
+        final int userID = principal.getUserID();
         Optional<String> invalidFileToSave = isInvalidFileToSave(file, userID);
 
         if (invalidFileToSave.isPresent()) {
@@ -63,9 +73,9 @@ public class FileController {
         }
 
         boolean result = false;
-        try {
+        try (InputStream fileDataStream = file.getInputStream()) {
             FileFormDTO build = FileFormDTO.builder()
-                    .fileData(file.getBytes())
+                    .fileDataStream(fileDataStream)
                     .fileName(file.getOriginalFilename())
                     .fileSize(String.valueOf(file.getSize()))
                     .contentType(file.getContentType())
@@ -73,6 +83,9 @@ public class FileController {
 
             result = fileService.insertFile(build, userID);
 
+        } catch (QuotaExceededException e) {
+            LOGGER.info(e.getMessage());
+            return "redirect:/result?errorMessage=" + QUOTA_EXCEEDED_MSG;
         } catch (IOException e) {
             LOGGER.error(e.getMessage());
         }
@@ -80,27 +93,119 @@ public class FileController {
     }
 
     @GetMapping("/download/{fileID}")
-    public String downloadFile(
-            final Authentication auth,
+    public void downloadFile(
+            final AtlasUserPrincipal principal,
             @PathVariable final Integer fileID,
-            final RedirectAttributes redirectAttributes,
+            final ServletWebRequest webRequest,
+            final HttpServletRequest req,
             final HttpServletResponse resp) throws IOException {
 
-        final int userID = userService.findUserByUserName(auth.getName()).get().getUserID();
+        final int userID = principal.getUserID();
+
+        Optional<FileFormDTO> fileMetadata = fileService.findFileByFileIDAndUserID(fileID, userID);
+
+        if (fileMetadata.isEmpty()) {
+            resp.sendRedirect(req.getContextPath() + "/result?errorMessage=" + FILE_NOT_FOUND_MSG);
+            return;
+        }
+
+        final FileFormDTO fileFormDTO = fileMetadata.get();
+        final long fileSize = Long.parseLong(fileFormDTO.getFileSize());
+        final String rangeHeader = req.getHeader(HttpHeaders.RANGE);
+
+        // Compressed files go out as stored to clients accepting the codec, ranges always apply to the decoded bytes
+        final boolean compressed = !CompressionService.isIdentity(fileFormDTO.getCodec());
+        final boolean sendEncoded = compressed && Objects.isNull(rangeHeader)
+                && acceptsEncoding(req.getHeader(HttpHeaders.ACCEPT_ENCODING), fileFormDTO.getCodec());
 
-        Optional<FileFormDTO> fileByFileNameAndUserID = fileService.findFileByFileIDAndUserID(fileID, userID);
+        final String eTag = Objects.isNull(fileFormDTO.getContentHash()) ? null :
+                "\"" + fileFormDTO.getContentHash() + (sendEncoded ? "-" + fileFormDTO.getCodec() : "") + "\"";
 
-        if (fileByFileNameAndUserID.isPresent()) {
-            FileFormDTO fileFormDTO = fileByFileNameAndUserID.get();
-            resp.setContentType("application/octet-stream");
-            resp.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileFormDTO.getFileName() + "\"");
-            InputStream inputStream = new ByteArrayInputStream(fileFormDTO.getFileData());
-            IOUtils.copy(inputStream, resp.getOutputStream());
-            resp.flushBuffer();
+        // Files are private, but the browser may keep them as long as it revalidates with the ETag
+        resp.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
+        resp.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
 
-            return "/home";
+        if (compressed) {
+            resp.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
         }
-        return "redirect:/result?errorMessage=" + FILE_ALREADY_EXIST_MSG;
+
+        if (Objects.nonNull(eTag) && webRequest.checkNotModified(eTag)) {
+            return;
+        }
+
+        long start = 0;
+        long end = fileSize - 1;
+
+        if (Objects.nonNull(rangeHeader) && isIfRangeSatisfied(req.getHeader(HttpHeaders.IF_RANGE), eTag)) {
+            try {
+                List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+
+                // Multipart/byteranges is not supported, serving the whole file is a valid answer for several ranges
+                if (ranges.size() == 1) {
+                    start = ranges.get(0).getRangeStart(fileSize);
+                    end = ranges.get(0).getRangeEnd(fileSize);
+
+                    if (start >= fileSize || start > end) {
+                        throw new IllegalArgumentException("Range " + rangeHeader + " not satisfiable for " + fileSize + " bytes");
+                    }
+
+                    resp.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                    resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + fileSize);
+                }
+            } catch (IllegalArgumentException e) {
+                resp.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + fileSize);
+                resp.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+
+        resp.setContentType(Objects.isNull(fileFormDTO.getContentType()) ? "application/octet-stream" : fileFormDTO.getContentType());
+        resp.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileFormDTO.getFileName() + "\"");
+
+        if (sendEncoded) {
+            resp.setHeader(HttpHeaders.CONTENT_ENCODING, fileFormDTO.getCodec());
+            resp.setContentLengthLong(fileFormDTO.getStoredSize());
+            fileService.writeEncodedFileData(fileID, userID, resp.getOutputStream());
+        } else {
+            resp.setContentLengthLong(end - start + 1);
+            fileService.writeFileData(fileID, userID, start, end, resp.getOutputStream());
+        }
+        resp.flushBuffer();
+    }
+
+    /*
+     * Everything the user stored as one ZIP, streamed while it is built. With metadata=true it also holds
+     * files.json, notes.json and credentials.json (URLs and user names only)
+     */
+    @GetMapping("/export")
+    public void exportFiles(
+            final AtlasUserPrincipal principal,
+            @RequestParam(value = "metadata", defaultValue = "false") final boolean includeMetadata,
+            final HttpServletResponse resp) throws IOException {
+
+        final int userID = principal.getUserID();
+
+        resp.setContentType("application/zip");
+        resp.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"atlas-export.zip\"");
+        resp.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+
+        exportService.writeExport(userID, includeMetadata, resp.getOutputStream());
+        resp.flushBuffer();
+    }
+
+    /*
+     * Previews are rendered in the background after the upload, until then (or for non images) there is none
+     */
+    @GetMapping("/preview/{fileID}")
+    public ResponseEntity<byte[]> previewFile(final AtlasUserPrincipal principal, @PathVariable final Integer fileID) {
+        final int userID = principal.getUserID();
+
+        return filePreviewService.findPreviewByFileIDAndUserID(fileID, userID)
+                .map(preview -> ResponseEntity.ok()
+                        .contentType(MediaType.parseMediaType(preview.getContentType()))
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                        .body(preview.getPreviewData()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
     }
 
     /*
@@ -158,18 +263,18 @@ public class FileController {
 
     @GetMapping("/delete/{fileID}")
     public String deleteFile(
-            final Authentication auth,
+            final AtlasUserPrincipal principal,
             final ModelMap model,
             @PathVariable("fileID") final Integer fileID
     ) {
         LOGGER.info(fileID.toString());
-        final int userID = userService.findUserByUserName(auth.getName()).get().getUserID();
+        final int userID = principal.getUserID();
 
         int result = 0;
         try {
 
             if (fileID > 0) {
-                result = fileService.deleteByFileID(fileID);
+                result = fileService.deleteByFileIDAndUserID(fileID, userID);
             }
 
             return result == 1 ? "redirect:/result?isSuccess=" + true : "redirect:/result?error=" + true;
@@ -180,6 +285,30 @@ public class FileController {
         }
     }
 
+    /*
+     * A Range request is only honoured when If-Range is absent or still matches the current representation,
+     * otherwise the whole file is sent. Only strong ETags are accepted, dates are never precise enough here.
+     */
+    private boolean isIfRangeSatisfied(final String ifRange, final String eTag) {
+        return Objects.isNull(ifRange) || (Objects.nonNull(eTag) && ifRange.trim().equals(eTag));
+    }
+
+    private boolean acceptsEncoding(final String acceptEncoding, final String codec) {
+
+        if (Objects.isNull(acceptEncoding)) {
+            return false;
+        }
+
+        for (String coding : acceptEncoding.split(",")) {
+            String[] codingAndWeight = coding.trim().split(";");
+
+            if (codingAndWeight[0].trim().equalsIgnoreCase(codec)) {
+                return codingAndWeight.length == 1 || !codingAndWeight[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
     private Optional<String> isInvalidFileToSave(final MultipartFile file, int userID) {
 
         if (file.getSize() == 0) {
@@ -190,9 +319,7 @@ public class FileController {
             return Optional.of("redirect:/result?errorMessage=" + INVALID_FILE_MSG);
         }
 
-        List<FileFormDTO> fileByFileNameAndUserID = fileService.findFileByFileNameAndUserID(file.getOriginalFilename(), userID);
-
-        if (!fileByFileNameAndUserID.isEmpty()) {
+        if (fileService.existsFileByFileNameAndUserID(file.getOriginalFilename(), userID)) {
 
             return Optional.of("redirect:/result?errorMessage=" + FILE_ALREADY_EXIST_MSG);
         }
@@ -0,0 +1,172 @@
+package aug.bueno.cloudstorage.controller;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.dto.UploadPartDTO;
+import aug.bueno.cloudstorage.dto.UploadSessionDTO;
+import aug.bueno.cloudstorage.services.FileService;
+import aug.bueno.cloudstorage.services.FileUploadSessionService;
+import aug.bueno.cloudstorage.services.QuotaService;
+import aug.bueno.cloudstorage.services.exception.QuotaExceededException;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Objects;
+import java.util.Optional;
+
+import static aug.bueno.cloudstorage.controller.util.MessageWrapperUtil.*;
+
+/*
+ * Resumable uploads for files over the multipart limit:
+ * - POST   /file/uploads?fileName=&contentType=&fileSize=   opens a session
+ * - PUT    /file/uploads/{uploadID}/parts/{partNumber}      raw part bytes, X-Checksum-SHA256 header with their hex SHA-256
+ * - GET    /file/uploads/{uploadID}                         parts received so far
+ * - POST   /file/uploads/{uploadID}/commit                  assembles the file
+ * - DELETE /file/uploads/{uploadID}                         aborts the upload
+ */
+@RestController
+@RequestMapping("/file/uploads")
+public class FileUploadSessionController {
+
+    public static final String CHECKSUM_HEADER = "X-Checksum-SHA256";
+
+    private Logger LOGGER = LoggerFactory.getLogger(FileUploadSessionController.class);
+
+    private FileUploadSessionService fileUploadSessionService;
+    private FileService fileService;
+    private QuotaService quotaService;
+
+    public FileUploadSessionController(FileUploadSessionService fileUploadSessionService, FileService fileService,
+                                       QuotaService quotaService) {
+        this.fileUploadSessionService = fileUploadSessionService;
+        this.fileService = fileService;
+        this.quotaService = quotaService;
+    }
+
+    @PostMapping
+    public ResponseEntity<?> createSession(
+            final AtlasUserPrincipal principal,
+            @RequestParam("fileName") final String fileName,
+            @RequestParam(value = "contentType", required = false) final String contentType,
+            @RequestParam(value = "fileSize", required = false) final Long fileSize
+    ) {
+        final int userID = principal.getUserID();
+        Optional<ResponseEntity<?>> invalidFileToSave = isInvalidFileToSave(fileName, fileSize, userID);
+
+        if (invalidFileToSave.isPresent()) {
+            return invalidFileToSave.get();
+        }
+
+        if (Objects.nonNull(fileSize) && !quotaService.fits(userID, fileSize)) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(QUOTA_EXCEEDED_MSG);
+        }
+
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession(fileName, contentType, fileSize, userID);
+
+        return ResponseEntity.created(URI.create("/file/uploads/" + uploadSession.getUploadID())).body(uploadSession);
+    }
+
+    @GetMapping("/{uploadID}")
+    public ResponseEntity<UploadSessionDTO> getSession(final AtlasUserPrincipal principal, @PathVariable final String uploadID) {
+        final int userID = principal.getUserID();
+
+        return ResponseEntity.of(fileUploadSessionService.findSession(uploadID, userID));
+    }
+
+    @PutMapping("/{uploadID}/parts/{partNumber}")
+    public ResponseEntity<UploadPartDTO> writePart(
+            final AtlasUserPrincipal principal,
+            @PathVariable final String uploadID,
+            @PathVariable final int partNumber,
+            @RequestHeader(CHECKSUM_HEADER) final String checksum,
+            @RequestHeader(value = HttpHeaders.CONTENT_LENGTH, required = false) final Long contentLength,
+            final InputStream partStream
+    ) throws IOException {
+        final int userID = principal.getUserID();
+
+        return ResponseEntity.of(fileUploadSessionService.writePart(uploadID, userID, partNumber, checksum, contentLength,
+                partStream));
+    }
+
+    @PostMapping("/{uploadID}/commit")
+    public ResponseEntity<?> commitSession(final AtlasUserPrincipal principal, @PathVariable final String uploadID) throws IOException {
+        final int userID = principal.getUserID();
+        final Optional<UploadSessionDTO> uploadSession = fileUploadSessionService.findSession(uploadID, userID);
+
+        if (uploadSession.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // The file name may have been taken by another upload since the session was opened
+        Optional<ResponseEntity<?>> invalidFileToSave = isInvalidFileToSave(uploadSession.get().getFileName(), null, userID);
+
+        if (invalidFileToSave.isPresent()) {
+            return invalidFileToSave.get();
+        }
+
+        return fileUploadSessionService.commitSession(uploadID, userID)
+                .flatMap(fileID -> fileService.findFileByFileIDAndUserID(fileID, userID))
+                .<ResponseEntity<?>>map(file -> ResponseEntity.status(HttpStatus.CREATED).body(file))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{uploadID}")
+    public ResponseEntity<Void> abortSession(final AtlasUserPrincipal principal, @PathVariable final String uploadID) throws IOException {
+        final int userID = principal.getUserID();
+
+        return fileUploadSessionService.abortSession(uploadID, userID)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    /*
+     * Bad part numbers, oversized parts and checksum mismatches
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequestHandler(final IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
+    @ExceptionHandler(QuotaExceededException.class)
+    public ResponseEntity<String> quotaExceededHandler(final QuotaExceededException e) {
+        LOGGER.info(e.getMessage());
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(QUOTA_EXCEEDED_MSG);
+    }
+
+    /*
+     * Incomplete uploads, and parts sent twice at the same time
+     */
+    @ExceptionHandler({IllegalStateException.class, DuplicateKeyException.class})
+    public ResponseEntity<String> conflictHandler(final RuntimeException e) {
+        LOGGER.info(e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(e.getMessage());
+    }
+
+    /*
+     * Same rules as a single request upload, see FileController
+     */
+    private Optional<ResponseEntity<?>> isInvalidFileToSave(final String fileName, final Long fileSize, final int userID) {
+
+        if (Objects.nonNull(fileSize) && fileSize <= 0) {
+            return Optional.of(ResponseEntity.badRequest().body(EMPTY_FILE_MSG));
+        }
+
+        if (StringUtils.isBlank(fileName)) {
+            return Optional.of(ResponseEntity.badRequest().body(INVALID_FILE_MSG));
+        }
+
+        if (fileService.existsFileByFileNameAndUserID(fileName, userID)) {
+            return Optional.of(ResponseEntity.status(HttpStatus.CONFLICT).body(FILE_ALREADY_EXIST_MSG));
+        }
+
+        return Optional.empty();
+    }
+}
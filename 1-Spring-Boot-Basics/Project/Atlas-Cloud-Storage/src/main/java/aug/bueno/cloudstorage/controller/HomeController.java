@@ -1,17 +1,25 @@
 package aug.bueno.cloudstorage.controller;
 
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
 import aug.bueno.cloudstorage.dto.CredentialFormDTO;
 import aug.bueno.cloudstorage.dto.FileFormDTO;
+import aug.bueno.cloudstorage.dto.HomePageDTO;
 import aug.bueno.cloudstorage.dto.NoteFormDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
 import aug.bueno.cloudstorage.services.*;
-import org.springframework.security.core.Authentication;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.web.csrf.CsrfToken;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
-import org.springframework.web.bind.annotation.GetMapping;
-import org.springframework.web.bind.annotation.ModelAttribute;
-import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Collections;
+import java.util.Objects;
 /*
  * - [X]Any errors related to file actions should be displayed. For example, a user should not be able to upload two files with the same name, but they'll never know unless you tell them!
  *
@@ -21,47 +29,121 @@ import java.util.List;
  *
  * - [X]When a user logs in, they should see the data they have added to the application.
  *
+ * The home page shows the first page of each tab, read side by side by HomePageService, and is tagged with the data
+ * version of the user (see DataVersionService) so an unchanged one is answered 304. GET /home/notes,
+ * /home/credentials and /home/files?pageToken= return the next ones as JSON when the user asks for more.
  */
 
 @Controller
 @RequestMapping("/home")
 public class HomeController {
 
-    private UserService userService;
     private NoteService noteService;
     private CredentialService credentialService;
     private FileService fileService;
-    private EncryptionService encryptionService;
+    private HomePageService homePageService;
+    private DataVersionService dataVersionService;
+    private int pageSize;
+    private boolean eTagEnabled;
 
-    public HomeController(UserService userService, NoteService noteService, CredentialService credentialService,
-                          FileService fileService, EncryptionService encryptionService) {
-        this.userService = userService;
+    public HomeController(NoteService noteService, CredentialService credentialService,
+                          FileService fileService, HomePageService homePageService,
+                          DataVersionService dataVersionService,
+                          @Value("${atlas.home.page-size:50}") int pageSize,
+                          @Value("${atlas.home.etag.enabled:true}") boolean eTagEnabled) {
         this.noteService = noteService;
         this.credentialService = credentialService;
         this.fileService = fileService;
-        this.encryptionService = encryptionService;
+        this.homePageService = homePageService;
+        this.dataVersionService = dataVersionService;
+        this.pageSize = pageSize;
+        this.eTagEnabled = eTagEnabled;
     }
 
     @GetMapping
     public String getHomePage(
-            final Authentication auth,
+            final AtlasUserPrincipal principal,
             final Model model,
             @ModelAttribute("noteForm") final NoteFormDTO noteFormDTO,
             @ModelAttribute("credentialForm") final CredentialFormDTO credentialFormDTO,
-            @ModelAttribute("fileForm") final FileFormDTO fileFormDTO
+            @ModelAttribute("fileForm") final FileFormDTO fileFormDTO,
+            final HttpServletRequest request,
+            final HttpServletResponse response,
+            final WebRequest webRequest
     ) {
-        int userID = userService.findUserByUserName(auth.getName()).get().getUserID();
+        // Query parameters are bound to the forms of the page, such a page is not the one the ETag stands for
+        if (eTagEnabled && Objects.isNull(request.getQueryString())) {
+            // The browser keeps the page but asks each time, an unchanged one is a 304 without any query
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "private, no-cache");
 
-        List<NoteFormDTO> noteFormDTOS = noteService.findAllNotesUser(userID);
-        List<CredentialFormDTO> credentialFormDTOS = credentialService.findAllCredentialsUser(userID);
-        List<FileFormDTO> fileFormDTOSDTOS = fileService.findAllUserFiles(userID);
+            if (webRequest.checkNotModified(this.getETag(principal.getUserID(), request))) {
+                return null;
+            }
+        }
 
-        model.addAttribute("notes", noteFormDTOS);
-        model.addAttribute("credentials", credentialFormDTOS);
-        model.addAttribute("files", fileFormDTOSDTOS);
-        model.addAttribute("encryptionService", encryptionService);
+        HomePageDTO homePage = homePageService.getHomePage(principal.getUserID(), pageSize);
+
+        this.addPage(model, "notes", homePage.getNotes());
+        this.addPage(model, "credentials", homePage.getCredentials());
+        this.addPage(model, "files", homePage.getFiles());
+        model.addAttribute("storageUsage", homePage.getStorageUsage());
+
+        // A page missing a section must not be kept, its version would answer 304 until the next change
+        if (Objects.isNull(homePage.getNotes()) || Objects.isNull(homePage.getCredentials())
+                || Objects.isNull(homePage.getFiles()) || Objects.isNull(homePage.getStorageUsage())) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+        }
 
         return "home";
     }
 
+    @GetMapping("/notes")
+    @ResponseBody
+    public PageDTO<NoteFormDTO> getNotesPage(final AtlasUserPrincipal principal,
+                                             @RequestParam(value = "pageToken", required = false) final String pageToken) {
+        return noteService.findNotesPageUser(principal.getUserID(), pageToken, pageSize);
+    }
+
+    @GetMapping("/credentials")
+    @ResponseBody
+    public PageDTO<CredentialFormDTO> getCredentialsPage(final AtlasUserPrincipal principal,
+                                                         @RequestParam(value = "pageToken", required = false) final String pageToken) {
+        return credentialService.findCredentialsPageUser(principal.getUserID(), pageToken, pageSize);
+    }
+
+    @GetMapping("/files")
+    @ResponseBody
+    public PageDTO<FileFormDTO> getFilesPage(final AtlasUserPrincipal principal,
+                                             @RequestParam(value = "pageToken", required = false) final String pageToken) {
+        return fileService.findFilesPageUser(principal.getUserID(), pageToken, pageSize);
+    }
+
+    /*
+     * Read before the data of the page: a change committed in between then only costs one more full page later, the
+     * page before it can't get its tag. The CSRF token is in the forms of the page, a new one makes a new page.
+     */
+    private String getETag(final int userID, final HttpServletRequest request) {
+        final CsrfToken csrfToken = (CsrfToken) request.getAttribute(CsrfToken.class.getName());
+
+        return "W/\"" + userID + "-" + dataVersionService.getVersion(userID)
+                + (Objects.isNull(csrfToken) ? "" : "-" + Integer.toHexString(csrfToken.getToken().hashCode())) + "\"";
+    }
+
+    /*
+     * A section that couldn't be read is shown empty with a message, see HomePageService
+     */
+    private void addPage(final Model model, final String section, final PageDTO<?> page) {
+        model.addAttribute(section, Objects.isNull(page) ? Collections.emptyList() : page.getItems());
+        model.addAttribute(section + "NextPageToken", Objects.isNull(page) ? null : page.getNextPageToken());
+        model.addAttribute(section + "Unavailable", Objects.isNull(page));
+    }
+
+    /*
+     * Page tokens not made by PageTokenUtil
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequestHandler(final IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
+    }
+
 }
@@ -1,11 +1,10 @@
 package aug.bueno.cloudstorage.controller;
 
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
 import aug.bueno.cloudstorage.dto.NoteFormDTO;
 import aug.bueno.cloudstorage.services.NoteService;
-import aug.bueno.cloudstorage.services.UserService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.ModelMap;
 import org.springframework.web.bind.annotation.*;
@@ -28,22 +27,20 @@ public class NoteController {
     private Logger LOGGER = LoggerFactory.getLogger(NoteController.class);
 
     private NoteService noteService;
-    private UserService userService;
 
-    public NoteController(NoteService noteService, UserService userService) {
+    public NoteController(NoteService noteService) {
         this.noteService = noteService;
-        this.userService = userService;
     }
 
     @PostMapping()
     public String insertOrUpdateNote(
-            final Authentication auth,
+            final AtlasUserPrincipal principal,
             final ModelMap model,
             @ModelAttribute("noteForm") final NoteFormDTO noteForm
     ) {
-        LOGGER.info(noteForm.toString(), auth.getName());
+        LOGGER.info(noteForm.toString(), principal.getName());
 
-        int userID = userService.findUserByUserName(auth.getName()).get().getUserID();
+        int userID = principal.getUserID();
 
         boolean result = noteService.insertOrUpdateNote(noteForm, userID);
         return result ? "redirect:/result?isSuccess=" + true : "redirect:/result?error=" + true;
@@ -51,6 +48,7 @@ public class NoteController {
 
     @GetMapping("/delete")
     public String deleteNote(
+            final AtlasUserPrincipal principal,
             final ModelMap model,
             final @ModelAttribute("noteForm") NoteFormDTO noteFormDTO,
             final @RequestParam("id") Integer noteID
@@ -61,7 +59,7 @@ public class NoteController {
 
         try {
             if (noteID > 0) {
-                result = noteService.deleteByNoteID(noteID);
+                result = noteService.deleteByNoteIDAndUserID(noteID, principal.getUserID());
             }
 
             return result ? "redirect:/result?isSuccess=" + true : "redirect:/result?error=" + true;
@@ -0,0 +1,32 @@
+package aug.bueno.cloudstorage.controller;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.dto.SearchResultDTO;
+import aug.bueno.cloudstorage.services.search.SearchIndexService;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+/*
+ * GET /search?q=&limit=   notes, credentials and files of the user matching every word of q, or starting with it
+ */
+@RestController
+@RequestMapping("/search")
+public class SearchController {
+
+    private SearchIndexService searchIndexService;
+
+    public SearchController(SearchIndexService searchIndexService) {
+        this.searchIndexService = searchIndexService;
+    }
+
+    @GetMapping
+    public List<SearchResultDTO> search(final AtlasUserPrincipal principal,
+                                        @RequestParam("q") final String query,
+                                        @RequestParam(value = "limit", defaultValue = "20") final int limit) {
+        return searchIndexService.search(principal.getUserID(), query, limit);
+    }
+}
@@ -1,9 +1,11 @@
 package aug.bueno.cloudstorage.controller;
 
 import aug.bueno.cloudstorage.dto.SignupFormDTO;
-import aug.bueno.cloudstorage.model.User;
 import aug.bueno.cloudstorage.services.UserService;
 import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -11,7 +13,9 @@ import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 /*
  * - [X] An error message is already present in the template, but should only be visible if an error occurred during signup.
  * - [X] The application should not allow duplicate usernames or duplicate filenames attributed to a single user.
@@ -21,6 +25,8 @@ import java.util.Optional;
 @RequestMapping("/signup")
 public class SignupController {
 
+    private Logger LOGGER = LoggerFactory.getLogger(SignupController.class);
+
     private UserService userService;
 
     public SignupController(UserService userService) {
@@ -32,52 +38,39 @@ public class SignupController {
         return "signup";
     }
 
+    /*
+     * Hashing runs on its own pool, the request thread is released until the user is stored
+     */
     @PostMapping
-    public String signupNewUser(@ModelAttribute("signupForm") final SignupFormDTO signupForm, final Model model) {
+    public CompletableFuture<String> signupNewUser(@ModelAttribute("signupForm") final SignupFormDTO signupForm, final Model model) {
 
-        Optional<String> invalidResult = this.isSubmittedSignupDataValid(signupForm);
+        Optional<String> invalidResult = this.validateIfRequiredInfoIsPresent(signupForm);
 
         if (invalidResult.isPresent()) {
             model.addAttribute("signupError", invalidResult.get());
-
-        } else {
-
-            Optional<User> user = userService.createUser(signupForm.getUserName(), signupForm.getPassword(), signupForm.getFirstName(), signupForm.getLastName());
-
-            if (user.isPresent()) {
-                model.addAttribute("signupWithSuccess", true);
-            } else {
-                model.addAttribute("signupError", "There was an error signing you up. Please try again.");
-            }
+            return CompletableFuture.completedFuture("signup");
         }
 
-        return "signup";
-    }
-
-    private Optional<String> isSubmittedSignupDataValid(final SignupFormDTO signupForm) {
-
-        Optional<String> result = Optional.empty();
-
-        result = validateIfRequiredInfoIsPresent(signupForm);
-
-        if (result.isPresent()) {
-            return result;
+        try {
+            return userService.createUserAsync(signupForm.getUserName(), signupForm.getPassword(), signupForm.getFirstName(), signupForm.getLastName())
+                    .handle((user, e) -> {
+
+                        if (Objects.nonNull(e)) {
+                            LOGGER.error(e.getMessage());
+                            model.addAttribute("signupError", "There was an error signing you up. Please try again.");
+                        } else if (user.isPresent()) {
+                            model.addAttribute("signupWithSuccess", true);
+                        } else {
+                            model.addAttribute("signupError", "The username already exists.");
+                        }
+
+                        return "signup";
+                    });
+
+        } catch (TaskRejectedException e) {
+            model.addAttribute("signupError", "We are receiving too many signups right now. Please try again in a moment.");
+            return CompletableFuture.completedFuture("signup");
         }
-
-        result = validateIfThereIsDuplicatedUserName(signupForm);
-
-        return result;
-    }
-
-    private Optional<String> validateIfThereIsDuplicatedUserName(final SignupFormDTO signupForm) {
-
-        Optional<User> userByUserName = userService.findUserByUserName(signupForm.getUserName());
-
-        if (userByUserName.isPresent()) {
-            return Optional.of("The username already exists.");
-        }
-
-        return Optional.empty();
     }
 
     private Optional<String> validateIfRequiredInfoIsPresent(final SignupFormDTO signupForm) {
@@ -7,4 +7,6 @@ public class MessageWrapperUtil {
     public static final String EMPTY_FILE_MSG = "Empty file submited";
     public static final String INVALID_FILE_MSG = "Filename invalid";
     public static final String FILE_NOT_FOUND_MSG = "File not found.";
+    public static final String QUOTA_EXCEEDED_MSG = "Storage quota exceeded.";
+    public static final String LOGIN_THROTTLED_MSG = "Too many login attempts, try again later.";
 }
@@ -0,0 +1,32 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.security.core.AuthenticatedPrincipal;
+
+import java.io.Serializable;
+
+/*
+ * The authenticated user as kept in the security context, so requests know who they act for without reading USERS.
+ * Controllers get it as a handler argument, see AtlasUserPrincipalArgumentResolver. Never holds credentials.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class AtlasUserPrincipal implements AuthenticatedPrincipal, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private int userID;
+    private String userName;
+    private String firstName;
+    private String lastName;
+
+    @Override
+    public String getName() {
+        return userName;
+    }
+}
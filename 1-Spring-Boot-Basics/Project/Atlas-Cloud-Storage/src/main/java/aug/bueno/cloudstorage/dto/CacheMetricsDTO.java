@@ -0,0 +1,20 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CacheMetricsDTO {
+
+    private String name;
+    private int size;
+    private long hits;
+    private long misses;
+    /* Hits over lookups since startup, 0 before the first one */
+    private double hitRatio;
+}
@@ -0,0 +1,32 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Gauges as of the request, acquire (waiting for a connection) and usage (holding one) since startup or the last reset
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class ConnectionPoolMetricsDTO {
+
+    private String poolName;
+    private int maximumPoolSize;
+    private int minimumIdle;
+    private int activeConnections;
+    private int idleConnections;
+    private int totalConnections;
+    private int threadsAwaitingConnection;
+    private long acquisitions;
+    private double acquireMeanMillis;
+    private double acquireP99Millis;
+    private double acquireMaxMillis;
+    private double usageMeanMillis;
+    private double usageP99Millis;
+    private double usageMaxMillis;
+    private long timeouts;
+}
@@ -0,0 +1,24 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CredentialMigrationStatusDTO {
+
+    private String state;
+    private int pending;
+    private long migrated;
+    private long conflicts;
+    private long failed;
+    private int lastCredentialID;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
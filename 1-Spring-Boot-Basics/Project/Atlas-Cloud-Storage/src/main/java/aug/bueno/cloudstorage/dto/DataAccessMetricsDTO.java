@@ -0,0 +1,24 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class DataAccessMetricsDTO {
+
+    private ConnectionPoolMetricsDTO connectionPool;
+    /* Most total time first */
+    private List<StatementMetricsDTO> statements;
+    /* Home page sections left out since startup, see HomePageService */
+    private long homePageSectionsTimedOut;
+    private long homePageSectionsFailed;
+    /* The lists of the home page, see ListCacheService */
+    private List<CacheMetricsDTO> listCaches;
+}
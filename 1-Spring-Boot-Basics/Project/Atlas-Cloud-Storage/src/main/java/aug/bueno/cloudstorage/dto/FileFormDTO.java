@@ -1,10 +1,13 @@
 package aug.bueno.cloudstorage.dto;
 
+import aug.bueno.cloudstorage.model.FileProcessingState;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.io.InputStream;
+
 @Data
 @Builder
 @AllArgsConstructor
@@ -15,6 +18,10 @@ public class FileFormDTO {
     private String fileName;
     private String contentType;
     private String fileSize;
+    private String contentHash;
+    private String codec;
+    private long storedSize;
+    private FileProcessingState processingState;
     private int userID;
-    private byte[] fileData;
+    private InputStream fileDataStream;
 }
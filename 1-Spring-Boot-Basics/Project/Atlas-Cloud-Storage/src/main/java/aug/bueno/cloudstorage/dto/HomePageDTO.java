@@ -0,0 +1,21 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * The first page of each tab of the home page, a section is null when it couldn't be loaded in time
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class HomePageDTO {
+
+    private PageDTO<NoteFormDTO> notes;
+    private PageDTO<CredentialFormDTO> credentials;
+    private PageDTO<FileFormDTO> files;
+    private StorageUsageDTO storageUsage;
+}
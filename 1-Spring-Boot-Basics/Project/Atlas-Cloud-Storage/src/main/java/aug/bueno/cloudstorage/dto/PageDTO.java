@@ -0,0 +1,21 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/*
+ * One page of a listing, nextPageToken is null on the last one
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class PageDTO<T> {
+
+    private List<T> items;
+    private String nextPageToken;
+}
@@ -0,0 +1,21 @@
+package aug.bueno.cloudstorage.dto;
+
+import aug.bueno.cloudstorage.model.SearchItemType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * The title is the note title, the credential URL or the file name
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SearchResultDTO {
+
+    private SearchItemType type;
+    private int id;
+    private String title;
+}
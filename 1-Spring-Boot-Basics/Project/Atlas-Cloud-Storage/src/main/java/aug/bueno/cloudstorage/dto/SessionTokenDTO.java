@@ -0,0 +1,22 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/*
+ * What a verified session token says, see SessionTokenService
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class SessionTokenDTO {
+
+    private int userID;
+    private String userName;
+    private Instant expiresAt;
+}
@@ -0,0 +1,20 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class StorageUsageDTO {
+
+    private int userID;
+    private String userName;
+    private long usedBytes;
+    private int fileCount;
+    private long pendingBytes;
+    private long quotaBytes;
+}
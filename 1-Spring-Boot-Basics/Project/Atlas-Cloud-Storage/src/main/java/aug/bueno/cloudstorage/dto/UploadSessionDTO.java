@@ -0,0 +1,21 @@
+package aug.bueno.cloudstorage.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionDTO {
+
+    private String uploadID;
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private List<UploadPartDTO> parts;
+}
@@ -5,6 +5,8 @@ import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.time.LocalDateTime;
+
 @Data
 @Builder
 @AllArgsConstructor
@@ -15,6 +17,11 @@ public class File {
     private String fileName;
     private String contentType;
     private String fileSize;
+    private String contentHash;
+    private String codec;
+    private long storedSize;
+    private FileProcessingState processingState;
+    private int processingAttempts;
+    private LocalDateTime processingDueAt;
     private int userID;
-    private byte[] fileData;
 }
@@ -0,0 +1,19 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileChunk {
+
+    private String chunkHash;
+    private int chunkSize;
+    private int refCount;
+    private String storage;
+    private byte[] chunkData;
+}
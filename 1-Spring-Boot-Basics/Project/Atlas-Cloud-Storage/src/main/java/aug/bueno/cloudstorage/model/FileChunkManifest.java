@@ -0,0 +1,20 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FileChunkManifest {
+
+    private int fileID;
+    private int chunkIndex;
+    private long chunkOffset;
+    private int chunkSize;
+    private String chunkHash;
+    private String storage;
+}
@@ -0,0 +1,17 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class FilePreview {
+
+    private int fileID;
+    private String contentType;
+    private byte[] previewData;
+}
@@ -0,0 +1,11 @@
+package aug.bueno.cloudstorage.model;
+
+/*
+ * Where a file is in the post-upload pipeline, see FileProcessingService. Files stored before the pipeline existed have none
+ */
+public enum FileProcessingState {
+    PENDING,
+    PROCESSING,
+    DONE,
+    FAILED
+}
@@ -0,0 +1,10 @@
+package aug.bueno.cloudstorage.model;
+
+/*
+ * What a search result points to, see SearchIndexService
+ */
+public enum SearchItemType {
+    NOTE,
+    CREDENTIAL,
+    FILE
+}
@@ -0,0 +1,22 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSession {
+
+    private String uploadID;
+    private String fileName;
+    private String contentType;
+    private Long fileSize;
+    private int userID;
+    private LocalDateTime createdAt;
+}
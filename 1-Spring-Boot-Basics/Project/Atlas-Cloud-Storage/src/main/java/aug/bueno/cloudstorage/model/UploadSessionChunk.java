@@ -0,0 +1,19 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionChunk {
+
+    private String uploadID;
+    private int partNumber;
+    private int chunkIndex;
+    private int chunkSize;
+    private String chunkHash;
+}
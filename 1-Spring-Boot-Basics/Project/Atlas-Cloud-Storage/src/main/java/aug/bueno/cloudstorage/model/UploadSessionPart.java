@@ -0,0 +1,18 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UploadSessionPart {
+
+    private String uploadID;
+    private int partNumber;
+    private long partSize;
+    private String partHash;
+}
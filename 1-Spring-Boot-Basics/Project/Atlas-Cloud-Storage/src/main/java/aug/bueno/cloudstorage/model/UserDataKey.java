@@ -0,0 +1,20 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserDataKey {
+
+    private int userID;
+    private String wrappedKey;
+    private String masterKeyAlias;
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,19 @@
+package aug.bueno.cloudstorage.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserStorageUsage {
+
+    private int userID;
+    private String userName;
+    private long usedBytes;
+    private int fileCount;
+    private long pendingBytes;
+}
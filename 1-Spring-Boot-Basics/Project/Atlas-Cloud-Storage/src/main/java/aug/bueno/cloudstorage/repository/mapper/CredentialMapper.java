@@ -11,6 +11,13 @@ public interface CredentialMapper {
     @Select("SELECT * FROM CREDENTIALS WHERE userid = #{userID}")
     List<Credential> getAllCredentialByUser(int userID);
 
+    /*
+     * Keyset page, see PageTokenUtil
+     */
+    @Select("SELECT * FROM CREDENTIALS WHERE userid = #{userID} AND credentialid > #{afterCredentialID} " +
+            "ORDER BY credentialid LIMIT #{limit}")
+    List<Credential> findCredentialsPageByUser(int userID, int afterCredentialID, int limit);
+
     @Select("SELECT * FROM CREDENTIALS WHERE credentialid = #{credentialID}  AND userid = #{userID}")
     Credential getCredentialByIdAndUser(int credentialID, int userID);
 
@@ -25,14 +32,38 @@ public interface CredentialMapper {
     // TODO DELETE FUNCTIONS RETURNING int
 
     @Delete("DELETE FROM CREDENTIALS WHERE credentialid = #{credentialID} AND userid= #{userID}")
-    void deleteByCredentialIDAndUserID(Integer credentialID, Integer userID);
+    boolean deleteByCredentialIDAndUserID(Integer credentialID, Integer userID);
 
     @Delete("DELETE FROM CREDENTIALS")
     void deleteAll();
 
     @Update("UPDATE CREDENTIALS " +
             "SET url = #{url}, username = #{userName},  key = #{key},  password = #{password},  userid = #{userID} " +
-            "WHERE credentialid = #{credentialID}")
+            "WHERE credentialid = #{credentialID} AND userid = #{userID}")
     int update(Credential Credential);
 
+    /*
+     * Edit that leaves the stored password as it is
+     */
+    @Update("UPDATE CREDENTIALS SET url = #{url}, username = #{userName} " +
+            "WHERE credentialid = #{credentialID} AND userid = #{userID}")
+    int updateKeepingPassword(Credential credential);
+
+    /*
+     * Credentials still encrypted with their own key, see CredentialMigrationService
+     */
+    @Select("SELECT * FROM CREDENTIALS WHERE credentialid > #{afterCredentialID} AND key IS NOT NULL " +
+            "ORDER BY credentialid LIMIT #{limit}")
+    List<Credential> findCredentialsWithOwnKey(int afterCredentialID, int limit);
+
+    @Select("SELECT COUNT(*) FROM CREDENTIALS WHERE key IS NOT NULL")
+    int countCredentialsWithOwnKey();
+
+    /*
+     * credential.key is the key the password was encrypted with until now, a credential edited since it was read
+     * is left alone
+     */
+    @Update("UPDATE CREDENTIALS SET key = NULL, password = #{password} WHERE credentialid = #{credentialID} AND key = #{key}")
+    int updateToDataKeyPassword(Credential credential);
+
 }
@@ -0,0 +1,62 @@
+package aug.bueno.cloudstorage.repository.mapper;
+
+import aug.bueno.cloudstorage.model.FileChunk;
+import aug.bueno.cloudstorage.model.FileChunkManifest;
+import org.apache.ibatis.annotations.*;
+
+import java.io.InputStream;
+import java.util.List;
+
+@Mapper
+public interface FileChunkMapper {
+
+    @Select("SELECT chunkhash, chunksize, refcount, storage FROM FILE_CHUNKS WHERE chunkhash = #{chunkHash}")
+    FileChunk getChunk(String chunkHash);
+
+    @Select("SELECT chunkhash, chunksize, refcount, storage FROM FILE_CHUNKS " +
+            "WHERE storage <> #{storage} AND chunkhash > #{afterChunkHash} ORDER BY chunkhash LIMIT #{limit}")
+    List<FileChunk> getChunksNotInStorage(String storage, String afterChunkHash, int limit);
+
+    @Update("UPDATE FILE_CHUNKS SET refcount = refcount + 1 WHERE chunkhash = #{chunkHash}")
+    int incrementRefCount(String chunkHash);
+
+    @Update("UPDATE FILE_CHUNKS SET refcount = refcount - 1 WHERE chunkhash = #{chunkHash}")
+    int decrementRefCount(String chunkHash);
+
+    @Update("UPDATE FILE_CHUNKS SET storage = #{targetStorage} WHERE chunkhash = #{chunkHash} AND storage = #{sourceStorage}")
+    int updateStorage(String chunkHash, String sourceStorage, String targetStorage);
+
+    @Insert("INSERT INTO FILE_CHUNKS (chunkhash, chunksize, refcount, storage) " +
+            "VALUES(#{chunkHash}, #{chunkSize}, #{refCount}, #{storage})")
+    int insert(FileChunk fileChunk);
+
+    @Update("UPDATE FILE_CHUNKS SET chunkdata = #{chunkData} WHERE chunkhash = #{chunkHash}")
+    int updateChunkData(String chunkHash, byte[] chunkData);
+
+    /*
+     * The BLOB stream is only readable while the connection is open, call it inside a transaction. The session cache
+     * is flushed so a chunk read twice in one transaction gets a fresh stream instead of the consumed one.
+     */
+    @Select("SELECT chunkdata FROM FILE_CHUNKS WHERE chunkhash = #{chunkHash}")
+    @Options(flushCache = Options.FlushCachePolicy.TRUE)
+    InputStream getChunkDataStream(String chunkHash);
+
+    @Delete("DELETE FROM FILE_CHUNKS WHERE chunkhash = #{chunkHash} AND refcount <= 0")
+    int deleteIfUnreferenced(String chunkHash);
+
+    @Insert("INSERT INTO FILE_CHUNK_MANIFESTS (fileid, chunkindex, chunkoffset, chunksize, chunkhash) " +
+            "VALUES(#{fileID}, #{chunkIndex}, #{chunkOffset}, #{chunkSize}, #{chunkHash})")
+    int insertManifest(FileChunkManifest fileChunkManifest);
+
+    @Select("SELECT * FROM FILE_CHUNK_MANIFESTS WHERE fileid = #{fileID} ORDER BY chunkindex")
+    List<FileChunkManifest> getManifestByFile(int fileID);
+
+    @Select("SELECT m.fileid, m.chunkindex, m.chunkoffset, m.chunksize, m.chunkhash, c.storage " +
+            "FROM FILE_CHUNK_MANIFESTS m JOIN FILE_CHUNKS c ON c.chunkhash = m.chunkhash " +
+            "WHERE m.fileid = #{fileID} AND m.chunkoffset <= #{end} AND m.chunkoffset + m.chunksize > #{start} " +
+            "ORDER BY m.chunkindex")
+    List<FileChunkManifest> getManifestRangeByFile(int fileID, long start, long end);
+
+    @Delete("DELETE FROM FILE_CHUNK_MANIFESTS WHERE fileid = #{fileID}")
+    int deleteManifestByFile(int fileID);
+}
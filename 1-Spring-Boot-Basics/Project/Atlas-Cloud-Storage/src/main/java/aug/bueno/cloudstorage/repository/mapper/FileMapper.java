@@ -1,29 +1,97 @@
 package aug.bueno.cloudstorage.repository.mapper;
 
 import aug.bueno.cloudstorage.model.File;
-import aug.bueno.cloudstorage.model.Note;
+import aug.bueno.cloudstorage.model.FileProcessingState;
 import org.apache.ibatis.annotations.*;
 
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Mapper
 public interface FileMapper {
 
-    @Select("SELECT * FROM FILES WHERE userid = #{userID}")
+    /*
+     * Everything but filedata: listings and lookups never pull file content, see getFileDataStreamByIdAndUser
+     */
+    String METADATA_COLUMNS = "fileid, filename, contenttype, filesize, userid, contenthash, codec, storedsize, " +
+            "processingstate, processingattempts";
+
+    @Select("SELECT " + METADATA_COLUMNS + " FROM FILES WHERE userid = #{userID}")
     List<File> findAllFilesByUser(int userID);
 
-    @Select("SELECT * FROM FILES WHERE fileId = #{fileID}  AND userid = #{userID}")
+    /*
+     * Keyset page, see PageTokenUtil
+     */
+    @Select("SELECT " + METADATA_COLUMNS + " FROM FILES WHERE userid = #{userID} AND fileid > #{afterFileID} " +
+            "ORDER BY fileid LIMIT #{limit}")
+    List<File> findFilesPageByUser(int userID, int afterFileID, int limit);
+
+    @Select("SELECT " + METADATA_COLUMNS + " FROM FILES WHERE fileId = #{fileID}  AND userid = #{userID}")
     Optional<File> getFileByIdAndUser(int fileID, int userID);
 
-    @Select("SELECT * FROM FILES WHERE filename = #{fileName} AND userid = #{userID}")
+    /*
+     * The BLOB stream is only readable while the connection is open, call it inside a transaction
+     */
+    @Select("SELECT filedata FROM FILES WHERE fileId = #{fileID}  AND userid = #{userID}")
+    InputStream getFileDataStreamByIdAndUser(int fileID, int userID);
+
+    @Select("SELECT " + METADATA_COLUMNS + " FROM FILES WHERE fileId = #{fileID}")
+    Optional<File> getFileById(int fileID);
+
+    @Select("SELECT " + METADATA_COLUMNS + " FROM FILES " +
+            "WHERE filedata IS NOT NULL AND fileid > #{afterFileID} ORDER BY fileid LIMIT #{limit}")
+    List<File> findFilesWithInlineData(int afterFileID, int limit);
+
+    @Select("SELECT " + METADATA_COLUMNS + " FROM FILES WHERE filename = #{fileName} AND userid = #{userID}")
     List<File> findFileByNameAndUserID(String fileName, int userID);
 
-    @Insert("INSERT INTO FILES (filename, contenttype, filesize, userid, filedata) " +
-            "VALUES(#{fileName}, #{contentType}, #{fileSize}, #{userID}, #{fileData})")
+    @Select("SELECT EXISTS(SELECT 1 FROM FILES WHERE userid = #{userID} AND filename = #{fileName})")
+    boolean existsByNameAndUserID(String fileName, int userID);
+
+    /*
+     * The content itself goes to FILE_CHUNKS, see FileChunkService. filedata is only read for rows stored before that
+     */
+    @Insert("INSERT INTO FILES (filename, contenttype, filesize, userid, processingstate, processingdueat) " +
+            "VALUES(#{fileName}, #{contentType}, #{fileSize}, #{userID}, #{processingState}, #{processingDueAt})")
     @Options(useGeneratedKeys = true, keyProperty = "fileID")
     int insert(File file);
 
+    @Update("UPDATE FILES " +
+            "SET contenthash = #{contentHash}, filesize = #{fileSize}, codec = #{codec}, storedsize = #{storedSize} " +
+            "WHERE fileId = #{fileID}")
+    int updateStoredContent(File file);
+
+    @Update("UPDATE FILES SET contenthash = #{contentHash} WHERE fileId = #{fileID}")
+    int updateContentHash(int fileID, String contentHash);
+
+    @Update("UPDATE FILES SET contenttype = #{contentType} WHERE fileId = #{fileID}")
+    int updateContentType(int fileID, String contentType);
+
+    @Select("SELECT fileid FROM FILES WHERE processingstate = 'PENDING' AND processingdueat <= #{dueBefore} " +
+            "ORDER BY processingdueat LIMIT #{limit}")
+    List<Integer> findFileIDsDueForProcessing(LocalDateTime dueBefore, int limit);
+
+    /*
+     * Only one worker gets a pending file, the others see 0 updated rows
+     */
+    @Update("UPDATE FILES SET processingstate = 'PROCESSING', processingattempts = processingattempts + 1 " +
+            "WHERE fileId = #{fileID} AND processingstate = 'PENDING'")
+    int claimForProcessing(int fileID);
+
+    @Update("UPDATE FILES SET processingstate = #{processingState}, processingdueat = #{processingDueAt} WHERE fileId = #{fileID}")
+    int updateProcessingState(int fileID, FileProcessingState processingState, LocalDateTime processingDueAt);
+
+    /*
+     * Files left in PROCESSING by a stopped instance go back to the queue
+     */
+    @Update("UPDATE FILES SET processingstate = 'PENDING', processingdueat = #{dueAt} WHERE processingstate = 'PROCESSING'")
+    int resetInterruptedProcessing(LocalDateTime dueAt);
+
+    @Update("UPDATE FILES SET filedata = NULL WHERE fileId = #{fileID}")
+    int clearFileData(int fileID);
+
     @Delete("DELETE FROM FILES WHERE fileId = #{fileID}")
     int delete(Integer fileID);
 
@@ -0,0 +1,20 @@
+package aug.bueno.cloudstorage.repository.mapper;
+
+import aug.bueno.cloudstorage.model.FilePreview;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Optional;
+
+@Mapper
+public interface FilePreviewMapper {
+
+    @Insert("MERGE INTO FILE_PREVIEWS (fileid, contenttype, previewdata) KEY (fileid) " +
+            "VALUES(#{fileID}, #{contentType}, #{previewData})")
+    int save(FilePreview filePreview);
+
+    @Select("SELECT p.fileid, p.contenttype, p.previewdata FROM FILE_PREVIEWS p JOIN FILES f ON f.fileid = p.fileid " +
+            "WHERE p.fileid = #{fileID} AND f.userid = #{userID}")
+    Optional<FilePreview> getPreviewByIdAndUser(int fileID, int userID);
+}
@@ -11,6 +11,12 @@ public interface NoteMapper {
     @Select("SELECT * FROM NOTES WHERE userid = #{userID}")
     List<Note> getAllNotesByUser(int userID);
 
+    /*
+     * Keyset page, see PageTokenUtil
+     */
+    @Select("SELECT * FROM NOTES WHERE userid = #{userID} AND noteid > #{afterNoteID} ORDER BY noteid LIMIT #{limit}")
+    List<Note> findNotesPageByUser(int userID, int afterNoteID, int limit);
+
     @Select("SELECT * FROM NOTES WHERE noteid = #{noteID}  AND userid = #{userID}")
     Note getNoteByIdAndUser(int noteID, int userID);
 
@@ -35,7 +41,7 @@ public interface NoteMapper {
 
     @Update("UPDATE notes " +
             "SET notetitle = #{noteTitle}, notedescription = #{noteDescription} " +
-            "WHERE noteid = #{noteID}")
+            "WHERE noteid = #{noteID} AND userid = #{userID}")
     int update(Note note);
 }
 
@@ -0,0 +1,53 @@
+package aug.bueno.cloudstorage.repository.mapper;
+
+import aug.bueno.cloudstorage.model.UploadSession;
+import aug.bueno.cloudstorage.model.UploadSessionChunk;
+import aug.bueno.cloudstorage.model.UploadSessionPart;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Mapper
+public interface UploadSessionMapper {
+
+    @Insert("INSERT INTO UPLOAD_SESSIONS (uploadid, filename, contenttype, filesize, userid, createdat) " +
+            "VALUES(#{uploadID}, #{fileName}, #{contentType}, #{fileSize}, #{userID}, #{createdAt})")
+    int insert(UploadSession uploadSession);
+
+    @Select("SELECT * FROM UPLOAD_SESSIONS WHERE uploadid = #{uploadID} AND userid = #{userID}")
+    Optional<UploadSession> getSessionByIdAndUser(String uploadID, int userID);
+
+    /*
+     * Serializes commit and abort of a session, part writes don't take the lock so they can run in parallel
+     */
+    @Select("SELECT * FROM UPLOAD_SESSIONS WHERE uploadid = #{uploadID} AND userid = #{userID} FOR UPDATE")
+    Optional<UploadSession> lockSessionByIdAndUser(String uploadID, int userID);
+
+    @Select("SELECT * FROM UPLOAD_SESSIONS WHERE createdat < #{createdBefore} ORDER BY createdat LIMIT #{limit}")
+    List<UploadSession> findSessionsCreatedBefore(LocalDateTime createdBefore, int limit);
+
+    @Delete("DELETE FROM UPLOAD_SESSIONS WHERE uploadid = #{uploadID}")
+    int delete(String uploadID);
+
+    @Insert("INSERT INTO UPLOAD_SESSION_PARTS (uploadid, partnumber, partsize, parthash) " +
+            "VALUES(#{uploadID}, #{partNumber}, #{partSize}, #{partHash})")
+    int insertPart(UploadSessionPart uploadSessionPart);
+
+    @Select("SELECT * FROM UPLOAD_SESSION_PARTS WHERE uploadid = #{uploadID} ORDER BY partnumber")
+    List<UploadSessionPart> getPartsBySession(String uploadID);
+
+    @Delete("DELETE FROM UPLOAD_SESSION_PARTS WHERE uploadid = #{uploadID} AND partnumber = #{partNumber}")
+    int deletePart(String uploadID, int partNumber);
+
+    @Insert("INSERT INTO UPLOAD_SESSION_CHUNKS (uploadid, partnumber, chunkindex, chunksize, chunkhash) " +
+            "VALUES(#{uploadID}, #{partNumber}, #{chunkIndex}, #{chunkSize}, #{chunkHash})")
+    int insertChunk(UploadSessionChunk uploadSessionChunk);
+
+    @Select("SELECT * FROM UPLOAD_SESSION_CHUNKS WHERE uploadid = #{uploadID} ORDER BY partnumber, chunkindex")
+    List<UploadSessionChunk> getChunksBySession(String uploadID);
+
+    @Select("SELECT * FROM UPLOAD_SESSION_CHUNKS WHERE uploadid = #{uploadID} AND partnumber = #{partNumber} ORDER BY chunkindex")
+    List<UploadSessionChunk> getChunksByPart(String uploadID, int partNumber);
+}
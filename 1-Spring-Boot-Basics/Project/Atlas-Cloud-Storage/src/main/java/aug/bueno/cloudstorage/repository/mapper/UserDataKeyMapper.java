@@ -0,0 +1,38 @@
+package aug.bueno.cloudstorage.repository.mapper;
+
+import aug.bueno.cloudstorage.model.UserDataKey;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * The data key of every user, wrapped by the master key named in masterkeyalias, see DataKeyService
+ */
+@Mapper
+public interface UserDataKeyMapper {
+
+    @Select("SELECT * FROM USER_DATA_KEYS WHERE userid = #{userID}")
+    Optional<UserDataKey> getDataKey(int userID);
+
+    @Insert("INSERT INTO USER_DATA_KEYS (userid, wrappedkey, masterkeyalias, createdat) " +
+            "VALUES(#{userID}, #{wrappedKey}, #{masterKeyAlias}, #{createdAt})")
+    int insert(UserDataKey userDataKey);
+
+    @Select("SELECT * FROM USER_DATA_KEYS WHERE masterkeyalias <> #{masterKeyAlias} AND userid > #{afterUserID} " +
+            "ORDER BY userid LIMIT #{limit}")
+    List<UserDataKey> findDataKeysNotWrappedWith(String masterKeyAlias, int afterUserID, int limit);
+
+    /*
+     * Only replaces the key still wrapped with the expected master key, two rotations running at once can't clash
+     */
+    @Update("UPDATE USER_DATA_KEYS SET wrappedkey = #{wrappedKey}, masterkeyalias = #{masterKeyAlias} " +
+            "WHERE userid = #{userID} AND masterkeyalias = #{previousMasterKeyAlias}")
+    int updateWrappedKey(int userID, String wrappedKey, String masterKeyAlias, String previousMasterKeyAlias);
+
+    @Select("SELECT COUNT(*) FROM USER_DATA_KEYS WHERE masterkeyalias <> #{masterKeyAlias}")
+    int countDataKeysNotWrappedWith(String masterKeyAlias);
+}
@@ -3,6 +3,7 @@ package aug.bueno.cloudstorage.repository.mapper;
 import aug.bueno.cloudstorage.model.User;
 import org.apache.ibatis.annotations.*;
 
+import java.util.List;
 import java.util.Optional;
 
 @Mapper
@@ -14,11 +15,17 @@ public interface UserMapper {
     @Select("SELECT * FROM USERS WHERE username = #{username}")
     Optional<User> getUserByName(String username);
 
+    @Select("SELECT userid FROM USERS ORDER BY userid")
+    List<Integer> findAllUserIDs();
+
     @Insert("INSERT INTO USERS (username, salt, password, firstname, lastname) " +
             "VALUES(#{userName}, #{salt}, #{password}, #{firstName}, #{lastName})")
     @Options(useGeneratedKeys = true, keyProperty = "userID")
     int insert(User user);
 
+    @Update("UPDATE USERS SET salt = #{salt}, password = #{password} WHERE userid = #{userID}")
+    int updatePassword(User user);
+
     @Delete("DELETE FROM USERS WHERE userid = #{userid}")
     void deleteUser(int userid);
 }
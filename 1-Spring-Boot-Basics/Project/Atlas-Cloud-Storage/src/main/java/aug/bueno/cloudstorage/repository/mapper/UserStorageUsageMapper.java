@@ -0,0 +1,66 @@
+package aug.bueno.cloudstorage.repository.mapper;
+
+import aug.bueno.cloudstorage.model.UserStorageUsage;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * Running totals of FILES per user, kept in step by QuotaService so nothing has to sum FILES.filesize. pendingbytes
+ * is the size of the parts held by open upload sessions, it counts toward the quota like usedbytes.
+ */
+@Mapper
+public interface UserStorageUsageMapper {
+
+    @Select("SELECT userid, usedbytes, filecount, pendingbytes FROM USER_STORAGE_USAGE WHERE userid = #{userID}")
+    Optional<UserStorageUsage> getUsage(int userID);
+
+    @Insert("INSERT INTO USER_STORAGE_USAGE (userid, usedbytes, filecount) VALUES(#{userID}, 0, 0)")
+    int insert(int userID);
+
+    /*
+     * The check and the increment are one statement, concurrent uploads can't go over the quota together
+     */
+    @Update("UPDATE USER_STORAGE_USAGE SET usedbytes = usedbytes + #{bytes}, filecount = filecount + 1 " +
+            "WHERE userid = #{userID} AND usedbytes + pendingbytes + #{bytes} <= #{maxBytes}")
+    int addFile(int userID, long bytes, long maxBytes);
+
+    /*
+     * Turns bytes reserved with reservePending into a file. Reserved bytes are already within the quota, only the part
+     * of the file that was not reserved is checked.
+     */
+    @Update("UPDATE USER_STORAGE_USAGE SET usedbytes = usedbytes + #{bytes}, filecount = filecount + 1, " +
+            "pendingbytes = GREATEST(pendingbytes - #{bytes}, 0) " +
+            "WHERE userid = #{userID} AND usedbytes + GREATEST(pendingbytes, #{bytes}) <= #{maxBytes}")
+    int addPendingFile(int userID, long bytes, long maxBytes);
+
+    /*
+     * Corrects the size of a file already counted, growing it only within the quota
+     */
+    @Update("UPDATE USER_STORAGE_USAGE SET usedbytes = GREATEST(usedbytes + #{deltaBytes}, 0) " +
+            "WHERE userid = #{userID} AND (#{deltaBytes} <= 0 OR usedbytes + pendingbytes + #{deltaBytes} <= #{maxBytes})")
+    int resizeFile(int userID, long deltaBytes, long maxBytes);
+
+    /*
+     * Same single statement check as addFile, for the bytes an upload session holds before its commit
+     */
+    @Update("UPDATE USER_STORAGE_USAGE SET pendingbytes = pendingbytes + #{bytes} " +
+            "WHERE userid = #{userID} AND usedbytes + pendingbytes + #{bytes} <= #{maxBytes}")
+    int reservePending(int userID, long bytes, long maxBytes);
+
+    @Update("UPDATE USER_STORAGE_USAGE SET pendingbytes = GREATEST(pendingbytes - #{bytes}, 0) WHERE userid = #{userID}")
+    int releasePending(int userID, long bytes);
+
+    @Update("UPDATE USER_STORAGE_USAGE SET usedbytes = GREATEST(usedbytes - #{bytes}, 0), filecount = GREATEST(filecount - 1, 0) " +
+            "WHERE userid = #{userID}")
+    int removeFile(int userID, long bytes);
+
+    @Select("SELECT s.userid, u.username, s.usedbytes, s.filecount, s.pendingbytes " +
+            "FROM USER_STORAGE_USAGE s JOIN USERS u ON u.userid = s.userid " +
+            "ORDER BY s.usedbytes DESC LIMIT #{limit}")
+    List<UserStorageUsage> findTopConsumers(int limit);
+}
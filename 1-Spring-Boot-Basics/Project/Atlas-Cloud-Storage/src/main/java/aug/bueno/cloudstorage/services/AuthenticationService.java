@@ -3,24 +3,50 @@ package aug.bueno.cloudstorage.services;
 
 import aug.bueno.cloudstorage.model.User;
 import aug.bueno.cloudstorage.repository.mapper.UserMapper;
+import aug.bueno.cloudstorage.services.util.BoundedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 public class AuthenticationService implements AuthenticationProvider {
 
+    public static final String ROLE_ADMIN = "ROLE_ADMIN";
+
+    private Logger LOGGER = LoggerFactory.getLogger(AuthenticationService.class);
+
     private UserMapper userMapper;
     private HashService hashService;
+    private Set<String> adminUserNames;
+    private BoundedCache<String, Boolean> verifiedLogins;
 
-    public AuthenticationService(UserMapper userMapper, HashService hashService) {
+    public AuthenticationService(UserMapper userMapper, HashService hashService,
+                                 @Value("${atlas.security.admin-usernames:}") String[] adminUserNames,
+                                 @Value("${atlas.security.login-cache.max-size:10000}") int verifiedLoginsSize,
+                                 @Value("${atlas.security.login-cache.ttl:2m}") Duration verifiedLoginsTtl) {
         this.userMapper = userMapper;
         this.hashService = hashService;
+        this.verifiedLogins = new BoundedCache<>(verifiedLoginsSize, verifiedLoginsTtl);
+        this.adminUserNames = Arrays.stream(adminUserNames)
+                .map(String::trim)
+                .filter(adminUserName -> !adminUserName.isEmpty())
+                .collect(Collectors.toSet());
     }
 
     @Override
@@ -32,15 +58,49 @@ public class AuthenticationService implements AuthenticationProvider {
 
         if (userOp.isPresent()) {
             User user = userOp.get();
-            final String encodedSalt = user.getSalt();
-            final String hashedPassword = hashService.getHashedValue(password, encodedSalt);
-            if (user.getPassword().equals(hashedPassword)) {
-                return new UsernamePasswordAuthenticationToken(username, password, new ArrayList<>());
+            if (this.isPasswordValid(user, password)) {
+                return new UsernamePasswordAuthenticationToken(UserService.userToPrincipal(user), password,
+                        this.getAuthorities(username));
             }
         }
         return null;
     }
 
+    /*
+     * Successful verifications are cached for a short while, keyed by a digest of the credentials and of the stored
+     * hash, so a password change never matches an old entry. Failures are never cached.
+     */
+    private boolean isPasswordValid(final User user, final String password) {
+        final String verificationKey = hashService.getKeyedDigest(user.getUserName(), password, user.getPassword());
+
+        final boolean valid = Objects.nonNull(verifiedLogins.get(verificationKey,
+                key -> hashService.verifyPassword(password, user.getSalt(), user.getPassword()) ? Boolean.TRUE : null));
+
+        if (valid && hashService.needsRehash(user.getPassword())) {
+            this.rehash(user, password);
+        }
+        return valid;
+    }
+
+    /*
+     * Moves the stored hash to the configured algorithm and cost, the login goes on with the old one if this fails
+     */
+    private void rehash(final User user, final String password) {
+        try {
+            user.setSalt(hashService.getEncodedSalt());
+            user.setPassword(hashService.getPasswordHash(password, user.getSalt()));
+            userMapper.updatePassword(user);
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not rehash the password of user {}: {}", user.getUserID(), e.getMessage());
+        }
+    }
+
+    public List<GrantedAuthority> getAuthorities(final String username) {
+        return adminUserNames.contains(username)
+                ? List.of(new SimpleGrantedAuthority(ROLE_ADMIN))
+                : new ArrayList<>();
+    }
+
     @Override
     public boolean supports(Class<?> authentication) {
         return authentication.equals(UsernamePasswordAuthenticationToken.class);
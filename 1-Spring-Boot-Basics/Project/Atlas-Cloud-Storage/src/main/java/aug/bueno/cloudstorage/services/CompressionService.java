@@ -0,0 +1,110 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.services.util.NonClosingOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.InflaterOutputStream;
+
+/*
+ * Picks how a file is stored. Already-compressed media is always stored as is, anything else is deflated when a
+ * sample of its first bytes shrinks enough. The codec names are HTTP content-codings, so stored bytes can be sent
+ * unchanged to clients that accept them.
+ */
+@Service
+public class CompressionService {
+
+    public static final String CODEC_IDENTITY = "identity";
+    public static final String CODEC_DEFLATE = "deflate";
+
+    public static final int SAMPLE_SIZE = 64 * 1024;
+
+    private static final List<String> INCOMPRESSIBLE_TYPES = List.of(
+            "image/*", "video/*", "audio/*", "font/woff", "font/woff2",
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/x-bzip2", "application/x-xz", "application/zstd");
+
+    private static final List<String> COMPRESSIBLE_TYPES = List.of("image/svg+xml", "image/bmp", "image/x-ms-bmp");
+
+    private boolean enabled;
+    private double maxSampleRatio;
+
+    public CompressionService(@Value("${atlas.storage.compression.enabled:true}") boolean enabled,
+                              @Value("${atlas.storage.compression.max-sample-ratio:0.8}") double maxSampleRatio) {
+        this.enabled = enabled;
+        this.maxSampleRatio = maxSampleRatio;
+    }
+
+    public String chooseCodec(final String contentType, final byte[] sample, final int length) {
+
+        if (!enabled || length == 0 || this.isIncompressible(contentType)) {
+            return CODEC_IDENTITY;
+        }
+
+        final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(sample, 0, length);
+            deflater.finish();
+
+            final byte[] output = new byte[length];
+            long compressed = 0;
+            while (!deflater.finished() && compressed < length) {
+                compressed += deflater.deflate(output);
+            }
+
+            return deflater.finished() && compressed <= length * maxSampleRatio ? CODEC_DEFLATE : CODEC_IDENTITY;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Wraps the input so that its bytes are read encoded with the codec. The returned stream must be closed, closing
+     * it frees the native memory of the Deflater and closes the given input.
+     */
+    public InputStream encode(final String codec, final InputStream inputStream) {
+        return CODEC_DEFLATE.equals(codec) ? new DeflaterInputStream(inputStream) : inputStream;
+    }
+
+    /**
+     * Wraps the output so that stored bytes written to it come out decoded. Closing the returned stream finishes
+     * the decoding but leaves the given output open.
+     */
+    public OutputStream decode(final String codec, final OutputStream outputStream) {
+        if (!CODEC_DEFLATE.equals(codec)) {
+            return outputStream;
+        }
+
+        return new InflaterOutputStream(new NonClosingOutputStream(outputStream));
+    }
+
+    public static boolean isIdentity(final String codec) {
+        return Objects.isNull(codec) || CODEC_IDENTITY.equals(codec);
+    }
+
+    /**
+     * Whether content of this type is already compressed, so deflating it again is wasted work.
+     */
+    public boolean isIncompressible(final String contentType) {
+        final MimeType mimeType;
+        try {
+            mimeType = MimeTypeUtils.parseMimeType(Objects.isNull(contentType) ? "" : contentType);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        if (COMPRESSIBLE_TYPES.stream().map(MimeTypeUtils::parseMimeType).anyMatch(mimeType::isCompatibleWith)) {
+            return false;
+        }
+        return INCOMPRESSIBLE_TYPES.stream().map(MimeTypeUtils::parseMimeType).anyMatch(type -> type.includes(mimeType));
+    }
+}
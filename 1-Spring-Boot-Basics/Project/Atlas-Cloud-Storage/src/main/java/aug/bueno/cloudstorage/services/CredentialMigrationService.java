@@ -0,0 +1,255 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.CredentialMigrationStatusDTO;
+import aug.bueno.cloudstorage.model.Credential;
+import aug.bueno.cloudstorage.model.SearchItemType;
+import aug.bueno.cloudstorage.repository.mapper.CredentialMapper;
+import org.apache.ibatis.executor.BatchResult;
+import org.apache.ibatis.session.ExecutorType;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.mybatis.spring.SqlSessionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/*
+ * Moves the credentials still encrypted with their own key to the data key of their user, in the background.
+ *
+ * Batches are read by keyset on credentialid, re-encrypted in slices on a bounded worker pool and written back with
+ * one JDBC batch per batch. Migrated rows no longer match the query, so an interrupted migration resumes where it
+ * stopped by simply being started again. A credential edited by its user in between is skipped, the edit already
+ * stored it with the data key. The migration paces itself to atlas.security.credential-migration.max-rows-per-second.
+ */
+@Service
+public class CredentialMigrationService {
+
+    public static final String STATE_IDLE = "IDLE";
+    public static final String STATE_RUNNING = "RUNNING";
+    public static final String STATE_DONE = "DONE";
+    public static final String STATE_FAILED = "FAILED";
+
+    private Logger LOGGER = LoggerFactory.getLogger(CredentialMigrationService.class);
+
+    private CredentialMapper credentialMapper;
+    private EncryptionService encryptionService;
+    private DataKeyService dataKeyService;
+    private ListCacheService listCacheService;
+    private DataVersionService dataVersionService;
+    private ThreadPoolTaskExecutor credentialMigrationCoordinator;
+    private ThreadPoolTaskExecutor credentialMigrationExecutor;
+    private TransactionTemplate transactionTemplate;
+    private SqlSessionTemplate batchSqlSessionTemplate;
+    private int batchSize;
+    private int maxRowsPerSecond;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final LongAdder migrated = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile String state = STATE_IDLE;
+    private volatile int pending;
+    private volatile int lastCredentialID;
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public CredentialMigrationService(CredentialMapper credentialMapper, EncryptionService encryptionService,
+                                      DataKeyService dataKeyService, ListCacheService listCacheService,
+                                      DataVersionService dataVersionService,
+                                      ThreadPoolTaskExecutor credentialMigrationCoordinator,
+                                      ThreadPoolTaskExecutor credentialMigrationExecutor,
+                                      TransactionTemplate transactionTemplate, SqlSessionFactory sqlSessionFactory,
+                                      @Value("${atlas.security.credential-migration.batch-size:500}") int batchSize,
+                                      @Value("${atlas.security.credential-migration.max-rows-per-second:1000}") int maxRowsPerSecond) {
+        this.credentialMapper = credentialMapper;
+        this.encryptionService = encryptionService;
+        this.dataKeyService = dataKeyService;
+        this.listCacheService = listCacheService;
+        this.dataVersionService = dataVersionService;
+        this.credentialMigrationCoordinator = credentialMigrationCoordinator;
+        this.credentialMigrationExecutor = credentialMigrationExecutor;
+        this.transactionTemplate = transactionTemplate;
+        // Not a bean: a SqlSessionTemplate bean would replace the one the mappers use
+        this.batchSqlSessionTemplate = new SqlSessionTemplate(sqlSessionFactory, ExecutorType.BATCH);
+        this.batchSize = batchSize;
+        this.maxRowsPerSecond = maxRowsPerSecond;
+    }
+
+    /**
+     * Starts a migration in the background, false when one is already running.
+     */
+    public boolean start() {
+
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+
+        migrated.reset();
+        conflicts.reset();
+        failed.reset();
+        lastCredentialID = 0;
+        finishedAt = null;
+        startedAt = LocalDateTime.now();
+        pending = credentialMapper.countCredentialsWithOwnKey();
+        state = STATE_RUNNING;
+
+        try {
+            credentialMigrationCoordinator.execute(this::migrate);
+        } catch (TaskRejectedException e) {
+            state = STATE_FAILED;
+            running.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    public CredentialMigrationStatusDTO getStatus() {
+        return CredentialMigrationStatusDTO.builder()
+                .state(state)
+                .pending(pending)
+                .migrated(migrated.sum())
+                .conflicts(conflicts.sum())
+                .failed(failed.sum())
+                .lastCredentialID(lastCredentialID)
+                .startedAt(startedAt)
+                .finishedAt(finishedAt)
+                .build();
+    }
+
+    private void migrate() {
+        LOGGER.info("Migrating {} credentials to data keys", pending);
+
+        try {
+            int afterCredentialID = 0;
+            List<Credential> batch;
+
+            while (!(batch = credentialMapper.findCredentialsWithOwnKey(afterCredentialID, batchSize)).isEmpty()) {
+                final long batchStart = System.nanoTime();
+
+                this.writeBack(this.reencrypt(batch));
+
+                afterCredentialID = batch.get(batch.size() - 1).getCredentialID();
+                lastCredentialID = afterCredentialID;
+
+                this.throttle(batch.size(), System.nanoTime() - batchStart);
+            }
+
+            state = STATE_DONE;
+            LOGGER.info("Credential migration done: {} migrated, {} edited meanwhile, {} failed",
+                    migrated.sum(), conflicts.sum(), failed.sum());
+
+        } catch (RuntimeException | InterruptedException e) {
+            state = STATE_FAILED;
+            LOGGER.error("Credential migration stopped after credential {}: {}", lastCredentialID, e.getMessage());
+
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    /*
+     * One slice per worker, the coordinator waits for all of them
+     */
+    private List<Credential> reencrypt(final List<Credential> batch) {
+        final int slices = Math.min(credentialMigrationExecutor.getMaxPoolSize(), batch.size());
+        final int sliceSize = (batch.size() + slices - 1) / slices;
+        final List<CompletableFuture<List<Credential>>> futures = new ArrayList<>(slices);
+
+        for (int from = 0; from < batch.size(); from += sliceSize) {
+            final List<Credential> slice = batch.subList(from, Math.min(from + sliceSize, batch.size()));
+
+            futures.add(CompletableFuture.supplyAsync(() -> slice.stream()
+                    .map(this::reencrypt)
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toList()), credentialMigrationExecutor));
+        }
+
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .flatMap(List::stream)
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * The credential sealed with the data key, still carrying its previous key for the conditional update. Null when
+     * it can't be decrypted, it stays as it is.
+     */
+    private Credential reencrypt(final Credential credential) {
+        try {
+            final String password = encryptionService.decryptValue(credential.getPassword(), credential.getKey());
+
+            return Credential.builder()
+                    .credentialID(credential.getCredentialID())
+                    .userID(credential.getUserID())
+                    .key(credential.getKey())
+                    .password(encryptionService.sealCredentialPassword(password,
+                            dataKeyService.getDataKey(credential.getUserID()), credential.getUserID()))
+                    .build();
+
+        } catch (RuntimeException e) {
+            failed.increment();
+            LOGGER.error("Could not re-encrypt credential {}: {}", credential.getCredentialID(), e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeBack(final List<Credential> credentials) {
+
+        if (credentials.isEmpty()) {
+            return;
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            final CredentialMapper batchMapper = batchSqlSessionTemplate.getMapper(CredentialMapper.class);
+            credentials.forEach(batchMapper::updateToDataKeyPassword);
+
+            for (BatchResult batchResult : batchSqlSessionTemplate.flushStatements()) {
+                for (int updateCount : batchResult.getUpdateCounts()) {
+                    (updateCount > 0 ? migrated : conflicts).increment();
+                }
+            }
+        });
+
+        // The listed passwords changed, once committed
+        credentials.stream()
+                .map(Credential::getUserID)
+                .distinct()
+                .forEach(userID -> {
+                    listCacheService.invalidate(SearchItemType.CREDENTIAL, userID);
+                    dataVersionService.changed(userID);
+                });
+    }
+
+    /*
+     * Sleeps off whatever the batch took less than its share of max-rows-per-second
+     */
+    private void throttle(final int rows, final long elapsedNanos) throws InterruptedException {
+
+        if (maxRowsPerSecond <= 0) {
+            return;
+        }
+
+        final long budgetNanos = TimeUnit.SECONDS.toNanos(rows) / maxRowsPerSecond;
+
+        if (elapsedNanos < budgetNanos) {
+            TimeUnit.NANOSECONDS.sleep(budgetNanos - elapsedNanos);
+        }
+    }
+}
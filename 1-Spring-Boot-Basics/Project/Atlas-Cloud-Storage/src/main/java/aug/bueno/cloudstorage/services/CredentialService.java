@@ -1,13 +1,19 @@
 package aug.bueno.cloudstorage.services;
 
 import aug.bueno.cloudstorage.dto.CredentialFormDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
 import aug.bueno.cloudstorage.model.Credential;
+import aug.bueno.cloudstorage.model.SearchItemType;
 import aug.bueno.cloudstorage.repository.mapper.CredentialMapper;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import aug.bueno.cloudstorage.services.util.PageTokenUtil;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
-import java.util.Base64;
 import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -15,10 +21,18 @@ public class CredentialService {
 
     private CredentialMapper credentialMapper;
     private EncryptionService encryptionService;
+    private DataKeyService dataKeyService;
+    private ListCacheService listCacheService;
+    private ApplicationEventPublisher applicationEventPublisher;
 
-    public CredentialService(CredentialMapper credentialMapper, EncryptionService encryptionService) {
+    public CredentialService(CredentialMapper credentialMapper, EncryptionService encryptionService,
+                             DataKeyService dataKeyService, ListCacheService listCacheService,
+                             ApplicationEventPublisher applicationEventPublisher) {
         this.credentialMapper = credentialMapper;
         this.encryptionService = encryptionService;
+        this.dataKeyService = dataKeyService;
+        this.listCacheService = listCacheService;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     public List<CredentialFormDTO> findAllCredentialsUser(final int userID) {
@@ -27,6 +41,25 @@ public class CredentialService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The credentials of the user after the page token, in the order they were created. Their key is left out: with
+     * it, the password of a credential stored before the data keys can be decrypted. The first page comes from the
+     * list cache.
+     */
+    public PageDTO<CredentialFormDTO> findCredentialsPageUser(final int userID, final String pageToken, final int pageSize) {
+        final int afterCredentialID = PageTokenUtil.fromPageToken(pageToken);
+
+        if (afterCredentialID == 0) {
+            return listCacheService.getFirstPage(SearchItemType.CREDENTIAL, userID,
+                    () -> this.readCredentialsPage(userID, afterCredentialID, pageSize));
+        }
+        return this.readCredentialsPage(userID, afterCredentialID, pageSize);
+    }
+
+    /**
+     * Saves the credential. An update without a password keeps the stored one, the edit form only gets the password
+     * once it is revealed.
+     */
     public boolean insertOrUpdateCredential(final CredentialFormDTO credentialFormDTOl, final int userID) {
 
         Credential.CredentialBuilder credentialBuilder = Credential.builder()
@@ -35,32 +68,91 @@ public class CredentialService {
                 .userName(credentialFormDTOl.getUserName())
                 .userID(userID);
 
-        this.setEncryptedPassword(credentialFormDTOl.getPassword(), credentialBuilder);
+        final Credential credential;
+        final boolean saved;
 
         if (credentialFormDTOl.getCredentialID() == null || credentialFormDTOl.getCredentialID().toString().equals("") || credentialFormDTOl.getCredentialID() <= 0) {
-            return credentialMapper.insert(credentialBuilder.build()) > 0;
+            this.setEncryptedPassword(credentialFormDTOl.getPassword(), userID, credentialBuilder);
+            credential = credentialBuilder.build();
+            saved = credentialMapper.insert(credential) > 0;
+        } else if (StringUtils.isEmpty(credentialFormDTOl.getPassword())) {
+            credential = credentialBuilder.build();
+            saved = credentialMapper.updateKeepingPassword(credential) > 0;
         } else {
-            credentialBuilder.credentialID(credentialFormDTOl.getCredentialID());
-            return credentialMapper.update(credentialBuilder.build()) > 0;
+            this.setEncryptedPassword(credentialFormDTOl.getPassword(), userID, credentialBuilder);
+            credential = credentialBuilder.build();
+            saved = credentialMapper.update(credential) > 0;
+        }
+
+        if (saved) {
+            applicationEventPublisher.publishEvent(SearchableItemChangedEvent.saved(SearchItemType.CREDENTIAL,
+                    credential.getCredentialID(), userID, credential.getUrl(), null));
         }
+        return saved;
+    }
+
+    /**
+     * The password of the credential in clear, empty when it doesn't exist for this user.
+     */
+    public Optional<String> findDecryptedPassword(final int credentialID, final int userID) {
+        return Optional.ofNullable(credentialMapper.getCredentialByIdAndUser(credentialID, userID))
+                .map(this::decryptPassword);
     }
 
     public boolean deleteByCredentialID(final Integer credentialID) {
-        return credentialMapper.delete(credentialID);
+        final boolean deleted = credentialMapper.delete(credentialID);
+
+        if (deleted) {
+            applicationEventPublisher.publishEvent(
+                    SearchableItemChangedEvent.removed(SearchItemType.CREDENTIAL, credentialID, null));
+        }
+        return deleted;
     }
 
-    private Credential.CredentialBuilder setEncryptedPassword(final String password, Credential.CredentialBuilder builder) {
-        SecureRandom random = new SecureRandom();
-        byte[] key = new byte[16];
-        random.nextBytes(key);
-        String encodedKey = Base64.getEncoder().encodeToString(key);
+    public boolean deleteByCredentialIDAndUserID(final int credentialID, final int userID) {
+        final boolean deleted = credentialMapper.deleteByCredentialIDAndUserID(credentialID, userID);
 
-        builder.key(encodedKey);
-        builder.password(encryptionService.encryptValue(password, encodedKey));
+        if (deleted) {
+            applicationEventPublisher.publishEvent(
+                    SearchableItemChangedEvent.removed(SearchItemType.CREDENTIAL, credentialID, userID));
+        }
+        return deleted;
+    }
+
+    /*
+     * Sealed with the data key of the user, the key column stays empty. See DataKeyService.
+     */
+    private Credential.CredentialBuilder setEncryptedPassword(final String password, final int userID,
+                                                              Credential.CredentialBuilder builder) {
+        builder.key(null);
+        builder.password(encryptionService.sealCredentialPassword(password, dataKeyService.getDataKey(userID), userID));
 
         return builder;
     }
 
+    /*
+     * Credentials stored before the data keys carry their own key
+     */
+    private String decryptPassword(final Credential credential) {
+
+        if (Objects.nonNull(credential.getKey())) {
+            return encryptionService.decryptValue(credential.getPassword(), credential.getKey());
+        }
+
+        return encryptionService.openCredentialPassword(credential.getPassword(),
+                dataKeyService.getDataKey(credential.getUserID()), credential.getUserID());
+    }
+
+    private PageDTO<CredentialFormDTO> readCredentialsPage(final int userID, final int afterCredentialID,
+                                                           final int pageSize) {
+        return PageTokenUtil.toPage(credentialMapper.findCredentialsPageByUser(userID, afterCredentialID, pageSize + 1),
+                pageSize, Credential::getCredentialID, credential -> {
+                    final CredentialFormDTO credentialFormDTO = this.credentialToCredentialFormDTO(credential);
+                    credentialFormDTO.setKey(null);
+                    return credentialFormDTO;
+                });
+    }
+
     private CredentialFormDTO credentialToCredentialFormDTO(final Credential credential) {
         return CredentialFormDTO.builder()
                 .credentialID(credential.getCredentialID())
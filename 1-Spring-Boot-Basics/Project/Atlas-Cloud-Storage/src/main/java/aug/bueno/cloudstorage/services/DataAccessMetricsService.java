@@ -0,0 +1,46 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.config.ConnectionPoolMetricsTracker;
+import aug.bueno.cloudstorage.config.StatementMetricsInterceptor;
+import aug.bueno.cloudstorage.dto.DataAccessMetricsDTO;
+import org.springframework.stereotype.Service;
+
+/*
+ * Where the time of the data layer goes: per mapper statement and waiting for the connection pool, and how much of it
+ * the list cache saves
+ */
+@Service
+public class DataAccessMetricsService {
+
+    private StatementMetricsInterceptor statementMetricsInterceptor;
+    private ConnectionPoolMetricsTracker connectionPoolMetricsTracker;
+    private HomePageService homePageService;
+    private ListCacheService listCacheService;
+
+    public DataAccessMetricsService(StatementMetricsInterceptor statementMetricsInterceptor,
+                                    ConnectionPoolMetricsTracker connectionPoolMetricsTracker,
+                                    HomePageService homePageService, ListCacheService listCacheService) {
+        this.statementMetricsInterceptor = statementMetricsInterceptor;
+        this.connectionPoolMetricsTracker = connectionPoolMetricsTracker;
+        this.homePageService = homePageService;
+        this.listCacheService = listCacheService;
+    }
+
+    public DataAccessMetricsDTO getMetrics() {
+        return DataAccessMetricsDTO.builder()
+                .connectionPool(connectionPoolMetricsTracker.getConnectionPoolMetrics().orElse(null))
+                .statements(statementMetricsInterceptor.getStatementMetrics())
+                .homePageSectionsTimedOut(homePageService.getTimedOutCount())
+                .homePageSectionsFailed(homePageService.getFailedCount())
+                .listCaches(listCacheService.getCacheMetrics())
+                .build();
+    }
+
+    /**
+     * Starts a new measurement window, e.g. before a load test. The pool gauges are live and not affected.
+     */
+    public void reset() {
+        statementMetricsInterceptor.reset();
+        connectionPoolMetricsTracker.reset();
+    }
+}
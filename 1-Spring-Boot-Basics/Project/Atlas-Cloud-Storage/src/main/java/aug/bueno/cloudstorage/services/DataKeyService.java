@@ -0,0 +1,142 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.model.UserDataKey;
+import aug.bueno.cloudstorage.repository.mapper.UserDataKeyMapper;
+import aug.bueno.cloudstorage.services.util.BoundedCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/*
+ * Envelope encryption: each user has one AES data key, stored wrapped by the master key (see MasterKeyService) in
+ * USER_DATA_KEYS, and their credentials are sealed with it. Unwrapped keys are kept in a bounded cache for a short
+ * while, so decrypting a whole vault costs one unwrap at most.
+ */
+@Service
+public class DataKeyService {
+
+    private static final int DATA_KEY_SIZE = 256;
+    private static final int REWRAP_BATCH_SIZE = 100;
+
+    private Logger LOGGER = LoggerFactory.getLogger(DataKeyService.class);
+
+    private UserDataKeyMapper userDataKeyMapper;
+    private MasterKeyService masterKeyService;
+    private BoundedCache<Integer, SecretKey> dataKeys;
+    private TransactionTemplate newTransactionTemplate;
+
+    public DataKeyService(UserDataKeyMapper userDataKeyMapper, MasterKeyService masterKeyService,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${atlas.security.data-keys.cache.max-size:10000}") int dataKeysCacheSize,
+                          @Value("${atlas.security.data-keys.cache.ttl:5m}") Duration dataKeysCacheTtl) {
+        this.userDataKeyMapper = userDataKeyMapper;
+        this.masterKeyService = masterKeyService;
+        this.dataKeys = new BoundedCache<>(dataKeysCacheSize, dataKeysCacheTtl);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * The data key of the user, created on first use.
+     */
+    public SecretKey getDataKey(final int userID) {
+        return dataKeys.get(userID, this::loadOrCreateDataKey);
+    }
+
+    /**
+     * Re-wraps every data key not wrapped with the current master key, the data keys themselves and so the credentials
+     * sealed with them don't change. Returns the number of keys re-wrapped.
+     */
+    @Scheduled(fixedDelayString = "${atlas.security.data-keys.rewrap-interval:PT1H}")
+    public int rewrapDataKeys() {
+        final String currentAlias = masterKeyService.getCurrentAlias();
+        int rewrapped = 0;
+        int afterUserID = 0;
+        List<UserDataKey> batch;
+
+        do {
+            batch = userDataKeyMapper.findDataKeysNotWrappedWith(currentAlias, afterUserID, REWRAP_BATCH_SIZE);
+
+            for (UserDataKey userDataKey : batch) {
+                afterUserID = userDataKey.getUserID();
+
+                try {
+                    final SecretKey dataKey = masterKeyService.unwrap(userDataKey.getWrappedKey(), userDataKey.getMasterKeyAlias());
+                    rewrapped += userDataKeyMapper.updateWrappedKey(userDataKey.getUserID(), masterKeyService.wrap(dataKey),
+                            currentAlias, userDataKey.getMasterKeyAlias());
+                } catch (IllegalStateException e) {
+                    LOGGER.error("Could not re-wrap the data key of user {}: {}", userDataKey.getUserID(), e.getMessage());
+                }
+            }
+        } while (batch.size() == REWRAP_BATCH_SIZE);
+
+        if (rewrapped > 0) {
+            LOGGER.info("Re-wrapped {} data keys with master key {}", rewrapped, currentAlias);
+        }
+        return rewrapped;
+    }
+
+    public int countDataKeysToRewrap() {
+        return userDataKeyMapper.countDataKeysNotWrappedWith(masterKeyService.getCurrentAlias());
+    }
+
+    public long getDataKeyCacheHitCount() {
+        return dataKeys.getHitCount();
+    }
+
+    public long getDataKeyCacheMissCount() {
+        return dataKeys.getMissCount();
+    }
+
+    /*
+     * A new key is stored in its own transaction: a caller rolling back must not leave a cached key that was never
+     * stored, whatever it sealed with it later would be lost.
+     */
+    private SecretKey loadOrCreateDataKey(final int userID) {
+        final Optional<UserDataKey> userDataKey = userDataKeyMapper.getDataKey(userID);
+
+        if (userDataKey.isPresent()) {
+            return masterKeyService.unwrap(userDataKey.get().getWrappedKey(), userDataKey.get().getMasterKeyAlias());
+        }
+
+        final SecretKey dataKey = newDataKey();
+
+        try {
+            newTransactionTemplate.executeWithoutResult(status -> userDataKeyMapper.insert(UserDataKey.builder()
+                    .userID(userID)
+                    .wrappedKey(masterKeyService.wrap(dataKey))
+                    .masterKeyAlias(masterKeyService.getCurrentAlias())
+                    .createdAt(LocalDateTime.now())
+                    .build()));
+            return dataKey;
+        } catch (DuplicateKeyException e) {
+            // Another request created it first, theirs is the one
+            final UserDataKey stored = userDataKeyMapper.getDataKey(userID).orElseThrow(() -> e);
+            return masterKeyService.unwrap(stored.getWrappedKey(), stored.getMasterKeyAlias());
+        }
+    }
+
+    private static SecretKey newDataKey() {
+        try {
+            final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+            keyGenerator.init(DATA_KEY_SIZE);
+            return keyGenerator.generateKey();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("AES is not available", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.services.events.FileStoredEvent;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A version of the data of each user, moved on every committed change of what their home page shows: notes,
+ * credentials, files and their processing state. The home page ETag is built from it, see HomeController, so checking
+ * whether a page changed costs no query.
+ *
+ * Versions live in memory: the epoch, new at every start, keeps a version from an earlier run from matching. They are
+ * per node, several nodes need sticky sessions or atlas.home.etag.enabled=false.
+ */
+@Service
+public class DataVersionService {
+
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    private final Map<Integer, AtomicLong> versions = new ConcurrentHashMap<>();
+    /* Moved by changes whose user is not known, it is part of every version */
+    private final AtomicLong globalVersion = new AtomicLong();
+
+    public String getVersion(final int userID) {
+        final AtomicLong version = versions.get(userID);
+        return epoch + "." + globalVersion.get() + "." + (Objects.isNull(version) ? 0 : version.get());
+    }
+
+    /**
+     * The data of the user changed, of every user when userID is null. Call it once the change is committed.
+     */
+    public void changed(final Integer userID) {
+
+        if (Objects.isNull(userID)) {
+            globalVersion.incrementAndGet();
+        } else {
+            versions.computeIfAbsent(userID, id -> new AtomicLong()).incrementAndGet();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSearchableItemChanged(final SearchableItemChangedEvent event) {
+        this.changed(event.getUserID());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileStored(final FileStoredEvent event) {
+        this.changed(event.getUserID());
+    }
+}
@@ -5,26 +5,45 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.*;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
-import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
-import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
 
+/*
+ * Cipher.getInstance goes through the provider lookup on every call, which costs more than decrypting a password.
+ * Cipher instances are not thread safe, so each thread keeps one and re-initialises it with the key of every value.
+ *
+ * encryptValue/decryptValue are the original scheme, a random key per value stored next to it. seal/open are AES-GCM
+ * under a key the caller keeps, see DataKeyService, and authenticate the value together with the given associated
+ * data, so a ciphertext moved to another owner doesn't decrypt.
+ */
 @Service
 public class EncryptionService {
+
+    private static final String TRANSFORMATION = "AES/ECB/PKCS5Padding";
+    private static final String AEAD_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_IV_LENGTH = 12;
+    private static final int GCM_TAG_LENGTH = 128;
+
     private Logger logger = LoggerFactory.getLogger(EncryptionService.class);
 
+    private final ThreadLocal<Cipher> ciphers = ThreadLocal.withInitial(() -> newCipher(TRANSFORMATION));
+    private final ThreadLocal<Cipher> aeadCiphers = ThreadLocal.withInitial(() -> newCipher(AEAD_TRANSFORMATION));
+    private final SecureRandom random = new SecureRandom();
+
     public String encryptValue(String data, String key) {
         byte[] encryptedValue = null;
 
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            SecretKey secretKey = new SecretKeySpec(key.getBytes(), "AES");
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
-            encryptedValue = cipher.doFinal(data.getBytes("UTF-8"));
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException | InvalidKeyException
-                | UnsupportedEncodingException | IllegalBlockSizeException | BadPaddingException e) {
+            Cipher cipher = ciphers.get();
+            cipher.init(Cipher.ENCRYPT_MODE, toSecretKey(key));
+            encryptedValue = cipher.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
             logger.error(e.getMessage());
         }
 
@@ -35,15 +54,85 @@ public class EncryptionService {
         byte[] decryptedValue = null;
 
         try {
-            Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
-            SecretKey secretKey = new SecretKeySpec(key.getBytes(), "AES");
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            decryptedValue = cipher.doFinal(Base64.getDecoder().decode(data));
-        } catch (NoSuchAlgorithmException | NoSuchPaddingException
-                | InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
+            decryptedValue = this.decrypt(ciphers.get(), data, key);
+        } catch (InvalidKeyException | IllegalBlockSizeException | BadPaddingException e) {
             logger.error(e.getMessage());
         }
 
-        return new String(decryptedValue);
+        return new String(decryptedValue, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * AES-GCM encryption of the value under the key, as the random IV followed by the ciphertext and its tag.
+     */
+    public byte[] seal(final byte[] value, final SecretKey key, final byte[] associatedData) throws GeneralSecurityException {
+        final byte[] iv = new byte[GCM_IV_LENGTH];
+        random.nextBytes(iv);
+
+        final Cipher cipher = aeadCiphers.get();
+        cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, iv));
+        cipher.updateAAD(associatedData);
+
+        final byte[] sealed = Arrays.copyOf(iv, GCM_IV_LENGTH + cipher.getOutputSize(value.length));
+        cipher.doFinal(value, 0, value.length, sealed, GCM_IV_LENGTH);
+        return sealed;
+    }
+
+    /**
+     * The value of a seal output. Fails with AEADBadTagException when it was altered, or sealed with another key or
+     * associated data.
+     */
+    public byte[] open(final byte[] sealed, final SecretKey key, final byte[] associatedData) throws GeneralSecurityException {
+        final Cipher cipher = aeadCiphers.get();
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH, sealed, 0, GCM_IV_LENGTH));
+        cipher.updateAAD(associatedData);
+        return cipher.doFinal(sealed, GCM_IV_LENGTH, sealed.length - GCM_IV_LENGTH);
+    }
+
+    public String sealCredentialPassword(final String password, final SecretKey dataKey, final int userID) {
+        try {
+            return Base64.getEncoder().encodeToString(
+                    this.seal(password.getBytes(StandardCharsets.UTF_8), dataKey, credentialAssociatedData(userID)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not encrypt the credential password", e);
+        }
+    }
+
+    public String openCredentialPassword(final String sealedPassword, final SecretKey dataKey, final int userID) {
+        try {
+            return new String(this.open(Base64.getDecoder().decode(sealedPassword), dataKey,
+                    credentialAssociatedData(userID)), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not decrypt the credential password", e);
+        }
+    }
+
+    private byte[] decrypt(final Cipher cipher, final String data, final String key)
+            throws InvalidKeyException, IllegalBlockSizeException, BadPaddingException {
+
+        cipher.init(Cipher.DECRYPT_MODE, toSecretKey(key));
+        return cipher.doFinal(Base64.getDecoder().decode(data));
+    }
+
+    /*
+     * The key is used as the bytes of its Base64 text, as it always was, not as the bytes it encodes
+     */
+    private static SecretKey toSecretKey(final String key) {
+        return new SecretKeySpec(key.getBytes(), "AES");
+    }
+
+    /*
+     * Binds a credential password to its owner
+     */
+    private static byte[] credentialAssociatedData(final int userID) {
+        return ("credential:" + userID).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Cipher newCipher(final String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(transformation + " is not available", e);
+        }
     }
 }
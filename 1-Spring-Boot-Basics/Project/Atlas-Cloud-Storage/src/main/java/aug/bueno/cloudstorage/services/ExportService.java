@@ -0,0 +1,128 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.FileFormDTO;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/*
+ * ZIP export of everything a user stored, written straight to the given output. Files are copied one at a time,
+ * each from its own storage stream, so memory use doesn't depend on the number or the size of the files.
+ * Credential passwords and keys are never exported.
+ */
+@Service
+public class ExportService {
+
+    public static final String FILES_FOLDER = "files/";
+
+    private Logger LOGGER = LoggerFactory.getLogger(ExportService.class);
+
+    private FileService fileService;
+    private NoteService noteService;
+    private CredentialService credentialService;
+    private CompressionService compressionService;
+    private ObjectWriter metadataWriter;
+
+    public ExportService(FileService fileService, NoteService noteService, CredentialService credentialService,
+                         CompressionService compressionService, ObjectMapper objectMapper) {
+        this.fileService = fileService;
+        this.noteService = noteService;
+        this.credentialService = credentialService;
+        this.compressionService = compressionService;
+        this.metadataWriter = objectMapper.writerWithDefaultPrettyPrinter().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    public void writeExport(final int userID, final boolean includeMetadata, final OutputStream outputStream) throws IOException {
+
+        final List<FileFormDTO> files = fileService.findAllUserFiles(userID);
+        final ZipOutputStream zip = new ZipOutputStream(outputStream);
+        final Set<String> entryNames = new HashSet<>();
+
+        for (FileFormDTO file : files) {
+            // Media is already compressed, storing it is as small and much cheaper than deflating it again
+            zip.setLevel(compressionService.isIncompressible(file.getContentType())
+                    ? Deflater.NO_COMPRESSION : Deflater.DEFAULT_COMPRESSION);
+            zip.putNextEntry(new ZipEntry(FILES_FOLDER + this.uniqueEntryName(file.getFileName(), entryNames)));
+
+            final long fileSize = Long.parseLong(file.getFileSize());
+
+            if (fileSize > 0 && !fileService.writeFileData(file.getFileID(), userID, 0, fileSize - 1, zip)) {
+                LOGGER.warn("Content of file {} not found, exported empty", file.getFileID());
+            }
+            zip.closeEntry();
+        }
+
+        if (includeMetadata) {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+
+            this.writeMetadataEntry(zip, "files.json", files.stream().map(file -> {
+                final Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("fileName", file.getFileName());
+                entry.put("contentType", file.getContentType());
+                entry.put("fileSize", Long.parseLong(file.getFileSize()));
+                entry.put("sha256", file.getContentHash());
+                return entry;
+            }).collect(Collectors.toList()));
+
+            this.writeMetadataEntry(zip, "notes.json", noteService.findAllNotesUser(userID).stream().map(note -> {
+                final Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("title", note.getNoteTitle());
+                entry.put("description", note.getNoteDescription());
+                return entry;
+            }).collect(Collectors.toList()));
+
+            this.writeMetadataEntry(zip, "credentials.json", credentialService.findAllCredentialsUser(userID).stream().map(credential -> {
+                final Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("url", credential.getUrl());
+                entry.put("userName", credential.getUserName());
+                return entry;
+            }).collect(Collectors.toList()));
+        }
+
+        zip.finish();
+    }
+
+    private void writeMetadataEntry(final ZipOutputStream zip, final String name, final Object metadata) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        metadataWriter.writeValue(zip, metadata);
+        zip.closeEntry();
+    }
+
+    /*
+     * File names come from the uploader: no path separators, so nothing extracts outside the export folder, and
+     * a suffix for the rare duplicates left from before file names were unique
+     */
+    private String uniqueEntryName(final String fileName, final Set<String> entryNames) {
+        String baseName = Objects.toString(fileName, "").replaceAll("[/\\\\:]", "_");
+
+        if (baseName.isBlank() || baseName.equals(".") || baseName.equals("..")) {
+            baseName = "file";
+        }
+
+        String entryName = baseName;
+
+        for (int i = 1; !entryNames.add(entryName); i++) {
+            final int extension = baseName.lastIndexOf('.');
+            entryName = extension > 0
+                    ? baseName.substring(0, extension) + " (" + i + ")" + baseName.substring(extension)
+                    : baseName + " (" + i + ")";
+        }
+        return entryName;
+    }
+}
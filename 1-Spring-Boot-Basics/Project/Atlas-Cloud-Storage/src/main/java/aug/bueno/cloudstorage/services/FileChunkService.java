@@ -0,0 +1,195 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.model.FileChunk;
+import aug.bueno.cloudstorage.model.FileChunkManifest;
+import aug.bueno.cloudstorage.repository.mapper.FileChunkMapper;
+import aug.bueno.cloudstorage.services.storage.BlobStore;
+import aug.bueno.cloudstorage.services.storage.BlobStoreRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.newContentDigest;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.toHex;
+
+/*
+ * Content-addressed storage for file content: files are split in fixed-size chunks keyed by their SHA-256,
+ * FILE_CHUNK_MANIFESTS keeps the ordered list of chunks of each file and FILE_CHUNKS.refcount counts how many
+ * manifest rows (of any user) and pending upload session chunks point to a chunk. Chunk payloads live in a BlobStore. Callers must run inside a transaction.
+ */
+@Service
+public class FileChunkService {
+
+    private static final int MAX_STORE_ATTEMPTS = 5;
+
+    private FileChunkMapper fileChunkMapper;
+    private BlobStoreRegistry blobStoreRegistry;
+    private TransactionTemplate savepointTransactionTemplate;
+    private int chunkSize;
+
+    public FileChunkService(FileChunkMapper fileChunkMapper, BlobStoreRegistry blobStoreRegistry,
+                            PlatformTransactionManager transactionManager,
+                            @Value("${atlas.storage.chunk-size:1MB}") DataSize chunkSize) {
+        this.fileChunkMapper = fileChunkMapper;
+        this.blobStoreRegistry = blobStoreRegistry;
+        this.savepointTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.savepointTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.chunkSize = Math.toIntExact(chunkSize.toBytes());
+    }
+
+    /**
+     * Reads the stream one chunk at a time and writes the manifest of the file. Chunks that are already stored only
+     * get their reference count bumped, so duplicated content costs a manifest row and no BLOB write.
+     *
+     * @return number of bytes stored
+     */
+    public long writeChunks(final int fileID, final InputStream inputStream) throws IOException {
+        return this.writeChunks(inputStream, chunk -> {
+            chunk.setFileID(fileID);
+            fileChunkMapper.insertManifest(chunk);
+        });
+    }
+
+    /**
+     * Stores the stream as chunks and hands every stored chunk, in order, to the consumer, which takes over the
+     * reference the chunk got. The fileID of the chunks is left unset.
+     *
+     * @return number of bytes stored
+     */
+    public long writeChunks(final InputStream inputStream, final Consumer<FileChunkManifest> chunkConsumer) throws IOException {
+        return this.writeChunks(inputStream, Long.MAX_VALUE, chunkConsumer);
+    }
+
+    /**
+     * Like writeChunks(inputStream, chunkConsumer), for streams of at most maxBytes: a longer one fails with
+     * IllegalArgumentException before the chunk that goes past the limit is stored.
+     */
+    public long writeChunks(final InputStream inputStream, final long maxBytes,
+                            final Consumer<FileChunkManifest> chunkConsumer) throws IOException {
+        final byte[] buffer = new byte[chunkSize];
+
+        long offset = 0;
+        int chunkIndex = 0;
+        int read;
+
+        while ((read = inputStream.readNBytes(buffer, 0, buffer.length)) > 0) {
+
+            if (offset + read > maxBytes) {
+                throw new IllegalArgumentException("Content is larger than " + maxBytes + " bytes");
+            }
+
+            chunkConsumer.accept(FileChunkManifest.builder()
+                    .chunkIndex(chunkIndex++)
+                    .chunkOffset(offset)
+                    .chunkSize(read)
+                    .chunkHash(this.storeChunk(buffer, read))
+                    .build());
+
+            offset += read;
+        }
+
+        return offset;
+    }
+
+    /**
+     * Copies the bytes [start, end] (inclusive) of the file from its chunks. Returns false when the file has no
+     * manifest, i.e. its content was stored before chunking existed.
+     */
+    public boolean copyRange(final int fileID, final long start, final long end, final OutputStream outputStream) throws IOException {
+        final List<FileChunkManifest> chunks = fileChunkMapper.getManifestRangeByFile(fileID, start, end);
+
+        if (chunks.isEmpty()) {
+            return false;
+        }
+
+        for (FileChunkManifest chunk : chunks) {
+            final long chunkStart = Math.max(start, chunk.getChunkOffset()) - chunk.getChunkOffset();
+            final long chunkEnd = Math.min(end, chunk.getChunkOffset() + chunk.getChunkSize() - 1) - chunk.getChunkOffset();
+
+            blobStoreRegistry.get(chunk.getStorage()).copyRange(chunk.getChunkHash(), chunkStart, chunkEnd, outputStream);
+        }
+        return true;
+    }
+
+    /**
+     * Drops the manifest of the file and releases its chunks, deleting the ones nobody references anymore.
+     */
+    public void releaseChunks(final int fileID) throws IOException {
+        final List<FileChunkManifest> manifest = fileChunkMapper.getManifestByFile(fileID);
+
+        fileChunkMapper.deleteManifestByFile(fileID);
+
+        for (FileChunkManifest chunk : manifest) {
+            this.releaseChunk(chunk.getChunkHash());
+        }
+    }
+
+    /**
+     * Drops one reference to the chunk, deleting it when nobody references it anymore.
+     */
+    public void releaseChunk(final String chunkHash) throws IOException {
+        fileChunkMapper.decrementRefCount(chunkHash);
+
+        final FileChunk fileChunk = fileChunkMapper.getChunk(chunkHash);
+
+        if (fileChunk.getRefCount() <= 0 && fileChunkMapper.deleteIfUnreferenced(chunkHash) > 0) {
+            blobStoreRegistry.get(fileChunk.getStorage()).delete(chunkHash);
+        }
+    }
+
+    /*
+     * Takes a reference on the stored chunk, or stores it. The insert runs under a savepoint: when a concurrent upload
+     * inserted the same chunk first, only the insert is rolled back (a failed statement would abort the whole
+     * transaction on PostgreSQL) and the reference is taken on that row. The row can also be gone again, released by
+     * its last reference or rolled back, before the increment; every update count is checked and the store retried.
+     */
+    private String storeChunk(final byte[] buffer, final int length) throws IOException {
+        final MessageDigest chunkDigest = newContentDigest();
+        chunkDigest.update(buffer, 0, length);
+        final String chunkHash = toHex(chunkDigest.digest());
+
+        final BlobStore blobStore = blobStoreRegistry.getActive();
+        final FileChunk fileChunk = FileChunk.builder()
+                .chunkHash(chunkHash)
+                .chunkSize(length)
+                .refCount(1)
+                .storage(blobStore.getName())
+                .build();
+
+        for (int attempt = 0; attempt < MAX_STORE_ATTEMPTS; attempt++) {
+
+            if (fileChunkMapper.incrementRefCount(chunkHash) > 0) {
+                return chunkHash;
+            }
+
+            if (this.insertChunk(fileChunk)) {
+                blobStore.put(chunkHash, buffer, length);
+                return chunkHash;
+            }
+        }
+
+        throw new IllegalStateException("Could not store chunk " + chunkHash + " after " + MAX_STORE_ATTEMPTS + " attempts");
+    }
+
+    /*
+     * False when another transaction holds a row of the same chunk
+     */
+    private boolean insertChunk(final FileChunk fileChunk) {
+        try {
+            return Boolean.TRUE.equals(savepointTransactionTemplate.execute(status -> fileChunkMapper.insert(fileChunk) > 0));
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
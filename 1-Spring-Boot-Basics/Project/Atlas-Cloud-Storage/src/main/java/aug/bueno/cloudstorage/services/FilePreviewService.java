@@ -0,0 +1,111 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.model.FilePreview;
+import aug.bueno.cloudstorage.repository.mapper.FilePreviewMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+ * Small PNG previews of uploaded images, rendered by the post-upload pipeline
+ */
+@Service
+public class FilePreviewService {
+
+    public static final String PREVIEW_CONTENT_TYPE = "image/png";
+
+    private FilePreviewMapper filePreviewMapper;
+    private int previewSize;
+    private long maxSourcePixels;
+
+    public FilePreviewService(FilePreviewMapper filePreviewMapper,
+                              @Value("${atlas.processing.preview.size:256}") int previewSize,
+                              @Value("${atlas.processing.preview.max-source-pixels:40000000}") long maxSourcePixels) {
+        this.filePreviewMapper = filePreviewMapper;
+        this.previewSize = previewSize;
+        this.maxSourcePixels = maxSourcePixels;
+    }
+
+    public boolean canRender(final String contentType) {
+        return Objects.nonNull(contentType) && ImageIO.getImageReadersByMIMEType(contentType).hasNext();
+    }
+
+    public Optional<FilePreview> findPreviewByFileIDAndUserID(final int fileID, final int userID) {
+        return filePreviewMapper.getPreviewByIdAndUser(fileID, userID);
+    }
+
+    /**
+     * Scales the image down to fit the preview size and stores it. Returns false when the image can't be decoded or
+     * is too large to decode safely.
+     */
+    public boolean createPreview(final int fileID, final byte[] image) throws IOException {
+
+        final Optional<BufferedImage> source = this.decode(image);
+
+        if (source.isEmpty()) {
+            return false;
+        }
+
+        final int width = source.get().getWidth();
+        final int height = source.get().getHeight();
+        final double scale = Math.min(1.0, (double) previewSize / Math.max(width, height));
+
+        final BufferedImage preview = new BufferedImage(Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale)), BufferedImage.TYPE_INT_ARGB);
+
+        final Graphics2D graphics = preview.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(source.get(), 0, 0, preview.getWidth(), preview.getHeight(), null);
+        } finally {
+            graphics.dispose();
+        }
+
+        final ByteArrayOutputStream previewData = new ByteArrayOutputStream();
+        ImageIO.write(preview, "png", previewData);
+
+        return filePreviewMapper.save(FilePreview.builder()
+                .fileID(fileID)
+                .contentType(PREVIEW_CONTENT_TYPE)
+                .previewData(previewData.toByteArray())
+                .build()) > 0;
+    }
+
+    /*
+     * The dimensions are read from the header first, a tiny file can declare an image that would not fit in memory
+     */
+    private Optional<BufferedImage> decode(final byte[] image) throws IOException {
+
+        try (ImageInputStream imageStream = ImageIO.createImageInputStream(new ByteArrayInputStream(image))) {
+            final Iterator<ImageReader> readers = ImageIO.getImageReaders(imageStream);
+
+            if (!readers.hasNext()) {
+                return Optional.empty();
+            }
+
+            final ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageStream, true, true);
+
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > maxSourcePixels) {
+                    return Optional.empty();
+                }
+                return Optional.ofNullable(reader.read(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.model.File;
+import aug.bueno.cloudstorage.model.FileProcessingState;
+import aug.bueno.cloudstorage.repository.mapper.FileMapper;
+import aug.bueno.cloudstorage.services.events.FileStoredEvent;
+import aug.bueno.cloudstorage.services.util.ContentTypeSniffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.newContentDigest;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.toHex;
+
+/*
+ * Post-upload pipeline: once a new file is committed it is hashed (when the upload path could not do it on the fly),
+ * its media type is sniffed from its first bytes and images get a preview. Jobs run on fileProcessingExecutor and the
+ * state is kept in FILES.processingstate, so a job that fails, is rejected by a full queue or is cut by a restart is
+ * simply picked up again by the sweep, up to atlas.processing.max-attempts.
+ */
+@Service
+public class FileProcessingService {
+
+    private static final int SWEEP_BATCH_SIZE = 100;
+
+    private Logger LOGGER = LoggerFactory.getLogger(FileProcessingService.class);
+
+    private FileMapper fileMapper;
+    private FileService fileService;
+    private FilePreviewService filePreviewService;
+    private DataVersionService dataVersionService;
+    private ThreadPoolTaskExecutor fileProcessingExecutor;
+    private int maxAttempts;
+    private Duration retryDelay;
+    private long maxPreviewSourceSize;
+
+    public FileProcessingService(FileMapper fileMapper, FileService fileService, FilePreviewService filePreviewService,
+                                 DataVersionService dataVersionService, ThreadPoolTaskExecutor fileProcessingExecutor,
+                                 @Value("${atlas.processing.max-attempts:3}") int maxAttempts,
+                                 @Value("${atlas.processing.retry-delay:30s}") Duration retryDelay,
+                                 @Value("${atlas.processing.preview.max-source-size:20MB}") DataSize maxPreviewSourceSize) {
+        this.fileMapper = fileMapper;
+        this.fileService = fileService;
+        this.filePreviewService = filePreviewService;
+        this.dataVersionService = dataVersionService;
+        this.fileProcessingExecutor = fileProcessingExecutor;
+        this.maxAttempts = maxAttempts;
+        this.retryDelay = retryDelay;
+        this.maxPreviewSourceSize = maxPreviewSourceSize.toBytes();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileStored(final FileStoredEvent event) {
+        this.submit(event.getFileID());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedProcessing() {
+        final int interrupted = fileMapper.resetInterruptedProcessing(LocalDateTime.now());
+
+        if (interrupted > 0) {
+            LOGGER.info("{} files interrupted while processing are queued again", interrupted);
+        }
+    }
+
+    /*
+     * Submits due files while the executor has room, the rest waits for the next sweep
+     */
+    @Scheduled(fixedDelayString = "${atlas.processing.sweep-interval:PT30S}")
+    public void submitDueFiles() {
+        final int capacity = fileProcessingExecutor.getThreadPoolExecutor().getQueue().remainingCapacity();
+
+        if (capacity <= 0) {
+            return;
+        }
+
+        final List<Integer> due = fileMapper.findFileIDsDueForProcessing(LocalDateTime.now(), Math.min(capacity, SWEEP_BATCH_SIZE));
+
+        for (Integer fileID : due) {
+            if (!this.submit(fileID)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs the pipeline for a PENDING file. Does nothing when another worker already took it.
+     */
+    public void process(final int fileID) {
+
+        if (fileMapper.claimForProcessing(fileID) == 0) {
+            return;
+        }
+
+        final Optional<File> file = fileMapper.getFileById(fileID);
+
+        if (file.isEmpty()) {
+            return;
+        }
+
+        // The home page shows the processing state
+        dataVersionService.changed(file.get().getUserID());
+
+        try {
+            this.runPipeline(file.get());
+            fileMapper.updateProcessingState(fileID, FileProcessingState.DONE, null);
+
+        } catch (Exception e) {
+            final int attempts = file.get().getProcessingAttempts();
+
+            if (attempts >= maxAttempts) {
+                LOGGER.error("Processing of file {} failed after {} attempts: {}", fileID, attempts, e.getMessage());
+                fileMapper.updateProcessingState(fileID, FileProcessingState.FAILED, null);
+            } else {
+                LOGGER.warn("Processing of file {} failed, attempt {} of {}: {}", fileID, attempts, maxAttempts, e.getMessage());
+                fileMapper.updateProcessingState(fileID, FileProcessingState.PENDING,
+                        LocalDateTime.now().plus(retryDelay.multipliedBy(1L << (attempts - 1))));
+            }
+        } finally {
+            dataVersionService.changed(file.get().getUserID());
+        }
+    }
+
+    private boolean submit(final int fileID) {
+        try {
+            fileProcessingExecutor.execute(() -> this.process(fileID));
+            return true;
+        } catch (TaskRejectedException e) {
+            LOGGER.debug("Processing queue is full, file {} waits for the next sweep", fileID);
+            return false;
+        }
+    }
+
+    private void runPipeline(final File file) throws IOException {
+        final long fileSize = Long.parseLong(file.getFileSize());
+
+        if (fileSize == 0) {
+            return;
+        }
+
+        if (Objects.isNull(file.getContentHash())) {
+            final MessageDigest digest = newContentDigest();
+
+            try (OutputStream digestStream = new DigestOutputStream(OutputStream.nullOutputStream(), digest)) {
+                this.readContent(file, fileSize - 1, digestStream);
+            }
+            fileMapper.updateContentHash(file.getFileID(), toHex(digest.digest()));
+        }
+
+        final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        this.readContent(file, Math.min(fileSize, ContentTypeSniffer.HEAD_SIZE) - 1, head);
+
+        final String contentType = ContentTypeSniffer.resolve(file.getContentType(), head.toByteArray());
+
+        if (!contentType.equals(file.getContentType())) {
+            fileMapper.updateContentType(file.getFileID(), contentType);
+        }
+
+        if (filePreviewService.canRender(contentType) && fileSize <= maxPreviewSourceSize) {
+            final ByteArrayOutputStream image = new ByteArrayOutputStream((int) fileSize);
+            this.readContent(file, fileSize - 1, image);
+
+            filePreviewService.createPreview(file.getFileID(), image.toByteArray());
+        }
+    }
+
+    private void readContent(final File file, final long end, final OutputStream outputStream) throws IOException {
+        if (!fileService.writeFileData(file.getFileID(), file.getUserID(), 0, end, outputStream)) {
+            throw new IOException("Content of file " + file.getFileID() + " not found");
+        }
+    }
+}
@@ -1,21 +1,56 @@
 package aug.bueno.cloudstorage.services;
 
 import aug.bueno.cloudstorage.dto.FileFormDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
 import aug.bueno.cloudstorage.model.File;
+import aug.bueno.cloudstorage.model.FileProcessingState;
+import aug.bueno.cloudstorage.model.SearchItemType;
 import aug.bueno.cloudstorage.repository.mapper.FileMapper;
+import aug.bueno.cloudstorage.services.events.FileStoredEvent;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import aug.bueno.cloudstorage.services.util.CountingInputStream;
+import aug.bueno.cloudstorage.services.util.PageTokenUtil;
+import aug.bueno.cloudstorage.services.util.RangeOutputStream;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StreamUtils;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
+import static aug.bueno.cloudstorage.services.CompressionService.SAMPLE_SIZE;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.newContentDigest;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.toHex;
+
 @Service
 public class FileService {
 
     private FileMapper fileMapper;
+    private FileChunkService fileChunkService;
+    private CompressionService compressionService;
+    private QuotaService quotaService;
+    private ListCacheService listCacheService;
+    private ApplicationEventPublisher applicationEventPublisher;
 
-    public FileService(FileMapper fileMapper) {
+    public FileService(FileMapper fileMapper, FileChunkService fileChunkService, CompressionService compressionService,
+                       QuotaService quotaService, ListCacheService listCacheService,
+                       ApplicationEventPublisher applicationEventPublisher) {
         this.fileMapper = fileMapper;
+        this.fileChunkService = fileChunkService;
+        this.compressionService = compressionService;
+        this.quotaService = quotaService;
+        this.listCacheService = listCacheService;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     public List<FileFormDTO> findAllUserFiles(final int userID) {
@@ -24,14 +59,23 @@ public class FileService {
                 .collect(Collectors.toList());
     }
 
-    public Optional<FileFormDTO> findFileByFileIDAndUserID(final int fileID, final int userID) {
-
-        Optional<File> fileByIdAndUser = fileMapper.getFileByIdAndUser(fileID, userID);
+    /**
+     * The files of the user after the page token, in the order they were uploaded. The first page comes from the list
+     * cache, unless it shows files still being processed: their state changes in the background.
+     */
+    public PageDTO<FileFormDTO> findFilesPageUser(final int userID, final String pageToken, final int pageSize) {
+        final int afterFileID = PageTokenUtil.fromPageToken(pageToken);
 
-        if (fileByIdAndUser.isEmpty()) {
-            return Optional.empty();
+        if (afterFileID == 0) {
+            return listCacheService.getFirstPage(SearchItemType.FILE, userID,
+                    () -> this.readFilesPage(userID, afterFileID, pageSize),
+                    page -> page.getItems().stream().allMatch(file -> isProcessed(file.getProcessingState())));
         }
-        return Optional.of(this.fileToFileFormDTO(fileByIdAndUser.get()));
+        return this.readFilesPage(userID, afterFileID, pageSize);
+    }
+
+    public Optional<FileFormDTO> findFileByFileIDAndUserID(final int fileID, final int userID) {
+        return fileMapper.getFileByIdAndUser(fileID, userID).map(this::fileToFileFormDTO);
     }
 
     public List<FileFormDTO> findFileByFileNameAndUserID(final String fileName, final int userID) {
@@ -40,26 +84,175 @@ public class FileService {
                 .collect(Collectors.toList());
     }
 
-    public boolean insertFile(final FileFormDTO fileFormDTO, final int userID) {
+    public boolean existsFileByFileNameAndUserID(final String fileName, final int userID) {
+        return fileMapper.existsByNameAndUserID(fileName, userID);
+    }
+
+    /**
+     * Accounts the file in the user quota and stores it. Throws QuotaExceededException, before any byte is read,
+     * when the size given in the form doesn't fit, and again if the content turns out longer than that.
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public boolean insertFile(final FileFormDTO fileFormDTO, final int userID) throws IOException {
+
+        // The usage row stays locked until commit, further uploads of the user wait for this one
+        final long declaredSize = Long.parseLong(fileFormDTO.getFileSize());
+        quotaService.addFile(userID, declaredSize);
 
         final File file = File.builder()
                 .contentType(fileFormDTO.getContentType())
                 .fileName(fileFormDTO.getFileName())
                 .fileSize(fileFormDTO.getFileSize())
-                .fileData(fileFormDTO.getFileData())
                 .userID(userID)
+                .processingState(FileProcessingState.PENDING)
+                .processingDueAt(LocalDateTime.now())
                 .build();
 
-        return fileMapper.insert(file) > 0;
+        if (fileMapper.insert(file) <= 0) {
+            return false;
+        }
+
+        final BufferedInputStream fileDataStream = new BufferedInputStream(fileFormDTO.getFileDataStream(), SAMPLE_SIZE);
+        fileDataStream.mark(SAMPLE_SIZE);
+        final byte[] sample = fileDataStream.readNBytes(SAMPLE_SIZE);
+        fileDataStream.reset();
+
+        file.setCodec(compressionService.chooseCodec(file.getContentType(), sample, sample.length));
+
+        if (!this.storeContent(file, fileDataStream)) {
+            return false;
+        }
+
+        quotaService.resizeFile(userID, Long.parseLong(file.getFileSize()) - declaredSize);
+
+        // Type sniffing and previews run after the commit, see FileProcessingService
+        applicationEventPublisher.publishEvent(new FileStoredEvent(file.getFileID(), userID));
+        return true;
+    }
+
+    /**
+     * Copies the bytes [start, end] (inclusive) of the file content straight from storage to the given output,
+     * decoding it when it is stored compressed. Returns false when the file does not exist for this user.
+     */
+    @Transactional(readOnly = true)
+    public boolean writeFileData(final int fileID, final int userID, final long start, final long end,
+                                 final OutputStream outputStream) throws IOException {
+
+        final Optional<File> file = fileMapper.getFileByIdAndUser(fileID, userID);
+
+        if (file.isEmpty()) {
+            return false;
+        }
+
+        if (CompressionService.isIdentity(file.get().getCodec())) {
+            return this.writeStoredData(fileID, userID, start, end, outputStream);
+        }
+
+        // Compressed content can't be seeked, the bytes before the range are decoded and dropped
+        try (OutputStream decodedStream = compressionService.decode(file.get().getCodec(),
+                new RangeOutputStream(outputStream, start, end))) {
+            return this.writeStoredData(fileID, userID, 0, file.get().getStoredSize() - 1, decodedStream);
+        }
+    }
+
+    /**
+     * Copies the content as stored, encoded with the file codec, to the given output.
+     */
+    @Transactional(readOnly = true)
+    public boolean writeEncodedFileData(final int fileID, final int userID, final OutputStream outputStream) throws IOException {
+
+        final Optional<File> file = fileMapper.getFileByIdAndUser(fileID, userID);
+
+        if (file.isEmpty()) {
+            return false;
+        }
+        return this.writeStoredData(fileID, userID, 0, file.get().getStoredSize() - 1, outputStream);
+    }
+
+    @Transactional(rollbackFor = IOException.class)
+    public int deleteByFileIDAndUserID(final int fileID, final int userID) throws IOException {
+
+        final Optional<File> file = fileMapper.getFileByIdAndUser(fileID, userID);
+
+        if (file.isEmpty()) {
+            return 0;
+        }
+
+        return this.delete(file.get());
+    }
+
+    @Transactional(rollbackFor = IOException.class)
+    public int deleteByFileID(final int fileID) throws IOException {
+        final Optional<File> file = fileMapper.getFileById(fileID);
+
+        if (file.isEmpty()) {
+            return 0;
+        }
+
+        return this.delete(file.get());
+    }
+
+    private int delete(final File file) throws IOException {
+        fileChunkService.releaseChunks(file.getFileID());
+
+        final int deleted = fileMapper.delete(file.getFileID());
+
+        if (deleted > 0) {
+            quotaService.removeFile(file.getUserID(), Long.parseLong(file.getFileSize()));
+            applicationEventPublisher.publishEvent(
+                    SearchableItemChangedEvent.removed(SearchItemType.FILE, file.getFileID(), file.getUserID()));
+        }
+        return deleted;
+    }
+
+    /*
+     * Chunks the content of an already inserted FILES row, encoded with file.codec, and records its hash and sizes
+     */
+    private boolean storeContent(final File file, final InputStream fileDataStream) throws IOException {
+        final MessageDigest digest = newContentDigest();
+        final CountingInputStream countingStream = new CountingInputStream(new DigestInputStream(fileDataStream, digest));
+
+        final long storedSize;
+        try (InputStream encodedStream = compressionService.encode(file.getCodec(), countingStream)) {
+            storedSize = fileChunkService.writeChunks(file.getFileID(), encodedStream);
+        }
+
+        file.setContentHash(toHex(digest.digest()));
+        file.setFileSize(String.valueOf(countingStream.getCount()));
+        file.setStoredSize(storedSize);
 
+        return fileMapper.updateStoredContent(file) > 0;
     }
 
-    public int deleteByNoteIDAndUserID(final int fileID, final int userID) {
-        return fileMapper.deleteByFileIDAndUserID(fileID, userID);
+    private boolean writeStoredData(final int fileID, final int userID, final long start, final long end,
+                                    final OutputStream outputStream) throws IOException {
+
+        if (fileChunkService.copyRange(fileID, start, end, outputStream)) {
+            return true;
+        }
+
+        try (InputStream fileDataStream = fileMapper.getFileDataStreamByIdAndUser(fileID, userID)) {
+
+            if (fileDataStream == null) {
+                return false;
+            }
+
+            StreamUtils.copyRange(fileDataStream, outputStream, start, end);
+            return true;
+        }
     }
 
-    public int deleteByFileID(final int fileID) {
-        return fileMapper.delete(fileID);
+    private PageDTO<FileFormDTO> readFilesPage(final int userID, final int afterFileID, final int pageSize) {
+        return PageTokenUtil.toPage(fileMapper.findFilesPageByUser(userID, afterFileID, pageSize + 1), pageSize,
+                File::getFileID, this::fileToFileFormDTO);
+    }
+
+    /*
+     * Files stored before the pipeline have no state
+     */
+    private static boolean isProcessed(final FileProcessingState processingState) {
+        return Objects.isNull(processingState) || processingState == FileProcessingState.DONE
+                || processingState == FileProcessingState.FAILED;
     }
 
     private FileFormDTO fileToFileFormDTO(final File file) {
@@ -68,9 +261,11 @@ public class FileService {
                 .contentType(file.getContentType())
                 .fileName(file.getFileName())
                 .fileSize(file.getFileSize())
-                .fileData(file.getFileData())
+                .contentHash(file.getContentHash())
+                .codec(file.getCodec())
+                .storedSize(file.getStoredSize())
+                .processingState(file.getProcessingState())
                 .userID(file.getUserID())
                 .build();
     }
 }
-
@@ -0,0 +1,330 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.UploadPartDTO;
+import aug.bueno.cloudstorage.dto.UploadSessionDTO;
+import aug.bueno.cloudstorage.model.File;
+import aug.bueno.cloudstorage.model.FileChunkManifest;
+import aug.bueno.cloudstorage.model.FileProcessingState;
+import aug.bueno.cloudstorage.model.UploadSession;
+import aug.bueno.cloudstorage.model.UploadSessionChunk;
+import aug.bueno.cloudstorage.model.UploadSessionPart;
+import aug.bueno.cloudstorage.repository.mapper.FileChunkMapper;
+import aug.bueno.cloudstorage.repository.mapper.FileMapper;
+import aug.bueno.cloudstorage.repository.mapper.UploadSessionMapper;
+import aug.bueno.cloudstorage.services.events.FileStoredEvent;
+import aug.bueno.cloudstorage.services.exception.QuotaExceededException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.newContentDigest;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.toHex;
+
+/*
+ * Resumable uploads: a session is opened for a file name, its parts (numbered from 1) are sent in any order and in
+ * parallel, each with the SHA-256 the client computed, and the commit assembles the file. Parts go straight into the
+ * chunk store, so the commit only turns the session chunks into the manifest of the new file, no content is copied.
+ * The bytes of the stored parts are reserved in the user quota as pending bytes until the session is committed or dropped.
+ */
+@Service
+public class FileUploadSessionService {
+
+    public static final int MAX_PART_NUMBER = 10000;
+
+    private static final int CLEANUP_BATCH_SIZE = 100;
+
+    private Logger LOGGER = LoggerFactory.getLogger(FileUploadSessionService.class);
+
+    private UploadSessionMapper uploadSessionMapper;
+    private FileMapper fileMapper;
+    private FileChunkMapper fileChunkMapper;
+    private FileChunkService fileChunkService;
+    private QuotaService quotaService;
+    private TransactionTemplate transactionTemplate;
+    private ApplicationEventPublisher applicationEventPublisher;
+    private long maxPartSize;
+    private Duration sessionTtl;
+
+    public FileUploadSessionService(UploadSessionMapper uploadSessionMapper, FileMapper fileMapper,
+                                    FileChunkMapper fileChunkMapper, FileChunkService fileChunkService, QuotaService quotaService,
+                                    TransactionTemplate transactionTemplate,
+                                    ApplicationEventPublisher applicationEventPublisher,
+                                    @Value("${atlas.upload.max-part-size:64MB}") DataSize maxPartSize,
+                                    @Value("${atlas.upload.session-ttl:24h}") Duration sessionTtl) {
+        this.uploadSessionMapper = uploadSessionMapper;
+        this.fileMapper = fileMapper;
+        this.fileChunkMapper = fileChunkMapper;
+        this.fileChunkService = fileChunkService;
+        this.quotaService = quotaService;
+        this.transactionTemplate = transactionTemplate;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.maxPartSize = maxPartSize.toBytes();
+        this.sessionTtl = sessionTtl;
+    }
+
+    /**
+     * Opens an upload session. The file size is optional, when given the commit checks the parts add up to it.
+     */
+    public UploadSessionDTO createSession(final String fileName, final String contentType, final Long fileSize, final int userID) {
+
+        final UploadSession uploadSession = UploadSession.builder()
+                .uploadID(UUID.randomUUID().toString())
+                .fileName(fileName)
+                .contentType(contentType)
+                .fileSize(fileSize)
+                .userID(userID)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        uploadSessionMapper.insert(uploadSession);
+
+        return this.uploadSessionToDTO(uploadSession, List.of());
+    }
+
+    /**
+     * The session with the parts received so far, which is what a client needs to resume an upload.
+     */
+    public Optional<UploadSessionDTO> findSession(final String uploadID, final int userID) {
+        return uploadSessionMapper.getSessionByIdAndUser(uploadID, userID)
+                .map(uploadSession -> this.uploadSessionToDTO(uploadSession, uploadSessionMapper.getPartsBySession(uploadID)));
+    }
+
+    /**
+     * Stores one part of the upload, replacing a previous upload of the same part. The part is rejected, and nothing
+     * is kept, when it is larger than the configured maximum or its SHA-256 doesn't match the expected one, and with
+     * QuotaExceededException when it doesn't fit in the user quota. A part whose declared size (optional) is over the
+     * maximum is rejected before it is read, a longer one as soon as the bytes read go past it.
+     *
+     * @return the stored part, empty when the session does not exist for this user
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public Optional<UploadPartDTO> writePart(final String uploadID, final int userID, final int partNumber,
+                                             final String expectedSHA256, final Long declaredSize,
+                                             final InputStream partStream) throws IOException {
+
+        if (partNumber < 1 || partNumber > MAX_PART_NUMBER) {
+            throw new IllegalArgumentException("Part number must be between 1 and " + MAX_PART_NUMBER);
+        }
+
+        if (declaredSize != null && declaredSize > maxPartSize) {
+            throw new IllegalArgumentException("Part is larger than " + maxPartSize + " bytes");
+        }
+
+        if (uploadSessionMapper.getSessionByIdAndUser(uploadID, userID).isEmpty()) {
+            return Optional.empty();
+        }
+
+        this.releasePart(uploadID, userID, partNumber);
+
+        if (declaredSize != null && !quotaService.fits(userID, declaredSize)) {
+            throw new QuotaExceededException("Storing " + declaredSize + " bytes would exceed the quota");
+        }
+
+        final MessageDigest digest = newContentDigest();
+        final List<UploadSessionChunk> chunks = new ArrayList<>();
+
+        final long partSize = fileChunkService.writeChunks(new DigestInputStream(partStream, digest), maxPartSize, chunk -> {
+            chunks.add(UploadSessionChunk.builder()
+                    .uploadID(uploadID)
+                    .partNumber(partNumber)
+                    .chunkIndex(chunk.getChunkIndex())
+                    .chunkSize(chunk.getChunkSize())
+                    .chunkHash(chunk.getChunkHash())
+                    .build());
+        });
+
+        final String partHash = toHex(digest.digest());
+
+        if (!partHash.equalsIgnoreCase(expectedSHA256.trim())) {
+            throw new IllegalArgumentException("Checksum mismatch for part " + partNumber + ", received " + partHash);
+        }
+
+        final UploadSessionPart part = UploadSessionPart.builder()
+                .uploadID(uploadID)
+                .partNumber(partNumber)
+                .partSize(partSize)
+                .partHash(partHash)
+                .build();
+
+        uploadSessionMapper.insertPart(part);
+        chunks.forEach(uploadSessionMapper::insertChunk);
+
+        // Last, so parallel parts of the same user only wait on each other for the usage row update
+        quotaService.reservePending(userID, partSize);
+
+        return Optional.of(this.partToDTO(part));
+    }
+
+    /**
+     * Assembles the parts 1..n of the session into a new file and closes the session. The duplicated file name rule
+     * is the caller's, like for single request uploads. Fails with IllegalStateException when parts are missing or
+     * don't add up to the declared size, with QuotaExceededException when the file doesn't fit in the user quota.
+     *
+     * @return the new fileID, empty when the session does not exist for this user
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public Optional<Integer> commitSession(final String uploadID, final int userID) throws IOException {
+
+        final Optional<UploadSession> uploadSession = uploadSessionMapper.lockSessionByIdAndUser(uploadID, userID);
+
+        if (uploadSession.isEmpty()) {
+            return Optional.empty();
+        }
+
+        final List<UploadSessionPart> parts = uploadSessionMapper.getPartsBySession(uploadID);
+        long fileSize = 0;
+
+        for (int i = 0; i < parts.size(); i++) {
+            if (parts.get(i).getPartNumber() != i + 1) {
+                throw new IllegalStateException("Part " + (i + 1) + " is missing");
+            }
+            fileSize += parts.get(i).getPartSize();
+        }
+
+        if (fileSize == 0) {
+            throw new IllegalStateException("Upload is empty");
+        }
+
+        if (uploadSession.get().getFileSize() != null && uploadSession.get().getFileSize() != fileSize) {
+            throw new IllegalStateException("Parts add up to " + fileSize + " bytes, " + uploadSession.get().getFileSize() + " were declared");
+        }
+
+        final File file = File.builder()
+                .fileName(uploadSession.get().getFileName())
+                .contentType(uploadSession.get().getContentType())
+                .fileSize(String.valueOf(fileSize))
+                .userID(userID)
+                .processingState(FileProcessingState.PENDING)
+                .processingDueAt(LocalDateTime.now())
+                .build();
+
+        fileMapper.insert(file);
+        quotaService.addPendingFile(userID, fileSize);
+
+        // The references held by the session chunks move to the manifest, refcounts stay as they are
+        long offset = 0;
+        int chunkIndex = 0;
+
+        for (UploadSessionChunk chunk : uploadSessionMapper.getChunksBySession(uploadID)) {
+            fileChunkMapper.insertManifest(FileChunkManifest.builder()
+                    .fileID(file.getFileID())
+                    .chunkIndex(chunkIndex++)
+                    .chunkOffset(offset)
+                    .chunkSize(chunk.getChunkSize())
+                    .chunkHash(chunk.getChunkHash())
+                    .build());
+
+            offset += chunk.getChunkSize();
+        }
+
+        uploadSessionMapper.delete(uploadID);
+
+        // The SHA-256 of the whole file can't be derived from the part hashes, the pipeline reads the content back
+        file.setCodec(CompressionService.CODEC_IDENTITY);
+        file.setStoredSize(fileSize);
+        fileMapper.updateStoredContent(file);
+
+        applicationEventPublisher.publishEvent(new FileStoredEvent(file.getFileID(), file.getUserID()));
+        return Optional.of(file.getFileID());
+    }
+
+    /**
+     * Drops the session and releases the chunks of its parts.
+     */
+    @Transactional(rollbackFor = IOException.class)
+    public boolean abortSession(final String uploadID, final int userID) throws IOException {
+
+        if (uploadSessionMapper.lockSessionByIdAndUser(uploadID, userID).isEmpty()) {
+            return false;
+        }
+
+        this.releaseSession(uploadID, userID);
+        return true;
+    }
+
+    /*
+     * Abandoned sessions hold chunk references, they are dropped once older than atlas.upload.session-ttl
+     */
+    @Scheduled(fixedDelayString = "${atlas.upload.session-cleanup-interval:PT1H}")
+    public void deleteExpiredSessions() {
+        final LocalDateTime createdBefore = LocalDateTime.now().minus(sessionTtl);
+        List<UploadSession> batch;
+
+        while (!(batch = uploadSessionMapper.findSessionsCreatedBefore(createdBefore, CLEANUP_BATCH_SIZE)).isEmpty()) {
+            for (UploadSession uploadSession : batch) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    try {
+                        if (uploadSessionMapper.lockSessionByIdAndUser(uploadSession.getUploadID(), uploadSession.getUserID()).isPresent()) {
+                            this.releaseSession(uploadSession.getUploadID(), uploadSession.getUserID());
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            LOGGER.info("Deleted {} expired upload sessions", batch.size());
+        }
+    }
+
+    private void releaseSession(final String uploadID, final int userID) throws IOException {
+        final List<UploadSessionChunk> chunks = uploadSessionMapper.getChunksBySession(uploadID);
+
+        uploadSessionMapper.delete(uploadID);
+        this.releaseChunks(userID, chunks);
+    }
+
+    private void releasePart(final String uploadID, final int userID, final int partNumber) throws IOException {
+        final List<UploadSessionChunk> chunks = uploadSessionMapper.getChunksByPart(uploadID, partNumber);
+
+        uploadSessionMapper.deletePart(uploadID, partNumber);
+        this.releaseChunks(userID, chunks);
+    }
+
+    private void releaseChunks(final int userID, final List<UploadSessionChunk> chunks) throws IOException {
+        long pendingBytes = 0;
+
+        for (UploadSessionChunk chunk : chunks) {
+            fileChunkService.releaseChunk(chunk.getChunkHash());
+            pendingBytes += chunk.getChunkSize();
+        }
+
+        quotaService.releasePending(userID, pendingBytes);
+    }
+
+    private UploadSessionDTO uploadSessionToDTO(final UploadSession uploadSession, final List<UploadSessionPart> parts) {
+        return UploadSessionDTO.builder()
+                .uploadID(uploadSession.getUploadID())
+                .fileName(uploadSession.getFileName())
+                .contentType(uploadSession.getContentType())
+                .fileSize(uploadSession.getFileSize())
+                .parts(parts.stream().map(this::partToDTO).collect(Collectors.toList()))
+                .build();
+    }
+
+    private UploadPartDTO partToDTO(final UploadSessionPart part) {
+        return UploadPartDTO.builder()
+                .partNumber(part.getPartNumber())
+                .partSize(part.getPartSize())
+                .sha256(part.getPartHash())
+                .build();
+    }
+}
@@ -2,32 +2,142 @@ package aug.bueno.cloudstorage.services;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.crypto.Mac;
 import javax.crypto.SecretKeyFactory;
 import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.security.spec.InvalidKeySpecException;
-import java.security.spec.KeySpec;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
 
+/*
+ * Password hashes are stored as $<algorithm>$<iterations>$<keyLength>$<base64 hash>, so the cost factor or the
+ * algorithm can change without breaking the hashes already stored. Values without the prefix are the original format:
+ * PBKDF2WithHmacSHA1, 5000 iterations, 128 bits.
+ *
+ * SecretKeyFactory and Mac instances are not thread safe and costly to look up, each thread keeps its own.
+ */
 @Component
 public class HashService {
+
+    static final String LEGACY_ALGORITHM = "PBKDF2WithHmacSHA1";
+    static final int LEGACY_ITERATIONS = 5000;
+    static final int LEGACY_KEY_LENGTH = 128;
+
+    private static final String FORMAT_SEPARATOR = "$";
+    private static final String DIGEST_ALGORITHM = "HmacSHA256";
+
     private Logger logger = LoggerFactory.getLogger(HashService.class);
 
+    private String algorithm;
+    private int iterations;
+    private int keyLength;
+    private String currentPrefix;
+
+    private final ThreadLocal<Map<String, SecretKeyFactory>> keyFactories = ThreadLocal.withInitial(HashMap::new);
+    private final ThreadLocal<Mac> digestMacs;
+
+    public HashService(@Value("${atlas.security.hash.algorithm:PBKDF2WithHmacSHA256}") String algorithm,
+                       @Value("${atlas.security.hash.iterations:5000}") int iterations,
+                       @Value("${atlas.security.hash.key-length:256}") int keyLength) {
+        this.algorithm = algorithm;
+        this.iterations = iterations;
+        this.keyLength = keyLength;
+        this.currentPrefix = String.join(FORMAT_SEPARATOR, "", algorithm, String.valueOf(iterations),
+                String.valueOf(keyLength), "");
+
+        // Only lives as long as the process, digests made with it are never stored
+        final byte[] digestKey = new byte[32];
+        new SecureRandom().nextBytes(digestKey);
+        this.digestMacs = ThreadLocal.withInitial(() -> newMac(digestKey));
+
+        // Fail at startup rather than on the first login
+        this.getKeyFactory(algorithm);
+    }
+
+    /**
+     * Hash in the original format, kept for the values stored before the versioned one.
+     */
     public String getHashedValue(String data, String salt) {
-        byte[] hashedValue = null;
+        return Base64.getEncoder().encodeToString(
+                this.hash(data, salt, LEGACY_ALGORITHM, LEGACY_ITERATIONS, LEGACY_KEY_LENGTH));
+    }
+
+    /**
+     * Hash of the password with the configured algorithm and cost, in the versioned format.
+     */
+    public String getPasswordHash(final String password, final String salt) {
+        return currentPrefix + Base64.getEncoder().encodeToString(
+                this.hash(password, salt, algorithm, iterations, keyLength));
+    }
+
+    /**
+     * Whether the password matches the stored hash, in any of the formats. Compares in constant time.
+     */
+    public boolean verifyPassword(final String password, final String salt, final String storedHash) {
+
+        if (Objects.isNull(storedHash)) {
+            return false;
+        }
+
+        final byte[] expected;
+        final byte[] actual;
 
-        KeySpec spec = new PBEKeySpec(data.toCharArray(), salt.getBytes(), 5000, 128);
         try {
-            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA1");
-            hashedValue = factory.generateSecret(spec).getEncoded();
-        } catch (InvalidKeySpecException | NoSuchAlgorithmException e) {
-            logger.error(e.getMessage());
+            if (!storedHash.startsWith(FORMAT_SEPARATOR)) {
+                expected = Base64.getDecoder().decode(storedHash);
+                actual = this.hash(password, salt, LEGACY_ALGORITHM, LEGACY_ITERATIONS, LEGACY_KEY_LENGTH);
+            } else {
+                final String[] parts = storedHash.split("\\" + FORMAT_SEPARATOR);
+
+                if (parts.length != 5) {
+                    return false;
+                }
+
+                expected = Base64.getDecoder().decode(parts[4]);
+                actual = this.hash(password, salt, parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]));
+            }
+        } catch (IllegalArgumentException e) {
+            logger.error("Unreadable password hash: {}", e.getMessage());
+            return false;
         }
 
-        return Base64.getEncoder().encodeToString(hashedValue);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * Whether the stored hash was made with another algorithm or cost than the configured ones.
+     */
+    public boolean needsRehash(final String storedHash) {
+        return Objects.isNull(storedHash) || !storedHash.startsWith(currentPrefix);
+    }
+
+    /**
+     * Keyed digest of the values, for keys of in-memory lookups that must not reveal them. The key changes on every
+     * start, digests must not be stored.
+     */
+    public String getKeyedDigest(final String... values) {
+        final Mac mac = digestMacs.get();
+
+        for (String value : values) {
+            final byte[] bytes = Objects.toString(value, "").getBytes(StandardCharsets.UTF_8);
+            // Length prefixed, so ("ab", "c") and ("a", "bc") don't collide
+            mac.update(new byte[]{(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16),
+                    (byte) (bytes.length >>> 8), (byte) bytes.length});
+            mac.update(bytes);
+        }
+
+        return Base64.getEncoder().encodeToString(mac.doFinal());
     }
 
     public String getEncodedSalt() {
@@ -36,4 +146,37 @@ public class HashService {
         random.nextBytes(salt);
         return Base64.getEncoder().encodeToString(salt);
     }
+
+    private byte[] hash(final String data, final String salt, final String algorithm, final int iterations,
+                        final int keyLength) {
+
+        final PBEKeySpec spec = new PBEKeySpec(data.toCharArray(), salt.getBytes(), iterations, keyLength);
+        try {
+            return this.getKeyFactory(algorithm).generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalArgumentException("Invalid key spec for " + algorithm, e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    private SecretKeyFactory getKeyFactory(final String algorithm) {
+        return keyFactories.get().computeIfAbsent(algorithm, name -> {
+            try {
+                return SecretKeyFactory.getInstance(name);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalArgumentException("Unsupported hash algorithm " + name, e);
+            }
+        });
+    }
+
+    private static Mac newMac(final byte[] key) {
+        try {
+            final Mac mac = Mac.getInstance(DIGEST_ALGORITHM);
+            mac.init(new SecretKeySpec(key, DIGEST_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(DIGEST_ALGORITHM + " is not available", e);
+        }
+    }
 }
@@ -0,0 +1,112 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.CredentialFormDTO;
+import aug.bueno.cloudstorage.dto.FileFormDTO;
+import aug.bueno.cloudstorage.dto.HomePageDTO;
+import aug.bueno.cloudstorage.dto.NoteFormDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
+import aug.bueno.cloudstorage.dto.StorageUsageDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/*
+ * The notes, credentials, files and storage usage of the home page don't depend on each other, they are read at the
+ * same time on homePageExecutor and the page takes about as long as the slowest of them. A section not read within
+ * atlas.home.section-timeout is left out and the page rendered without it; its query still runs to the end, its
+ * result is just not waited for.
+ */
+@Service
+public class HomePageService {
+
+    private Logger LOGGER = LoggerFactory.getLogger(HomePageService.class);
+
+    private NoteService noteService;
+    private CredentialService credentialService;
+    private FileService fileService;
+    private QuotaService quotaService;
+    private ThreadPoolTaskExecutor homePageExecutor;
+    private Duration sectionTimeout;
+
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    public HomePageService(NoteService noteService, CredentialService credentialService, FileService fileService,
+                           QuotaService quotaService, ThreadPoolTaskExecutor homePageExecutor,
+                           @Value("${atlas.home.section-timeout:2s}") Duration sectionTimeout) {
+        this.noteService = noteService;
+        this.credentialService = credentialService;
+        this.fileService = fileService;
+        this.quotaService = quotaService;
+        this.homePageExecutor = homePageExecutor;
+        this.sectionTimeout = sectionTimeout;
+    }
+
+    public HomePageDTO getHomePage(final int userID, final int pageSize) {
+        final long deadline = System.nanoTime() + sectionTimeout.toNanos();
+
+        final CompletableFuture<PageDTO<NoteFormDTO>> notes =
+                this.load(() -> noteService.findNotesPageUser(userID, null, pageSize));
+        final CompletableFuture<PageDTO<CredentialFormDTO>> credentials =
+                this.load(() -> credentialService.findCredentialsPageUser(userID, null, pageSize));
+        final CompletableFuture<PageDTO<FileFormDTO>> files =
+                this.load(() -> fileService.findFilesPageUser(userID, null, pageSize));
+        final CompletableFuture<StorageUsageDTO> storageUsage = this.load(() -> quotaService.getUsage(userID));
+
+        return HomePageDTO.builder()
+                .notes(this.await(notes, deadline, "notes", userID))
+                .credentials(this.await(credentials, deadline, "credentials", userID))
+                .files(this.await(files, deadline, "files", userID))
+                .storageUsage(this.await(storageUsage, deadline, "storage usage", userID))
+                .build();
+    }
+
+    /**
+     * Sections left out because they took longer than the section timeout.
+     */
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /**
+     * Sections left out because their query failed.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private <T> CompletableFuture<T> load(final Supplier<T> section) {
+        return CompletableFuture.supplyAsync(section, homePageExecutor);
+    }
+
+    /*
+     * Every section is waited for until the same deadline, they all started at about the same time
+     */
+    private <T> T await(final CompletableFuture<T> section, final long deadline, final String name, final int userID) {
+        try {
+            return section.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+
+        } catch (TimeoutException e) {
+            timedOut.increment();
+            LOGGER.warn("Home page {} of user {} not read within {}, rendered without", name, userID, sectionTimeout);
+
+        } catch (ExecutionException e) {
+            failed.increment();
+            LOGGER.error("Could not read the home page {} of user {}: {}", name, userID, e.getCause().getMessage());
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+}
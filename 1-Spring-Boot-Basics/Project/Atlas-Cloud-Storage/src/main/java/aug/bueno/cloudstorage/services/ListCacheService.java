@@ -0,0 +1,106 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.CacheMetricsDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
+import aug.bueno.cloudstorage.model.SearchItemType;
+import aug.bueno.cloudstorage.services.events.FileStoredEvent;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import aug.bueno.cloudstorage.services.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/*
+ * The first page of the notes, credentials and files of a user, as the home page shows them after every action. Pages
+ * are dropped when the services announce a change of that list, once it is committed, so a reload doesn't read a list
+ * that didn't change. Cached pages are shared between requests and must not be modified.
+ *
+ * atlas.home.cache.enabled=false reads every page from the database.
+ */
+@Service
+public class ListCacheService {
+
+    private boolean enabled;
+    private final Map<SearchItemType, BoundedCache<Integer, PageDTO<?>>> firstPages = new EnumMap<>(SearchItemType.class);
+
+    public ListCacheService(@Value("${atlas.home.cache.enabled:true}") boolean enabled,
+                            @Value("${atlas.home.cache.max-size:10000}") int maxSize,
+                            @Value("${atlas.home.cache.ttl:10m}") Duration ttl) {
+        this.enabled = enabled;
+
+        for (SearchItemType type : SearchItemType.values()) {
+            firstPages.put(type, new BoundedCache<>(maxSize, ttl));
+        }
+    }
+
+    /**
+     * The cached first page of the list of the user, read on a miss.
+     */
+    public <T> PageDTO<T> getFirstPage(final SearchItemType type, final int userID, final Supplier<PageDTO<T>> reader) {
+        return this.getFirstPage(type, userID, reader, page -> true);
+    }
+
+    /**
+     * Same, a page read is only cached when cacheable, e.g. not while it shows a state still changing in the background.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> PageDTO<T> getFirstPage(final SearchItemType type, final int userID, final Supplier<PageDTO<T>> reader,
+                                       final Predicate<PageDTO<T>> cacheable) {
+
+        if (!enabled) {
+            return reader.get();
+        }
+
+        return (PageDTO<T>) firstPages.get(type).get(userID, key -> reader.get(),
+                page -> cacheable.test((PageDTO<T>) page));
+    }
+
+    /**
+     * Drops the cached list of the user, or of every user when userID is null.
+     */
+    public void invalidate(final SearchItemType type, final Integer userID) {
+
+        if (Objects.isNull(userID)) {
+            firstPages.get(type).invalidateAll();
+        } else {
+            firstPages.get(type).invalidate(userID);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSearchableItemChanged(final SearchableItemChangedEvent event) {
+        this.invalidate(event.getType(), event.getUserID());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileStored(final FileStoredEvent event) {
+        this.invalidate(SearchItemType.FILE, event.getUserID());
+    }
+
+    public List<CacheMetricsDTO> getCacheMetrics() {
+        return firstPages.entrySet().stream()
+                .map(entry -> {
+                    final BoundedCache<Integer, PageDTO<?>> cache = entry.getValue();
+                    final long lookups = cache.getHitCount() + cache.getMissCount();
+
+                    return CacheMetricsDTO.builder()
+                            .name(entry.getKey().name().toLowerCase(Locale.ROOT) + "-list")
+                            .size(cache.size())
+                            .hits(cache.getHitCount())
+                            .misses(cache.getMissCount())
+                            .hitRatio(lookups == 0 ? 0 : (double) cache.getHitCount() / lookups)
+                            .build();
+                })
+                .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,163 @@
+package aug.bueno.cloudstorage.services;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Master keys live in a PKCS12 keystore file under their alias, atlas.security.keystore.alias names the one new data
+ * keys are wrapped with. Rotating is adding a key under a new alias and pointing the property to it, the keys already
+ * wrapped are re-wrapped in the background by DataKeyService and the old alias can be removed once none is left.
+ *
+ * A missing keystore or current alias is created with a new random key, so a fresh install just works. The keystore
+ * then has to be backed up: without it no credential can be decrypted.
+ */
+@Service
+public class MasterKeyService {
+
+    private static final String KEYSTORE_TYPE = "PKCS12";
+    private static final int MASTER_KEY_SIZE = 256;
+
+    private Logger LOGGER = LoggerFactory.getLogger(MasterKeyService.class);
+
+    private EncryptionService encryptionService;
+    private String currentAlias;
+    private Path keyStorePath;
+    private volatile KeyStore keyStore;
+    private char[] keyStorePassword;
+
+    /* Keys read from the keystore, the file is read again for an alias not seen yet */
+    private final Map<String, SecretKey> masterKeys = new ConcurrentHashMap<>();
+
+    public MasterKeyService(EncryptionService encryptionService,
+                            @Value("${atlas.security.keystore.path:atlas-data/keys/master.p12}") String keyStorePath,
+                            @Value("${atlas.security.keystore.password}") String keyStorePassword,
+                            @Value("${atlas.security.keystore.alias:atlas-master-1}") String currentAlias)
+            throws IOException, GeneralSecurityException {
+
+        this.encryptionService = encryptionService;
+        this.currentAlias = currentAlias;
+        this.keyStorePassword = keyStorePassword.toCharArray();
+        this.keyStorePath = Paths.get(keyStorePath).toAbsolutePath();
+        this.keyStore = this.loadOrCreateKeyStore(this.keyStorePath, currentAlias);
+        this.getMasterKey(currentAlias);
+    }
+
+    public String getCurrentAlias() {
+        return currentAlias;
+    }
+
+    /**
+     * The data key wrapped with the current master key, Base64 encoded.
+     */
+    public String wrap(final SecretKey dataKey) {
+        try {
+            return Base64.getEncoder().encodeToString(encryptionService.seal(dataKey.getEncoded(),
+                    this.getMasterKey(currentAlias), currentAlias.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not wrap a data key with " + currentAlias, e);
+        }
+    }
+
+    public SecretKey unwrap(final String wrappedKey, final String masterKeyAlias) {
+        try {
+            return new SecretKeySpec(encryptionService.open(Base64.getDecoder().decode(wrappedKey),
+                    this.getMasterKey(masterKeyAlias), masterKeyAlias.getBytes(StandardCharsets.UTF_8)), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not unwrap a data key with " + masterKeyAlias, e);
+        }
+    }
+
+    /**
+     * Another secret key kept in the keystore, e.g. the session token signing key, created when missing.
+     */
+    public SecretKey getOrCreateKey(final String alias) {
+        try {
+            synchronized (this) {
+                if (!keyStore.containsAlias(alias)) {
+                    keyStore = this.loadOrCreateKeyStore(keyStorePath, alias);
+                }
+            }
+        } catch (GeneralSecurityException | IOException e) {
+            throw new IllegalStateException("Could not create key " + alias, e);
+        }
+        return this.getMasterKey(alias);
+    }
+
+    private SecretKey getMasterKey(final String alias) {
+        return masterKeys.computeIfAbsent(alias, name -> {
+            try {
+                if (!keyStore.containsAlias(name)) {
+                    keyStore = this.loadKeyStore(keyStorePath);
+                }
+
+                final Key key = keyStore.getKey(name, keyStorePassword);
+
+                if (!(key instanceof SecretKey)) {
+                    throw new IllegalStateException("No master key " + name + " in the keystore");
+                }
+                return (SecretKey) key;
+            } catch (GeneralSecurityException | IOException e) {
+                throw new IllegalStateException("Could not read master key " + name, e);
+            }
+        });
+    }
+
+    private KeyStore loadKeyStore(final Path path) throws IOException, GeneralSecurityException {
+        final KeyStore store = KeyStore.getInstance(KEYSTORE_TYPE);
+
+        if (Files.exists(path)) {
+            try (InputStream inputStream = Files.newInputStream(path)) {
+                store.load(inputStream, keyStorePassword);
+            }
+        } else {
+            store.load(null, keyStorePassword);
+        }
+        return store;
+    }
+
+    private KeyStore loadOrCreateKeyStore(final Path path, final String alias) throws IOException, GeneralSecurityException {
+        final KeyStore store = this.loadKeyStore(path);
+
+        if (store.containsAlias(alias)) {
+            return store;
+        }
+
+        LOGGER.warn("Creating key {} in {}, back this keystore up", alias, path);
+
+        final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(MASTER_KEY_SIZE);
+        store.setEntry(alias, new KeyStore.SecretKeyEntry(keyGenerator.generateKey()),
+                new KeyStore.PasswordProtection(keyStorePassword));
+
+        // Written aside and moved over, a crash can't leave a truncated keystore behind
+        Files.createDirectories(path.getParent());
+        final Path tempPath = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+
+        try (OutputStream outputStream = Files.newOutputStream(tempPath)) {
+            store.store(outputStream, keyStorePassword);
+        }
+        Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return store;
+    }
+}
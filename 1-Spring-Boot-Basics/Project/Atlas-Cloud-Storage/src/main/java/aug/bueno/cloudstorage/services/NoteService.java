@@ -1,8 +1,13 @@
 package aug.bueno.cloudstorage.services;
 
 import aug.bueno.cloudstorage.dto.NoteFormDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
 import aug.bueno.cloudstorage.model.Note;
+import aug.bueno.cloudstorage.model.SearchItemType;
 import aug.bueno.cloudstorage.repository.mapper.NoteMapper;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import aug.bueno.cloudstorage.services.util.PageTokenUtil;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,9 +17,14 @@ import java.util.stream.Collectors;
 public class NoteService {
 
     private NoteMapper noteMapper;
+    private ListCacheService listCacheService;
+    private ApplicationEventPublisher applicationEventPublisher;
 
-    public NoteService(NoteMapper noteMapper) {
+    public NoteService(NoteMapper noteMapper, ListCacheService listCacheService,
+                       ApplicationEventPublisher applicationEventPublisher) {
         this.noteMapper = noteMapper;
+        this.listCacheService = listCacheService;
+        this.applicationEventPublisher = applicationEventPublisher;
     }
 
     public List<NoteFormDTO> findNoteByTitleAndUserID(final int userID, final String noteTitle) {
@@ -30,6 +40,20 @@ public class NoteService {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * The notes of the user after the page token, in the order they were created. The first page comes from the list
+     * cache.
+     */
+    public PageDTO<NoteFormDTO> findNotesPageUser(final int userID, final String pageToken, final int pageSize) {
+        final int afterNoteID = PageTokenUtil.fromPageToken(pageToken);
+
+        if (afterNoteID == 0) {
+            return listCacheService.getFirstPage(SearchItemType.NOTE, userID,
+                    () -> this.readNotesPage(userID, afterNoteID, pageSize));
+        }
+        return this.readNotesPage(userID, afterNoteID, pageSize);
+    }
+
     public boolean insertOrUpdateNote(final NoteFormDTO noteFormDTO, final int userID) {
 
         final Note.NoteBuilder noteBuilder = Note.builder()
@@ -37,20 +61,46 @@ public class NoteService {
                 .noteTitle(noteFormDTO.getNoteTitle())
                 .userID(userID);
 
+        final Note note;
+        final boolean saved;
+
         if (noteFormDTO.getNoteID() == null || noteFormDTO.getNoteID().toString().equals("") || noteFormDTO.getNoteID() <= 0) {
-            return this.noteMapper.insert(noteBuilder.build()) > 0;
+            note = noteBuilder.build();
+            saved = this.noteMapper.insert(note) > 0;
         } else {
             noteBuilder.noteID(noteFormDTO.getNoteID());
-            return this.noteMapper.update(noteBuilder.build()) > 0;
+            note = noteBuilder.build();
+            saved = this.noteMapper.update(note) > 0;
+        }
+
+        if (saved) {
+            applicationEventPublisher.publishEvent(SearchableItemChangedEvent.saved(SearchItemType.NOTE, note.getNoteID(),
+                    userID, note.getNoteTitle(), note.getNoteDescription()));
         }
+        return saved;
     }
 
     public boolean deleteByNoteIDAndUserID(final int noteID, final int userID) {
-        return noteMapper.deleteByNoteIDAndUserID(noteID, userID);
+        final boolean deleted = noteMapper.deleteByNoteIDAndUserID(noteID, userID);
+
+        if (deleted) {
+            applicationEventPublisher.publishEvent(SearchableItemChangedEvent.removed(SearchItemType.NOTE, noteID, userID));
+        }
+        return deleted;
     }
 
     public boolean deleteByNoteID(final int noteID) {
-        return noteMapper.delete(noteID);
+        final boolean deleted = noteMapper.delete(noteID);
+
+        if (deleted) {
+            applicationEventPublisher.publishEvent(SearchableItemChangedEvent.removed(SearchItemType.NOTE, noteID, null));
+        }
+        return deleted;
+    }
+
+    private PageDTO<NoteFormDTO> readNotesPage(final int userID, final int afterNoteID, final int pageSize) {
+        return PageTokenUtil.toPage(noteMapper.findNotesPageByUser(userID, afterNoteID, pageSize + 1), pageSize,
+                Note::getNoteID, this::noteToNoteFormDTO);
     }
 
     private NoteFormDTO noteToNoteFormDTO(final Note note) {
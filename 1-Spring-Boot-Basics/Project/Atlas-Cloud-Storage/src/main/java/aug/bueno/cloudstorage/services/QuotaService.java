@@ -0,0 +1,138 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.StorageUsageDTO;
+import aug.bueno.cloudstorage.model.UserStorageUsage;
+import aug.bueno.cloudstorage.repository.mapper.UserStorageUsageMapper;
+import aug.bueno.cloudstorage.services.exception.QuotaExceededException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+import java.util.function.IntSupplier;
+import java.util.stream.Collectors;
+
+/*
+ * Per-user storage quota. Usage is the sum of the file sizes as uploaded, deduplication and compression savings are
+ * the service's, not the user's. The parts of open upload sessions are reserved as pending bytes, which count toward
+ * the quota until the session is committed or dropped. The counters are changed in the same transaction as the rows
+ * they account for.
+ */
+@Service
+public class QuotaService {
+
+    private UserStorageUsageMapper userStorageUsageMapper;
+    private long quotaBytes;
+
+    public QuotaService(UserStorageUsageMapper userStorageUsageMapper,
+                        @Value("${atlas.quota.max-bytes-per-user:1GB}") DataSize quotaBytes) {
+        this.userStorageUsageMapper = userStorageUsageMapper;
+        this.quotaBytes = quotaBytes.toBytes();
+    }
+
+    public StorageUsageDTO getUsage(final int userID) {
+        return this.usageToDTO(userStorageUsageMapper.getUsage(userID)
+                .orElse(UserStorageUsage.builder().userID(userID).build()));
+    }
+
+    /**
+     * Whether bytes more would still fit, for early rejections. The authoritative checks are addFile and reservePending.
+     */
+    public boolean fits(final int userID, final long bytes) {
+        final StorageUsageDTO usage = this.getUsage(userID);
+        return usage.getUsedBytes() + usage.getPendingBytes() + bytes <= quotaBytes;
+    }
+
+    /**
+     * Accounts a new file of the given size, throws QuotaExceededException when it doesn't fit.
+     */
+    public void addFile(final int userID, final long bytes) {
+
+        if (!this.updateUsage(userID, () -> userStorageUsageMapper.addFile(userID, bytes, quotaBytes))) {
+            throw new QuotaExceededException("Storing " + bytes + " bytes would exceed the quota of " + quotaBytes + " bytes");
+        }
+    }
+
+    /**
+     * Accounts a new file made of bytes reserved with reservePending, throws QuotaExceededException when the bytes
+     * that were not reserved don't fit.
+     */
+    public void addPendingFile(final int userID, final long bytes) {
+
+        if (!this.updateUsage(userID, () -> userStorageUsageMapper.addPendingFile(userID, bytes, quotaBytes))) {
+            throw new QuotaExceededException("Storing " + bytes + " bytes would exceed the quota of " + quotaBytes + " bytes");
+        }
+    }
+
+    /**
+     * Reserves bytes an upload holds before it becomes a file, throws QuotaExceededException when they don't fit.
+     */
+    public void reservePending(final int userID, final long bytes) {
+
+        if (bytes > 0 && !this.updateUsage(userID, () -> userStorageUsageMapper.reservePending(userID, bytes, quotaBytes))) {
+            throw new QuotaExceededException("Storing " + bytes + " bytes would exceed the quota of " + quotaBytes + " bytes");
+        }
+    }
+
+    public void releasePending(final int userID, final long bytes) {
+
+        if (bytes > 0) {
+            userStorageUsageMapper.releasePending(userID, bytes);
+        }
+    }
+
+    /**
+     * Corrects the size of a file accounted with addFile by the given difference, throws QuotaExceededException when
+     * it grows past the quota.
+     */
+    public void resizeFile(final int userID, final long deltaBytes) {
+
+        if (deltaBytes != 0 && userStorageUsageMapper.resizeFile(userID, deltaBytes, quotaBytes) <= 0) {
+            throw new QuotaExceededException("Storing " + deltaBytes + " bytes more would exceed the quota of " + quotaBytes + " bytes");
+        }
+    }
+
+    public void removeFile(final int userID, final long bytes) {
+        userStorageUsageMapper.removeFile(userID, bytes);
+    }
+
+    public List<StorageUsageDTO> findTopConsumers(final int limit) {
+        return userStorageUsageMapper.findTopConsumers(limit).stream()
+                .map(this::usageToDTO)
+                .collect(Collectors.toList());
+    }
+
+    /*
+     * Runs the conditional update, creating the usage row of the user first when it has none yet
+     */
+    private boolean updateUsage(final int userID, final IntSupplier update) {
+
+        if (update.getAsInt() > 0) {
+            return true;
+        }
+
+        if (userStorageUsageMapper.getUsage(userID).isPresent()) {
+            return false;
+        }
+
+        try {
+            userStorageUsageMapper.insert(userID);
+        } catch (DuplicateKeyException e) {
+            // Another upload of the same user created the row in the meantime
+        }
+
+        return update.getAsInt() > 0;
+    }
+
+    private StorageUsageDTO usageToDTO(final UserStorageUsage usage) {
+        return StorageUsageDTO.builder()
+                .userID(usage.getUserID())
+                .userName(usage.getUserName())
+                .usedBytes(usage.getUsedBytes())
+                .fileCount(usage.getFileCount())
+                .pendingBytes(usage.getPendingBytes())
+                .quotaBytes(quotaBytes)
+                .build();
+    }
+}
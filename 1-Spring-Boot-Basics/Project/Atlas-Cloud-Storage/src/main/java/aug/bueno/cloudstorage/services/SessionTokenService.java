@@ -0,0 +1,135 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.dto.SessionTokenDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+ * Session tokens for the stateless mode (atlas.security.session.stateless): the user ID, user name and expiry of a
+ * login, signed with HMAC-SHA256 as v1.<userID>.<base64url userName>.<expiry epoch seconds>.<base64url signature>.
+ * The signing key is read once from the keystore, see MasterKeyService, so every node sharing it accepts the tokens
+ * of the others and no node keeps any session state.
+ *
+ * A token can't be revoked before it expires, logging out only drops the cookie. The ttl is kept short for that and
+ * tokens are renewed while in use, see needsRenewal.
+ */
+@Service
+public class SessionTokenService {
+
+    private static final String VERSION = "v1";
+    private static final String SEPARATOR = ".";
+    private static final String MAC_ALGORITHM = "HmacSHA256";
+
+    private MasterKeyService masterKeyService;
+    private String keyAlias;
+    private Duration ttl;
+    private ThreadLocal<Mac> macs;
+
+    public SessionTokenService(MasterKeyService masterKeyService,
+                               @Value("${atlas.security.session.stateless:false}") boolean stateless,
+                               @Value("${atlas.security.session.key-alias:atlas-session-1}") String keyAlias,
+                               @Value("${atlas.security.session.ttl:30m}") Duration ttl) {
+        this.masterKeyService = masterKeyService;
+        this.keyAlias = keyAlias;
+        this.ttl = ttl;
+        this.macs = ThreadLocal.withInitial(this::newMac);
+
+        // Create or read the key at startup rather than on the first login
+        if (stateless) {
+            masterKeyService.getOrCreateKey(keyAlias);
+        }
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public String issue(final AtlasUserPrincipal principal) {
+        final String payload = String.join(SEPARATOR, VERSION, String.valueOf(principal.getUserID()),
+                encode(principal.getUserName().getBytes(StandardCharsets.UTF_8)),
+                String.valueOf(Instant.now().plus(ttl).getEpochSecond()));
+
+        return payload + SEPARATOR + encode(this.sign(payload));
+    }
+
+    /**
+     * The content of the token, empty when it is malformed, forged or expired.
+     */
+    public Optional<SessionTokenDTO> verify(final String token) {
+
+        if (Objects.isNull(token)) {
+            return Optional.empty();
+        }
+
+        final int signatureStart = token.lastIndexOf(SEPARATOR);
+        final String[] fields = token.split("\\.", -1);
+
+        if (fields.length != 5 || !VERSION.equals(fields[0])) {
+            return Optional.empty();
+        }
+
+        try {
+            final String payload = token.substring(0, signatureStart);
+
+            if (!MessageDigest.isEqual(this.sign(payload), Base64.getUrlDecoder().decode(fields[4]))) {
+                return Optional.empty();
+            }
+
+            final Instant expiresAt = Instant.ofEpochSecond(Long.parseLong(fields[3]));
+
+            if (!expiresAt.isAfter(Instant.now())) {
+                return Optional.empty();
+            }
+
+            return Optional.of(SessionTokenDTO.builder()
+                    .userID(Integer.parseInt(fields[1]))
+                    .userName(new String(Base64.getUrlDecoder().decode(fields[2]), StandardCharsets.UTF_8))
+                    .expiresAt(expiresAt)
+                    .build());
+
+        } catch (IllegalArgumentException e) {
+            // Bad Base64 or number, NumberFormatException included
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Whether less than half of the ttl is left, the token is then replaced while the user is active.
+     */
+    public boolean needsRenewal(final SessionTokenDTO sessionToken) {
+        return Duration.between(Instant.now(), sessionToken.getExpiresAt()).compareTo(ttl.dividedBy(2)) < 0;
+    }
+
+    private byte[] sign(final String payload) {
+        return macs.get().doFinal(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Mac newMac() {
+        final SecretKey key = masterKeyService.getOrCreateKey(keyAlias);
+
+        try {
+            final Mac mac = Mac.getInstance(MAC_ALGORITHM);
+            mac.init(new SecretKeySpec(key.getEncoded(), MAC_ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(MAC_ALGORITHM + " is not available", e);
+        }
+    }
+
+    private static String encode(final byte[] value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value);
+    }
+}
@@ -1,50 +1,134 @@
 package aug.bueno.cloudstorage.services;
 
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
 import aug.bueno.cloudstorage.model.User;
 import aug.bueno.cloudstorage.repository.mapper.UserMapper;
+import aug.bueno.cloudstorage.services.util.BoundedCache;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.core.Authentication;
 import org.springframework.stereotype.Service;
 
-import java.security.SecureRandom;
-import java.util.Base64;
+import java.time.Duration;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class UserService {
 
     private HashService hashService;
     private UserMapper userMapper;
+    private BoundedCache<String, AtlasUserPrincipal> principalCache;
+    private ThreadPoolTaskExecutor passwordHashingExecutor;
 
-    public UserService(HashService hashService, UserMapper userMapper) {
+    public UserService(HashService hashService, UserMapper userMapper, ThreadPoolTaskExecutor passwordHashingExecutor,
+                       @Value("${atlas.security.user-cache.max-size:10000}") int principalCacheSize,
+                       @Value("${atlas.security.user-cache.ttl:10m}") Duration principalCacheTtl) {
         this.hashService = hashService;
         this.userMapper = userMapper;
+        this.passwordHashingExecutor = passwordHashingExecutor;
+        this.principalCache = new BoundedCache<>(principalCacheSize, principalCacheTtl);
     }
 
+    /**
+     * Creates the user, empty when the user name is taken. Hashes the password on the calling thread.
+     */
     public Optional<User> createUser(final String userName, final String password, final String firstName, final String lastName) {
+        return this.insertUser(this.newUser(userName, password, firstName, lastName));
+    }
+
+    /**
+     * Same as createUser, with the password hashed and the user inserted on the bounded hashing pool, so the request
+     * thread isn't held. Throws TaskRejectedException right away when the pool is saturated.
+     */
+    public CompletableFuture<Optional<User>> createUserAsync(final String userName, final String password,
+                                                             final String firstName, final String lastName) {
+        return CompletableFuture.supplyAsync(
+                () -> this.insertUser(this.newUser(userName, password, firstName, lastName)), passwordHashingExecutor);
+    }
+
+    public Optional<User> findUserByUserName(final String userName) {
+        return userMapper.getUserByName(userName);
+    }
+
+    /**
+     * The principal of an authentication. Form logins already carry one, other authentications are resolved by
+     * user name through a bounded cache.
+     */
+    public Optional<AtlasUserPrincipal> findPrincipal(final Authentication authentication) {
+
+        if (Objects.isNull(authentication) || !authentication.isAuthenticated()) {
+            return Optional.empty();
+        }
+
+        if (authentication.getPrincipal() instanceof AtlasUserPrincipal) {
+            return Optional.of((AtlasUserPrincipal) authentication.getPrincipal());
+        }
+
+        return this.findPrincipal(authentication.getName());
+    }
+
+    /**
+     * The principal of the user a session token was issued to, empty when that user is gone or the user name now
+     * belongs to another user.
+     */
+    public Optional<AtlasUserPrincipal> findPrincipal(final int userID, final String userName) {
+        return this.findPrincipal(userName).filter(principal -> principal.getUserID() == userID);
+    }
 
+    private Optional<AtlasUserPrincipal> findPrincipal(final String userName) {
+        return Optional.ofNullable(principalCache.get(userName,
+                name -> userMapper.getUserByName(name).map(UserService::userToPrincipal).orElse(null)));
+    }
 
+    private User newUser(final String userName, final String password, final String firstName, final String lastName) {
         final String encodedSalt = hashService.getEncodedSalt();
-        final String encodedPassword = hashService.getHashedValue(password, encodedSalt);
+        final String encodedPassword = hashService.getPasswordHash(password, encodedSalt);
 
-        final User user = User.builder()
+        return User.builder()
                 .userName(userName)
                 .password(encodedPassword)
                 .firstName(firstName)
                 .salt(encodedSalt)
                 .lastName(lastName)
                 .build();
+    }
 
-        final int userID = userMapper.insert(user);
-
-        if (userID > 0) {
-            user.setUserID(userID);
-            return Optional.of(user);
-        } else {
+    /*
+     * The unique index on USERS.username decides, there is no read before the write for two signups to slip through
+     */
+    private Optional<User> insertUser(final User user) {
+        try {
+            if (userMapper.insert(user) <= 0) {
+                return Optional.empty();
+            }
+        } catch (DuplicateKeyException e) {
             return Optional.empty();
+        } finally {
+            principalCache.invalidate(user.getUserName());
         }
+
+        // userID was set by the insert from the generated key
+        return Optional.of(user);
     }
 
-    public Optional<User> findUserByUserName(final String userName) {
-        return userMapper.getUserByName(userName);
+    public static AtlasUserPrincipal userToPrincipal(final User user) {
+        return AtlasUserPrincipal.builder()
+                .userID(user.getUserID())
+                .userName(user.getUserName())
+                .firstName(user.getFirstName())
+                .lastName(user.getLastName())
+                .build();
+    }
+
+    public long getPrincipalCacheHitCount() {
+        return principalCache.getHitCount();
+    }
+
+    public long getPrincipalCacheMissCount() {
+        return principalCache.getMissCount();
     }
 
 }
@@ -0,0 +1,23 @@
+package aug.bueno.cloudstorage.services.events;
+
+/*
+ * Published once the content of a new file is stored, listeners that must see the row wait for the commit
+ */
+public class FileStoredEvent {
+
+    private final int fileID;
+    private final int userID;
+
+    public FileStoredEvent(final int fileID, final int userID) {
+        this.fileID = fileID;
+        this.userID = userID;
+    }
+
+    public int getFileID() {
+        return fileID;
+    }
+
+    public int getUserID() {
+        return userID;
+    }
+}
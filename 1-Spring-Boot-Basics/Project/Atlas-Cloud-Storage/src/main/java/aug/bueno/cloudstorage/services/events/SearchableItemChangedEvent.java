@@ -0,0 +1,63 @@
+package aug.bueno.cloudstorage.services.events;
+
+import aug.bueno.cloudstorage.model.SearchItemType;
+
+/*
+ * Published when a note or credential is saved or removed, or a file removed, for the search index and the list cache.
+ * A new file is announced by FileStoredEvent. The userID is null when the writer doesn't know the owner.
+ */
+public class SearchableItemChangedEvent {
+
+    private final SearchItemType type;
+    private final int itemID;
+    private final Integer userID;
+    private final String title;
+    private final String text;
+    private final boolean removed;
+
+    private SearchableItemChangedEvent(final SearchItemType type, final int itemID, final Integer userID,
+                                       final String title, final String text, final boolean removed) {
+        this.type = type;
+        this.itemID = itemID;
+        this.userID = userID;
+        this.title = title;
+        this.text = text;
+        this.removed = removed;
+    }
+
+    /**
+     * The item as saved: its title, and any other text to find it by.
+     */
+    public static SearchableItemChangedEvent saved(final SearchItemType type, final int itemID, final int userID,
+                                                   final String title, final String text) {
+        return new SearchableItemChangedEvent(type, itemID, userID, title, text, false);
+    }
+
+    public static SearchableItemChangedEvent removed(final SearchItemType type, final int itemID, final Integer userID) {
+        return new SearchableItemChangedEvent(type, itemID, userID, null, null, true);
+    }
+
+    public SearchItemType getType() {
+        return type;
+    }
+
+    public int getItemID() {
+        return itemID;
+    }
+
+    public Integer getUserID() {
+        return userID;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isRemoved() {
+        return removed;
+    }
+}
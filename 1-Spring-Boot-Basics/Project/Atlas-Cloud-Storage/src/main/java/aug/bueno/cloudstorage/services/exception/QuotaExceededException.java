@@ -0,0 +1,8 @@
+package aug.bueno.cloudstorage.services.exception;
+
+public class QuotaExceededException extends RuntimeException {
+
+    public QuotaExceededException(final String message) {
+        super(message);
+    }
+}
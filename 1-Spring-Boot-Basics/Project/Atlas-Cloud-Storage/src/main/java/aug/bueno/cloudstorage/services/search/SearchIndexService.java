@@ -0,0 +1,188 @@
+package aug.bueno.cloudstorage.services.search;
+
+import aug.bueno.cloudstorage.dto.SearchResultDTO;
+import aug.bueno.cloudstorage.model.SearchItemType;
+import aug.bueno.cloudstorage.repository.mapper.CredentialMapper;
+import aug.bueno.cloudstorage.repository.mapper.FileMapper;
+import aug.bueno.cloudstorage.repository.mapper.NoteMapper;
+import aug.bueno.cloudstorage.repository.mapper.UserMapper;
+import aug.bueno.cloudstorage.services.events.FileStoredEvent;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Search over the note titles and texts, credential URLs and file names of a user, from an in-process inverted index
+ * per user (see UserSearchIndex). The indexes are built in parallel at startup, or on the first search of a user,
+ * and then kept up to date from the events the services publish once their writes are committed.
+ *
+ * The indexes live in this process only: each node builds its own from the database and sees the writes it makes.
+ */
+@Service
+public class SearchIndexService {
+
+    private Logger LOGGER = LoggerFactory.getLogger(SearchIndexService.class);
+
+    private NoteMapper noteMapper;
+    private CredentialMapper credentialMapper;
+    private FileMapper fileMapper;
+    private UserMapper userMapper;
+    private ThreadPoolTaskExecutor searchIndexExecutor;
+    private boolean buildAtStartup;
+    private int maxResults;
+
+    private final Map<Integer, UserSearchIndex> indexes = new ConcurrentHashMap<>();
+
+    public SearchIndexService(NoteMapper noteMapper, CredentialMapper credentialMapper, FileMapper fileMapper,
+                              UserMapper userMapper, ThreadPoolTaskExecutor searchIndexExecutor,
+                              @Value("${atlas.search.build-at-startup:true}") boolean buildAtStartup,
+                              @Value("${atlas.search.max-results:100}") int maxResults) {
+        this.noteMapper = noteMapper;
+        this.credentialMapper = credentialMapper;
+        this.fileMapper = fileMapper;
+        this.userMapper = userMapper;
+        this.searchIndexExecutor = searchIndexExecutor;
+        this.buildAtStartup = buildAtStartup;
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * The items of the user matching every word of the query, a word matching the start of a word too. Best matches
+     * first, at most limit (capped at atlas.search.max-results).
+     */
+    public List<SearchResultDTO> search(final int userID, final String query, final int limit) {
+        final List<String> queryTerms = SearchTokenizer.tokenize(query);
+
+        if (queryTerms.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        return this.getIndex(userID).search(queryTerms, Math.max(1, Math.min(limit, maxResults)));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onSearchableItemChanged(final SearchableItemChangedEvent event) {
+
+        if (Objects.isNull(event.getUserID())) {
+            // Owner unknown, only removals are published so
+            indexes.values().forEach(index -> index.remove(event.getType(), event.getItemID()));
+            return;
+        }
+
+        // A user without an index yet gets the item when it is built, from the committed rows
+        final UserSearchIndex index = indexes.get(event.getUserID());
+
+        if (Objects.isNull(index)) {
+            return;
+        }
+
+        if (event.isRemoved()) {
+            index.remove(event.getType(), event.getItemID());
+        } else {
+            index.put(SearchableItem.builder()
+                    .type(event.getType())
+                    .id(event.getItemID())
+                    .title(event.getTitle())
+                    .text(event.getText())
+                    .build());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFileStored(final FileStoredEvent event) {
+        fileMapper.getFileById(event.getFileID()).ifPresent(file -> {
+            final UserSearchIndex index = indexes.get(file.getUserID());
+
+            if (Objects.nonNull(index)) {
+                index.put(SearchableItem.builder()
+                        .type(SearchItemType.FILE)
+                        .id(file.getFileID())
+                        .title(file.getFileName())
+                        .build());
+            }
+        });
+    }
+
+    /**
+     * Builds the index of every user, one slice of the users per thread of the search index pool. Users searching
+     * before theirs is ready build it on the spot.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildIndexes() {
+
+        if (!buildAtStartup) {
+            return;
+        }
+
+        final List<Integer> userIDs = userMapper.findAllUserIDs();
+        final int slices = Math.max(1, Math.min(searchIndexExecutor.getMaxPoolSize(), userIDs.size()));
+        final int sliceSize = (userIDs.size() + slices - 1) / slices;
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(slices);
+        final long start = System.nanoTime();
+
+        for (int from = 0; from < userIDs.size(); from += sliceSize) {
+            final List<Integer> slice = userIDs.subList(from, Math.min(from + sliceSize, userIDs.size()));
+
+            futures.add(CompletableFuture.runAsync(() -> slice.forEach(this::getIndex), searchIndexExecutor));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).whenComplete((result, e) -> {
+            if (Objects.nonNull(e)) {
+                LOGGER.error("Could not build the search indexes, they are built on first search: {}", e.getMessage());
+            } else {
+                LOGGER.info("Search indexes of {} users built in {} ms", userIDs.size(),
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+        });
+    }
+
+    public int getIndexedUserCount() {
+        return indexes.size();
+    }
+
+    private UserSearchIndex getIndex(final int userID) {
+        final UserSearchIndex index = indexes.computeIfAbsent(userID, id -> new UserSearchIndex());
+        index.build(() -> this.loadItems(userID));
+        return index;
+    }
+
+    private List<SearchableItem> loadItems(final int userID) {
+        final List<SearchableItem> items = new ArrayList<>();
+
+        noteMapper.getAllNotesByUser(userID).forEach(note -> items.add(SearchableItem.builder()
+                .type(SearchItemType.NOTE)
+                .id(note.getNoteID())
+                .title(note.getNoteTitle())
+                .text(note.getNoteDescription())
+                .build()));
+
+        credentialMapper.getAllCredentialByUser(userID).forEach(credential -> items.add(SearchableItem.builder()
+                .type(SearchItemType.CREDENTIAL)
+                .id(credential.getCredentialID())
+                .title(credential.getUrl())
+                .build()));
+
+        fileMapper.findAllFilesByUser(userID).forEach(file -> items.add(SearchableItem.builder()
+                .type(SearchItemType.FILE)
+                .id(file.getFileID())
+                .title(file.getFileName())
+                .build()));
+
+        return items;
+    }
+}
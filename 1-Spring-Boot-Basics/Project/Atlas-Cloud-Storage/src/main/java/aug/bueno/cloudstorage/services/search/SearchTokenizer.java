@@ -0,0 +1,50 @@
+package aug.bueno.cloudstorage.services.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/*
+ * Terms are the runs of letters and digits, lower-cased and without accents, so "Café-Menu" is found by "cafe" and
+ * "menu", and a URL by its host labels and path segments. Longer terms are cut, the same way in texts and queries.
+ */
+final class SearchTokenizer {
+
+    static final int MAX_TERM_LENGTH = 32;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private SearchTokenizer() {
+    }
+
+    /**
+     * The distinct terms of the texts, in order of appearance. Null texts are skipped.
+     */
+    static List<String> tokenize(final String... texts) {
+        final Set<String> terms = new LinkedHashSet<>();
+
+        for (String text : texts) {
+
+            if (Objects.isNull(text)) {
+                continue;
+            }
+
+            final String normalized = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+                    .toLowerCase(Locale.ROOT);
+
+            for (String term : SEPARATORS.split(normalized)) {
+
+                if (!term.isEmpty()) {
+                    terms.add(term.length() > MAX_TERM_LENGTH ? term.substring(0, MAX_TERM_LENGTH) : term);
+                }
+            }
+        }
+        return new ArrayList<>(terms);
+    }
+}
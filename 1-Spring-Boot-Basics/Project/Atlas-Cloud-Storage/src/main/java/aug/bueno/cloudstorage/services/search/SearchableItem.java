@@ -0,0 +1,22 @@
+package aug.bueno.cloudstorage.services.search;
+
+import aug.bueno.cloudstorage.model.SearchItemType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * What is indexed of a note, credential or file: the title shown in results, and any other text to find it by
+ */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+class SearchableItem {
+
+    private SearchItemType type;
+    private int id;
+    private String title;
+    private String text;
+}
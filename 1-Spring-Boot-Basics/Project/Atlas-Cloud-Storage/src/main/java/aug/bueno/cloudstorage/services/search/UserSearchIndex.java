@@ -0,0 +1,305 @@
+package aug.bueno.cloudstorage.services.search;
+
+import aug.bueno.cloudstorage.dto.SearchResultDTO;
+import aug.bueno.cloudstorage.model.SearchItemType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/*
+ * The inverted index of one user: every term points to the sorted keys of the items containing it. Terms are kept
+ * sorted, the terms starting with a prefix are one range of the map. Searches share a read lock, writes take the
+ * write lock one at a time.
+ */
+class UserSearchIndex {
+
+    private static final SearchItemType[] TYPES = SearchItemType.values();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final NavigableMap<String, Postings> terms = new TreeMap<>();
+    private final Map<Long, Item> items = new HashMap<>();
+    private volatile boolean built;
+
+    boolean isBuilt() {
+        return built;
+    }
+
+    /**
+     * Loads the items of the user, the first time only. Writes arriving meanwhile wait for the lock and apply after,
+     * they are never older than what was loaded.
+     */
+    void build(final Supplier<List<SearchableItem>> loader) {
+
+        if (built) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (!built) {
+                for (SearchableItem item : loader.get()) {
+                    this.putLocked(item);
+                }
+                built = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void put(final SearchableItem item) {
+        lock.writeLock().lock();
+        try {
+            this.putLocked(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(final SearchItemType type, final int id) {
+        lock.writeLock().lock();
+        try {
+            this.removeLocked(key(type, id));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return items.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The items matching every query term, each as a term or as the prefix of a term. Items where more query terms
+     * are whole terms come first, then the most recent.
+     */
+    List<SearchResultDTO> search(final List<String> queryTerms, final int limit) {
+
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        lock.readLock().lock();
+        try {
+            // Candidates come from the most selective query term, the others are checked on the terms of each one
+            final List<Postings> candidates = this.findMostSelective(queryTerms);
+            final PriorityQueue<ScoredItem> best = new PriorityQueue<>(limit + 1, ScoredItem.WORST_FIRST);
+            // An item with several terms in the prefix range is in several postings, it counts once
+            final Set<Long> seen = candidates.size() > 1 ? new HashSet<>() : null;
+
+            for (Postings postings : candidates) {
+                for (int i = 0; i < postings.size; i++) {
+
+                    if (Objects.nonNull(seen) && !seen.add(postings.keys[i])) {
+                        continue;
+                    }
+
+                    final Item item = items.get(postings.keys[i]);
+                    final int score = score(item, queryTerms);
+
+                    if (score > 0) {
+                        best.add(new ScoredItem(item, score));
+
+                        if (best.size() > limit) {
+                            best.poll();
+                        }
+                    }
+                }
+            }
+
+            final List<SearchResultDTO> results = new ArrayList<>(best.size());
+
+            while (!best.isEmpty()) {
+                results.add(best.poll().item.toDTO());
+            }
+            Collections.reverse(results);
+            return results;
+
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Postings> findMostSelective(final List<String> queryTerms) {
+        List<Postings> mostSelective = null;
+        long fewest = Long.MAX_VALUE;
+
+        for (String queryTerm : queryTerms) {
+            final List<Postings> matching = new ArrayList<>(this.prefixRange(queryTerm).values());
+            final long count = matching.stream().mapToLong(postings -> postings.size).sum();
+
+            if (count < fewest) {
+                fewest = count;
+                mostSelective = matching;
+            }
+        }
+        return mostSelective;
+    }
+
+    private NavigableMap<String, Postings> prefixRange(final String prefix) {
+        return terms.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    /*
+     * 0 when a query term matches no term of the item, otherwise 2 for every query term found whole and 1 as a prefix
+     */
+    private static int score(final Item item, final List<String> queryTerms) {
+        int score = 0;
+
+        for (String queryTerm : queryTerms) {
+            int termScore = 0;
+
+            for (String term : item.terms) {
+                if (term.equals(queryTerm)) {
+                    termScore = 2;
+                    break;
+                } else if (term.startsWith(queryTerm)) {
+                    termScore = 1;
+                }
+            }
+
+            if (termScore == 0) {
+                return 0;
+            }
+            score += termScore;
+        }
+        return score;
+    }
+
+    private void putLocked(final SearchableItem searchableItem) {
+        final long key = key(searchableItem.getType(), searchableItem.getId());
+        this.removeLocked(key);
+
+        final List<String> itemTerms = SearchTokenizer.tokenize(searchableItem.getTitle(), searchableItem.getText());
+        final String[] canonicalTerms = new String[itemTerms.size()];
+
+        for (int i = 0; i < canonicalTerms.length; i++) {
+            final Postings postings = terms.computeIfAbsent(itemTerms.get(i), Postings::new);
+            postings.add(key);
+            // Items share the term instance of the map
+            canonicalTerms[i] = postings.term;
+        }
+
+        items.put(key, new Item(searchableItem.getType(), searchableItem.getId(), searchableItem.getTitle(), canonicalTerms));
+    }
+
+    private void removeLocked(final long key) {
+        final Item item = items.remove(key);
+
+        if (Objects.isNull(item)) {
+            return;
+        }
+
+        for (String term : item.terms) {
+            final Postings postings = terms.get(term);
+
+            if (Objects.nonNull(postings) && postings.remove(key) && postings.size == 0) {
+                terms.remove(term);
+            }
+        }
+    }
+
+    private static long key(final SearchItemType type, final int id) {
+        return ((long) type.ordinal() << 32) | (id & 0xFFFFFFFFL);
+    }
+
+    /*
+     * Sorted keys of the items containing a term
+     */
+    private static class Postings {
+
+        private final String term;
+        private long[] keys = new long[2];
+        private int size;
+
+        Postings(final String term) {
+            this.term = term;
+        }
+
+        void add(final long key) {
+            final int index = Arrays.binarySearch(keys, 0, size, key);
+
+            if (index >= 0) {
+                return;
+            }
+
+            final int insertAt = -index - 1;
+
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, size - insertAt);
+            keys[insertAt] = key;
+            size++;
+        }
+
+        boolean remove(final long key) {
+            final int index = Arrays.binarySearch(keys, 0, size, key);
+
+            if (index < 0) {
+                return false;
+            }
+
+            System.arraycopy(keys, index + 1, keys, index, size - index - 1);
+            size--;
+            return true;
+        }
+    }
+
+    private static class Item {
+
+        private final SearchItemType type;
+        private final int id;
+        private final String title;
+        private final String[] terms;
+
+        Item(final SearchItemType type, final int id, final String title, final String[] terms) {
+            this.type = type;
+            this.id = id;
+            this.title = title;
+            this.terms = terms;
+        }
+
+        SearchResultDTO toDTO() {
+            return SearchResultDTO.builder()
+                    .type(type)
+                    .id(id)
+                    .title(title)
+                    .build();
+        }
+    }
+
+    private static class ScoredItem {
+
+        static final Comparator<ScoredItem> WORST_FIRST = Comparator.<ScoredItem>comparingInt(scored -> scored.score)
+                .thenComparingInt(scored -> scored.item.id)
+                .thenComparing(scored -> scored.item.type, Comparator.reverseOrder());
+
+        private final Item item;
+        private final int score;
+
+        ScoredItem(final Item item, final int score) {
+            this.item = item;
+            this.score = score;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Backend holding the payload of file chunks. FILE_CHUNKS keeps the refcount and the name of the store each chunk
+ * was written to, so chunks written under a previous atlas.storage.backend stay readable until they are migrated.
+ */
+public interface BlobStore {
+
+    String getName();
+
+    void put(String chunkHash, byte[] buffer, int length) throws IOException;
+
+    /**
+     * Copies the bytes [start, end] (inclusive) of the chunk to the given output.
+     */
+    void copyRange(String chunkHash, long start, long end, OutputStream outputStream) throws IOException;
+
+    void delete(String chunkHash) throws IOException;
+}
@@ -0,0 +1,38 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/*
+ * Migration command, e.g. java -jar atlascloudstorage.jar --atlas.storage.migrate-to=filesystem
+ * Remember to point atlas.storage.backend to the same store so new uploads land there as well.
+ */
+@Component
+@ConditionalOnProperty("atlas.storage.migrate-to")
+public class BlobStoreMigrationRunner implements ApplicationRunner {
+    private Logger LOGGER = LoggerFactory.getLogger(BlobStoreMigrationRunner.class);
+
+    private BlobStoreMigrationService blobStoreMigrationService;
+    private String targetStoreName;
+
+    public BlobStoreMigrationRunner(BlobStoreMigrationService blobStoreMigrationService,
+                                    @Value("${atlas.storage.migrate-to}") String targetStoreName) {
+        this.blobStoreMigrationService = blobStoreMigrationService;
+        this.targetStoreName = targetStoreName;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        LOGGER.info("Migrating file content to the '" + targetStoreName + "' blob store");
+
+        final int files = blobStoreMigrationService.migrateInlineFiles();
+        final int chunks = blobStoreMigrationService.migrateChunks(targetStoreName);
+
+        LOGGER.info("Blob store migration done: " + files + " inline files chunked, " + chunks + " chunks moved");
+    }
+}
@@ -0,0 +1,126 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import aug.bueno.cloudstorage.model.File;
+import aug.bueno.cloudstorage.model.FileChunk;
+import aug.bueno.cloudstorage.repository.mapper.FileChunkMapper;
+import aug.bueno.cloudstorage.repository.mapper.FileMapper;
+import aug.bueno.cloudstorage.services.CompressionService;
+import aug.bueno.cloudstorage.services.FileChunkService;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.List;
+
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.newContentDigest;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.toHex;
+
+/*
+ * Moves stored content between backends. Every chunk (or file) is moved in its own transaction, so the application
+ * keeps serving while a migration runs and an interrupted migration can simply be started again.
+ */
+@Service
+public class BlobStoreMigrationService {
+
+    private static final int BATCH_SIZE = 100;
+
+    private FileMapper fileMapper;
+    private FileChunkMapper fileChunkMapper;
+    private FileChunkService fileChunkService;
+    private BlobStoreRegistry blobStoreRegistry;
+    private TransactionTemplate transactionTemplate;
+
+    public BlobStoreMigrationService(FileMapper fileMapper, FileChunkMapper fileChunkMapper, FileChunkService fileChunkService,
+                                     BlobStoreRegistry blobStoreRegistry, TransactionTemplate transactionTemplate) {
+        this.fileMapper = fileMapper;
+        this.fileChunkMapper = fileChunkMapper;
+        this.fileChunkService = fileChunkService;
+        this.blobStoreRegistry = blobStoreRegistry;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * Rewrites files still kept in FILES.filedata as chunks in the active store.
+     *
+     * @return number of files moved
+     */
+    public int migrateInlineFiles() {
+        int afterFileID = 0;
+        int moved = 0;
+        List<File> batch;
+
+        while (!(batch = fileMapper.findFilesWithInlineData(afterFileID, BATCH_SIZE)).isEmpty()) {
+            for (File file : batch) {
+                moved += transactionTemplate.execute(status -> this.moveInlineFile(file));
+                afterFileID = file.getFileID();
+            }
+        }
+        return moved;
+    }
+
+    /**
+     * Copies every chunk that is not in the target store there, then deletes it from its previous store.
+     *
+     * @return number of chunks moved
+     */
+    public int migrateChunks(final String targetStoreName) {
+        final BlobStore target = blobStoreRegistry.get(targetStoreName);
+
+        String afterChunkHash = "";
+        int moved = 0;
+        List<FileChunk> batch;
+
+        while (!(batch = fileChunkMapper.getChunksNotInStorage(target.getName(), afterChunkHash, BATCH_SIZE)).isEmpty()) {
+            for (FileChunk chunk : batch) {
+                moved += transactionTemplate.execute(status -> this.moveChunk(chunk, target));
+                afterChunkHash = chunk.getChunkHash();
+            }
+        }
+        return moved;
+    }
+
+    private int moveInlineFile(final File file) {
+        try (InputStream fileDataStream = fileMapper.getFileDataStreamByIdAndUser(file.getFileID(), file.getUserID())) {
+
+            final MessageDigest digest = newContentDigest();
+            final long fileSize = fileChunkService.writeChunks(file.getFileID(), new DigestInputStream(fileDataStream, digest));
+
+            file.setContentHash(toHex(digest.digest()));
+            file.setFileSize(String.valueOf(fileSize));
+            file.setCodec(CompressionService.CODEC_IDENTITY);
+            file.setStoredSize(fileSize);
+
+            fileMapper.updateStoredContent(file);
+            return fileMapper.clearFileData(file.getFileID());
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int moveChunk(final FileChunk chunk, final BlobStore target) {
+        final BlobStore source = blobStoreRegistry.get(chunk.getStorage());
+
+        try {
+            final ByteArrayOutputStream chunkData = new ByteArrayOutputStream(chunk.getChunkSize());
+            source.copyRange(chunk.getChunkHash(), 0, chunk.getChunkSize() - 1, chunkData);
+            target.put(chunk.getChunkHash(), chunkData.toByteArray(), chunk.getChunkSize());
+
+            // Zero rows: the chunk was released or moved by someone else since the batch was read
+            if (fileChunkMapper.updateStorage(chunk.getChunkHash(), source.getName(), target.getName()) == 0) {
+                return 0;
+            }
+
+            source.delete(chunk.getChunkHash());
+            return 1;
+
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
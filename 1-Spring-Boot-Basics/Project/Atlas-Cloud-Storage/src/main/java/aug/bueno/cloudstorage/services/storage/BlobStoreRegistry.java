@@ -0,0 +1,40 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ * New chunks go to the store selected by atlas.storage.backend (database | filesystem), existing chunks are read
+ * from the store recorded in FILE_CHUNKS.storage.
+ */
+@Component
+public class BlobStoreRegistry {
+
+    private Map<String, BlobStore> blobStores;
+    private BlobStore activeBlobStore;
+
+    public BlobStoreRegistry(List<BlobStore> blobStores,
+                             @Value("${atlas.storage.backend:" + DatabaseBlobStore.NAME + "}") String activeBlobStore) {
+        this.blobStores = blobStores.stream().collect(Collectors.toMap(BlobStore::getName, Function.identity()));
+        this.activeBlobStore = this.get(activeBlobStore);
+    }
+
+    public BlobStore getActive() {
+        return activeBlobStore;
+    }
+
+    public BlobStore get(final String name) {
+        final BlobStore blobStore = blobStores.get(name);
+
+        if (Objects.isNull(blobStore)) {
+            throw new IllegalArgumentException("Unknown blob store '" + name + "', expected one of " + blobStores.keySet());
+        }
+        return blobStore;
+    }
+}
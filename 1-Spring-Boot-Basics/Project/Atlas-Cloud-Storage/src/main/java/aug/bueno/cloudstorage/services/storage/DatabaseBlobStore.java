@@ -0,0 +1,53 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import aug.bueno.cloudstorage.repository.mapper.FileChunkMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StreamUtils;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/*
+ * Keeps chunk payloads in FILE_CHUNKS.chunkdata, next to their refcount. Must be used inside a transaction.
+ */
+@Component
+public class DatabaseBlobStore implements BlobStore {
+
+    public static final String NAME = "database";
+
+    private FileChunkMapper fileChunkMapper;
+
+    public DatabaseBlobStore(FileChunkMapper fileChunkMapper) {
+        this.fileChunkMapper = fileChunkMapper;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void put(final String chunkHash, final byte[] buffer, final int length) {
+        fileChunkMapper.updateChunkData(chunkHash, Arrays.copyOf(buffer, length));
+    }
+
+    @Override
+    public void copyRange(final String chunkHash, final long start, final long end, final OutputStream outputStream) throws IOException {
+        try (InputStream chunkDataStream = fileChunkMapper.getChunkDataStream(chunkHash)) {
+
+            if (chunkDataStream == null) {
+                throw new FileNotFoundException("Chunk " + chunkHash + " has no data in the database");
+            }
+
+            StreamUtils.copyRange(chunkDataStream, outputStream, start, end);
+        }
+    }
+
+    @Override
+    public void delete(final String chunkHash) {
+        fileChunkMapper.updateChunkData(chunkHash, null);
+    }
+}
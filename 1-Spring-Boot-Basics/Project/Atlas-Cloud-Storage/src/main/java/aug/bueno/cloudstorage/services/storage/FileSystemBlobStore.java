@@ -0,0 +1,199 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import aug.bueno.cloudstorage.model.FileChunk;
+import aug.bueno.cloudstorage.repository.mapper.FileChunkMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Keeps chunk payloads as files named by their hash under atlas.storage.filesystem.root, sharded in two directory
+ * levels (ab/cd/abcd...) so no directory grows past 65536 entries.
+ *
+ * Files are not transactional, they follow the transaction that wrote or released their FILE_CHUNKS row: a file put
+ * by a transaction that rolls back is removed, and a released file is only removed after commit. Both removals are
+ * decided again once the transaction is over, against the committed FILE_CHUNKS row and the puts of transactions
+ * still open in this process, so a chunk stored again in the meantime keeps its file. The root is meant to be local
+ * to one node.
+ */
+@Component
+public class FileSystemBlobStore implements BlobStore {
+    private Logger LOGGER = LoggerFactory.getLogger(FileSystemBlobStore.class);
+
+    public static final String NAME = "filesystem";
+
+    private static final int LOCK_STRIPES = 64;
+
+    private Path root;
+    private FileChunkMapper fileChunkMapper;
+    private TransactionTemplate newTransactionTemplate;
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+    // Chunk hash -> puts of transactions not completed yet, changed and read with the lock stripe of the hash held
+    private final Map<String, Integer> openPuts = new ConcurrentHashMap<>();
+
+    public FileSystemBlobStore(@Value("${atlas.storage.filesystem.root:atlas-data/chunks}") String root,
+                               FileChunkMapper fileChunkMapper, PlatformTransactionManager transactionManager) {
+        this.root = Paths.get(root).toAbsolutePath();
+        this.fileChunkMapper = fileChunkMapper;
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.newTransactionTemplate.setReadOnly(true);
+
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    /*
+     * Content-addressed, so an existing file already holds the same bytes. The chunk is written to a temp file,
+     * forced to disk and renamed, readers never see a partial chunk.
+     */
+    @Override
+    public void put(final String chunkHash, final byte[] buffer, final int length) throws IOException {
+        final Path chunkPath = this.resolve(chunkHash);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            this.openPut(chunkHash);
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(final int status) {
+                    closePut(chunkHash, status == STATUS_ROLLED_BACK);
+                }
+            });
+        }
+
+        if (Files.exists(chunkPath)) {
+            return;
+        }
+
+        Files.createDirectories(chunkPath.getParent());
+        final Path tempPath = Files.createTempFile(chunkPath.getParent(), chunkHash, ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.WRITE)) {
+            final ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, length);
+            while (byteBuffer.hasRemaining()) {
+                channel.write(byteBuffer);
+            }
+            channel.force(true);
+        }
+
+        Files.move(tempPath, chunkPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void copyRange(final String chunkHash, final long start, final long end, final OutputStream outputStream) throws IOException {
+        // The target channel is not closed, it would close the response stream
+        final WritableByteChannel target = Channels.newChannel(outputStream);
+
+        try (FileChannel channel = FileChannel.open(this.resolve(chunkHash), StandardOpenOption.READ)) {
+            long position = start;
+            long remaining = end - start + 1;
+
+            while (remaining > 0) {
+                final long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new EOFException("Chunk " + chunkHash + " is shorter than " + (end + 1) + " bytes");
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+    }
+
+    /*
+     * When called inside a transaction the file is only removed after commit, so a rollback never leaves a
+     * FILE_CHUNKS row pointing to a missing file
+     */
+    @Override
+    public void delete(final String chunkHash) throws IOException {
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Files.deleteIfExists(this.resolve(chunkHash));
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                synchronized (lockFor(chunkHash)) {
+                    deleteIfUnreferenced(chunkHash);
+                }
+            }
+        });
+    }
+
+    private void openPut(final String chunkHash) {
+        synchronized (this.lockFor(chunkHash)) {
+            openPuts.merge(chunkHash, 1, Integer::sum);
+        }
+    }
+
+    /*
+     * The file of a rolled back put is removed unless another open transaction put it too, or a committed row
+     * still stores the chunk here (it existed before the put, or was stored again since)
+     */
+    private void closePut(final String chunkHash, final boolean rolledBack) {
+        synchronized (this.lockFor(chunkHash)) {
+            openPuts.computeIfPresent(chunkHash, (hash, count) -> count > 1 ? count - 1 : null);
+
+            if (rolledBack) {
+                this.deleteIfUnreferenced(chunkHash);
+            }
+        }
+    }
+
+    /*
+     * Called with the lock of the chunk held, after the transaction that released or put it is over. A put of an
+     * open transaction finds the file still there when this skips it, or else writes it again.
+     */
+    private void deleteIfUnreferenced(final String chunkHash) {
+        final Path chunkPath = this.resolve(chunkHash);
+
+        try {
+            if (openPuts.containsKey(chunkHash)) {
+                return;
+            }
+
+            final FileChunk fileChunk = newTransactionTemplate.execute(status -> fileChunkMapper.getChunk(chunkHash));
+
+            if (Objects.isNull(fileChunk) || !NAME.equals(fileChunk.getStorage())) {
+                Files.deleteIfExists(chunkPath);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.error("Could not delete chunk file " + chunkPath + ": " + e.getMessage());
+        }
+    }
+
+    private Object lockFor(final String chunkHash) {
+        return locks[Math.floorMod(chunkHash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private Path resolve(final String chunkHash) {
+        return root.resolve(chunkHash.substring(0, 2)).resolve(chunkHash.substring(2, 4)).resolve(chunkHash);
+    }
+}
@@ -0,0 +1,121 @@
+package aug.bueno.cloudstorage.services.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/*
+ * Small in-process cache: least recently used entries are evicted past maxSize and entries expire ttl after they were
+ * loaded, so a missed invalidation heals by itself. Values are loaded outside the lock, two threads missing the same key
+ * may both load it. A value loaded while an invalidation happened is returned but not cached, it may predate the change
+ * the invalidation was for. Null values are not cached.
+ */
+public class BoundedCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Clock clock;
+    private final Map<K, Entry<V>> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    /* Guarded by entries */
+    private long invalidations;
+
+    public BoundedCache(final int maxSize, final Duration ttl) {
+        this(maxSize, ttl, Clock.systemUTC());
+    }
+
+    public BoundedCache(final int maxSize, final Duration ttl, final Clock clock) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<K, Entry<V>> eldest) {
+                return size() > BoundedCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * The cached value of the key, loaded (and cached when not null) on a miss.
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader) {
+        return this.get(key, loader, value -> true);
+    }
+
+    /**
+     * The cached value of the key, loaded on a miss and cached only when cacheable.
+     */
+    public V get(final K key, final Function<? super K, ? extends V> loader, final Predicate<? super V> cacheable) {
+        final long now = clock.millis();
+        final long invalidationsBefore;
+
+        synchronized (entries) {
+            final Entry<V> entry = entries.get(key);
+
+            if (Objects.nonNull(entry) && entry.expiresAt > now) {
+                hits.increment();
+                return entry.value;
+            }
+            invalidationsBefore = invalidations;
+        }
+
+        misses.increment();
+        final V value = loader.apply(key);
+
+        if (Objects.nonNull(value) && maxSize > 0 && cacheable.test(value)) {
+            synchronized (entries) {
+                if (invalidations == invalidationsBefore) {
+                    entries.put(key, new Entry<>(value, now + ttlMillis));
+                }
+            }
+        }
+        return value;
+    }
+
+    public void invalidate(final K key) {
+        synchronized (entries) {
+            invalidations++;
+            entries.remove(key);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (entries) {
+            invalidations++;
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(final V value, final long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package aug.bueno.cloudstorage.services.util;
+
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class ContentHashUtil {
+
+    public static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+
+    public static MessageDigest newContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static String toHex(final byte[] hash) {
+        return String.format("%0" + (hash.length * 2) + "x", new BigInteger(1, hash));
+    }
+}
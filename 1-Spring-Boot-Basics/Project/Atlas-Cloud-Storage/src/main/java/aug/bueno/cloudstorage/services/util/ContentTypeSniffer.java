@@ -0,0 +1,112 @@
+package aug.bueno.cloudstorage.services.util;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.Optional;
+
+/*
+ * Tells the media type from the first bytes of a file. Signatures that identify a format are trusted over the type
+ * the browser declared, container formats (zip, ISO media) only fill in a missing or generic type, since a declared
+ * docx or m4a is more precise than what the container says.
+ */
+public class ContentTypeSniffer {
+
+    public static final int HEAD_SIZE = 8 * 1024;
+
+    public static final String GENERIC_TYPE = "application/octet-stream";
+
+    /**
+     * The media type to keep for a file declared as declaredType whose content starts with head.
+     */
+    public static String resolve(final String declaredType, final byte[] head) {
+        final boolean generic = Objects.isNull(declaredType) || declaredType.isBlank() || declaredType.equalsIgnoreCase(GENERIC_TYPE);
+
+        final Optional<String> exactType = sniffExact(head);
+
+        if (exactType.isPresent()) {
+            return exactType.get();
+        }
+
+        if (!generic) {
+            return declaredType;
+        }
+
+        return sniffContainer(head).orElse(isText(head) ? "text/plain" : GENERIC_TYPE);
+    }
+
+    private static Optional<String> sniffExact(final byte[] head) {
+
+        if (startsWith(head, 0, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return Optional.of("image/png");
+        }
+        if (startsWith(head, 0, 0xFF, 0xD8, 0xFF)) {
+            return Optional.of("image/jpeg");
+        }
+        if (startsWith(head, 0, 'G', 'I', 'F', '8', '7', 'a') || startsWith(head, 0, 'G', 'I', 'F', '8', '9', 'a')) {
+            return Optional.of("image/gif");
+        }
+        if (startsWith(head, 0, 'R', 'I', 'F', 'F') && startsWith(head, 8, 'W', 'E', 'B', 'P')) {
+            return Optional.of("image/webp");
+        }
+        if (startsWith(head, 0, '%', 'P', 'D', 'F', '-')) {
+            return Optional.of("application/pdf");
+        }
+        if (startsWith(head, 0, 0x1F, 0x8B)) {
+            return Optional.of("application/gzip");
+        }
+        return Optional.empty();
+    }
+
+    private static Optional<String> sniffContainer(final byte[] head) {
+
+        if (startsWith(head, 0, 'P', 'K', 0x03, 0x04)) {
+            return Optional.of("application/zip");
+        }
+        if (startsWith(head, 4, 'f', 't', 'y', 'p')) {
+            return Optional.of("video/mp4");
+        }
+        return Optional.empty();
+    }
+
+    /*
+     * No NUL byte and valid UTF-8, the head may end in the middle of a character
+     */
+    private static boolean isText(final byte[] head) {
+
+        if (head.length == 0) {
+            return false;
+        }
+
+        for (byte b : head) {
+            if (b == 0) {
+                return false;
+            }
+        }
+
+        // Not at end of input, so a character cut by the end of the head is not an error
+        final CoderResult result = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPORT)
+                .onUnmappableCharacter(CodingErrorAction.REPORT)
+                .decode(ByteBuffer.wrap(head), CharBuffer.allocate(head.length), false);
+
+        return !result.isError();
+    }
+
+    private static boolean startsWith(final byte[] head, final int offset, final int... signature) {
+
+        if (head.length < offset + signature.length) {
+            return false;
+        }
+
+        for (int i = 0; i < signature.length; i++) {
+            if ((head[offset + i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
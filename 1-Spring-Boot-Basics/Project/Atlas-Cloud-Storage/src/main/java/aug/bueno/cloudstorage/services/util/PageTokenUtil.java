@@ -0,0 +1,61 @@
+package aug.bueno.cloudstorage.services.util;
+
+import aug.bueno.cloudstorage.dto.PageDTO;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
+
+/*
+ * Keyset pagination: listings are ordered by their ID and a page starts after the last ID of the previous one, so
+ * reading a page costs the same however far into the listing it is. The page token carries that ID; it is not a
+ * secret, the queries are scoped to the user anyway.
+ */
+public class PageTokenUtil {
+
+    public static String toPageToken(final int afterID) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+                Integer.toString(afterID).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * The ID the page starts after, 0 for the first page. Throws IllegalArgumentException for a token not made by
+     * toPageToken.
+     */
+    public static int fromPageToken(final String pageToken) {
+
+        if (Objects.isNull(pageToken) || pageToken.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            final int afterID = Integer.parseInt(new String(Base64.getUrlDecoder().decode(pageToken),
+                    StandardCharsets.US_ASCII));
+
+            if (afterID < 0) {
+                throw new IllegalArgumentException("Invalid page token");
+            }
+            return afterID;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid page token", e);
+        }
+    }
+
+    /**
+     * The page out of rows read with a limit of pageSize + 1, the extra row only tells there is a next page.
+     */
+    public static <R, T> PageDTO<T> toPage(final List<R> rows, final int pageSize, final ToIntFunction<R> idOf,
+                                           final Function<R, T> mapper) {
+
+        final List<R> pageRows = rows.size() > pageSize ? rows.subList(0, pageSize) : rows;
+
+        return PageDTO.<T>builder()
+                .items(pageRows.stream().map(mapper).collect(Collectors.toList()))
+                .nextPageToken(rows.size() > pageSize ? toPageToken(idOf.applyAsInt(pageRows.get(pageSize - 1))) : null)
+                .build();
+    }
+}
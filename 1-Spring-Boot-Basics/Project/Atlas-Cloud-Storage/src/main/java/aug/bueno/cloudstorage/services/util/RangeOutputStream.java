@@ -0,0 +1,46 @@
+package aug.bueno.cloudstorage.services.util;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/*
+ * Forwards only the bytes [start, end] (inclusive) of what is written to it, for ranges that can't be seeked to
+ */
+public class RangeOutputStream extends FilterOutputStream {
+
+    private final long start;
+    private final long end;
+    private long position;
+
+    public RangeOutputStream(final OutputStream out, final long start, final long end) {
+        super(out);
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (position >= start && position <= end) {
+            out.write(b);
+        }
+        position++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        final long from = Math.max(start, position);
+        final long to = Math.min(end + 1, position + len);
+
+        if (from < to) {
+            out.write(b, off + (int) (from - position), (int) (to - from));
+        }
+        position += len;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The wrapped stream belongs to the caller
+        flush();
+    }
+}
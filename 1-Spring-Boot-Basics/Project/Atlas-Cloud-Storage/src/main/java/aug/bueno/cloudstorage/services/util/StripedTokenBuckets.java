@@ -0,0 +1,71 @@
+package aug.bueno.cloudstorage.services.util;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/*
+ * Token buckets for an unbounded set of keys in a fixed amount of memory: keys are hashed onto a power of two number
+ * of stripes and keys sharing a stripe share its bucket, which only makes the limit stricter for them.
+ *
+ * Each bucket is a single long, the time at which it will be full again (the GCRA form of a token bucket), updated
+ * with compare-and-set, so no lock is ever taken.
+ */
+public class StripedTokenBuckets {
+
+    private final AtomicLongArray fullAt;
+    private final int mask;
+    private final long refillMillis;
+    private final long burstMillis;
+    private final Clock clock;
+
+    /**
+     * @param stripes      number of buckets, rounded up to a power of two
+     * @param capacity     tokens a bucket holds, the burst a key can spend at once
+     * @param refillPeriod time to get one token back
+     */
+    public StripedTokenBuckets(final int stripes, final int capacity, final Duration refillPeriod) {
+        this(stripes, capacity, refillPeriod, Clock.systemUTC());
+    }
+
+    public StripedTokenBuckets(final int stripes, final int capacity, final Duration refillPeriod, final Clock clock) {
+        final int size = Integer.highestOneBit(Math.max(1, stripes - 1) << 1);
+        this.fullAt = new AtomicLongArray(size);
+        this.mask = size - 1;
+        this.refillMillis = Math.max(1, refillPeriod.toMillis());
+        this.burstMillis = refillMillis * capacity;
+        this.clock = clock;
+    }
+
+    /**
+     * Takes a token from the bucket of the key, false when it's empty.
+     */
+    public boolean tryAcquire(final Object key) {
+        final int stripe = spread(key.hashCode()) & mask;
+        final long now = clock.millis();
+
+        while (true) {
+            final long current = fullAt.get(stripe);
+            final long next = Math.max(current, now) + refillMillis;
+
+            if (next - now > burstMillis) {
+                return false;
+            }
+
+            if (fullAt.compareAndSet(stripe, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    public Duration getRefillPeriod() {
+        return Duration.ofMillis(refillMillis);
+    }
+
+    /*
+     * Same as HashMap, so keys differing in their high bits don't all land on one stripe
+     */
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
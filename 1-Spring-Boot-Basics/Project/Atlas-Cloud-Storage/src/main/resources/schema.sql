@@ -7,6 +7,8 @@ CREATE TABLE IF NOT EXISTS USERS (
   lastname VARCHAR(20)
 );
 
+CREATE UNIQUE INDEX IF NOT EXISTS idx_users_username ON USERS(username);
+
 CREATE TABLE IF NOT EXISTS NOTES (
     noteid INT PRIMARY KEY auto_increment,
     notetitle VARCHAR(20),
@@ -15,6 +17,8 @@ CREATE TABLE IF NOT EXISTS NOTES (
     foreign key (userid) references USERS(userid)
 );
 
+CREATE INDEX IF NOT EXISTS idx_notes_userid_noteid ON NOTES(userid, noteid);
+
 CREATE TABLE IF NOT EXISTS FILES (
     fileid INT PRIMARY KEY auto_increment,
     filename VARCHAR,
@@ -22,9 +26,19 @@ CREATE TABLE IF NOT EXISTS FILES (
     filesize VARCHAR,
     userid INT,
     filedata BLOB,
+    contenthash VARCHAR(64),
+    codec VARCHAR(20),
+    storedsize BIGINT,
+    processingstate VARCHAR(20),
+    processingattempts INT DEFAULT 0,
+    processingdueat TIMESTAMP,
     foreign key (userid) references USERS(userid)
 );
 
+CREATE INDEX IF NOT EXISTS idx_files_userid_filename ON FILES(userid, filename);
+CREATE INDEX IF NOT EXISTS idx_files_userid_fileid ON FILES(userid, fileid);
+CREATE INDEX IF NOT EXISTS idx_files_processing ON FILES(processingstate, processingdueat);
+
 CREATE TABLE IF NOT EXISTS CREDENTIALS (
     credentialid INT PRIMARY KEY auto_increment,
     url VARCHAR(100),
@@ -33,4 +47,88 @@ CREATE TABLE IF NOT EXISTS CREDENTIALS (
     password VARCHAR,
     userid INT,
     foreign key (userid) references USERS(userid)
-);
\ No newline at end of file
+);
+
+CREATE INDEX IF NOT EXISTS idx_credentials_userid_credentialid ON CREDENTIALS(userid, credentialid);
+
+CREATE TABLE IF NOT EXISTS USER_DATA_KEYS (
+    userid INT PRIMARY KEY,
+    wrappedkey VARCHAR,
+    masterkeyalias VARCHAR(50),
+    createdat TIMESTAMP,
+    foreign key (userid) references USERS(userid) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_user_data_keys_alias ON USER_DATA_KEYS(masterkeyalias);
+
+CREATE TABLE IF NOT EXISTS FILE_CHUNKS (
+    chunkhash VARCHAR(64) PRIMARY KEY,
+    chunksize INT,
+    refcount INT,
+    storage VARCHAR(20),
+    chunkdata BLOB
+);
+
+CREATE TABLE IF NOT EXISTS FILE_CHUNK_MANIFESTS (
+    fileid INT,
+    chunkindex INT,
+    chunkoffset BIGINT,
+    chunksize INT,
+    chunkhash VARCHAR(64),
+    primary key (fileid, chunkindex),
+    foreign key (fileid) references FILES(fileid) ON DELETE CASCADE,
+    foreign key (chunkhash) references FILE_CHUNKS(chunkhash)
+);
+
+CREATE TABLE IF NOT EXISTS UPLOAD_SESSIONS (
+    uploadid VARCHAR(36) PRIMARY KEY,
+    filename VARCHAR,
+    contenttype VARCHAR,
+    filesize BIGINT,
+    userid INT,
+    createdat TIMESTAMP,
+    foreign key (userid) references USERS(userid)
+);
+
+CREATE TABLE IF NOT EXISTS UPLOAD_SESSION_PARTS (
+    uploadid VARCHAR(36),
+    partnumber INT,
+    partsize BIGINT,
+    parthash VARCHAR(64),
+    primary key (uploadid, partnumber),
+    foreign key (uploadid) references UPLOAD_SESSIONS(uploadid) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS UPLOAD_SESSION_CHUNKS (
+    uploadid VARCHAR(36),
+    partnumber INT,
+    chunkindex INT,
+    chunksize INT,
+    chunkhash VARCHAR(64),
+    primary key (uploadid, partnumber, chunkindex),
+    foreign key (uploadid, partnumber) references UPLOAD_SESSION_PARTS(uploadid, partnumber) ON DELETE CASCADE,
+    foreign key (chunkhash) references FILE_CHUNKS(chunkhash)
+);
+
+CREATE TABLE IF NOT EXISTS FILE_PREVIEWS (
+    fileid INT PRIMARY KEY,
+    contenttype VARCHAR(50),
+    previewdata BLOB,
+    foreign key (fileid) references FILES(fileid) ON DELETE CASCADE
+);
+
+CREATE TABLE IF NOT EXISTS USER_STORAGE_USAGE (
+    userid INT PRIMARY KEY,
+    usedbytes BIGINT DEFAULT 0,
+    filecount INT DEFAULT 0,
+    pendingbytes BIGINT DEFAULT 0,
+    foreign key (userid) references USERS(userid) ON DELETE CASCADE
+);
+
+CREATE INDEX IF NOT EXISTS idx_usage_usedbytes ON USER_STORAGE_USAGE(usedbytes);
+
+INSERT INTO USER_STORAGE_USAGE (userid, usedbytes, filecount)
+SELECT u.userid, COALESCE(SUM(CAST(f.filesize AS BIGINT)), 0), COUNT(f.fileid)
+FROM USERS u LEFT JOIN FILES f ON f.userid = u.userid
+WHERE NOT EXISTS (SELECT 1 FROM USER_STORAGE_USAGE s WHERE s.userid = u.userid)
+GROUP BY u.userid;
@@ -0,0 +1,115 @@
+package aug.bueno.cloudstorage.benchmark;
+
+import aug.bueno.cloudstorage.dto.CredentialFormDTO;
+import aug.bueno.cloudstorage.services.EncryptionService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Cost per credential of decrypting a vault: one Cipher.getInstance per value as the home page used to do, the reused
+ * cipher of EncryptionService on credentials with their own key, and on credentials sealed with the user data key.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath aug.bueno.cloudstorage.benchmark.CredentialDecryptionBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CredentialDecryptionBenchmark {
+
+    private static final int CREDENTIALS = 200;
+
+    private EncryptionService encryptionService;
+    private List<CredentialFormDTO> credentials;
+    private List<CredentialFormDTO> sealedCredentials;
+    private SecretKey dataKey;
+
+    @Setup
+    public void setUp() throws GeneralSecurityException {
+        encryptionService = new EncryptionService();
+        credentials = new ArrayList<>(CREDENTIALS);
+        sealedCredentials = new ArrayList<>(CREDENTIALS);
+
+        final KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(256);
+        dataKey = keyGenerator.generateKey();
+
+        final SecureRandom random = new SecureRandom();
+
+        for (int i = 0; i < CREDENTIALS; i++) {
+            final byte[] key = new byte[16];
+            random.nextBytes(key);
+            final String encodedKey = Base64.getEncoder().encodeToString(key);
+
+            credentials.add(CredentialFormDTO.builder()
+                    .credentialID(i)
+                    .key(encodedKey)
+                    .password(encryptionService.encryptValue("password-" + i, encodedKey))
+                    .build());
+
+            sealedCredentials.add(CredentialFormDTO.builder()
+                    .credentialID(i)
+                    .userID(1)
+                    .password(encryptionService.sealCredentialPassword("password-" + i, dataKey, 1))
+                    .build());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CREDENTIALS)
+    public List<String> decryptWithNewCipher() throws GeneralSecurityException {
+        final List<String> decryptedPasswords = new ArrayList<>(CREDENTIALS);
+
+        for (CredentialFormDTO credential : credentials) {
+            final Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(credential.getKey().getBytes(), "AES"));
+            decryptedPasswords.add(new String(cipher.doFinal(Base64.getDecoder().decode(credential.getPassword()))));
+        }
+        return decryptedPasswords;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CREDENTIALS)
+    public List<String> decryptValue() {
+        final List<String> decryptedPasswords = new ArrayList<>(CREDENTIALS);
+
+        for (CredentialFormDTO credential : credentials) {
+            decryptedPasswords.add(encryptionService.decryptValue(credential.getPassword(), credential.getKey()));
+        }
+        return decryptedPasswords;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CREDENTIALS)
+    public List<String> openCredentialPassword() {
+        final List<String> decryptedPasswords = new ArrayList<>(CREDENTIALS);
+
+        for (CredentialFormDTO credential : sealedCredentials) {
+            decryptedPasswords.add(encryptionService.openCredentialPassword(credential.getPassword(), dataKey,
+                    credential.getUserID()));
+        }
+        return decryptedPasswords;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CredentialDecryptionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
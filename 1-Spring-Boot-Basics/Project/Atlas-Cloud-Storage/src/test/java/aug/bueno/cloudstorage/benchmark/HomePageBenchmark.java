@@ -0,0 +1,103 @@
+package aug.bueno.cloudstorage.benchmark;
+
+import aug.bueno.cloudstorage.dto.*;
+import aug.bueno.cloudstorage.services.*;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.mockito.stubbing.Answer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Home page data assembly, the three tab queries and the storage usage one after the other as HomeController used to
+ * read them, against HomePageService reading them side by side. The services are mocked out with a fixed latency each
+ * (notes 4 ms, credentials 3 ms, files 5 ms, storage usage 1 ms), so the time is the waiting and not the CPU work.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath aug.bueno.cloudstorage.benchmark.HomePageBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HomePageBenchmark {
+
+    private static final int USER_ID = 1;
+    private static final int PAGE_SIZE = 50;
+
+    private NoteService noteService;
+    private CredentialService credentialService;
+    private FileService fileService;
+    private QuotaService quotaService;
+    private ThreadPoolTaskExecutor homePageExecutor;
+    private HomePageService homePageService;
+
+    @Setup
+    public void setUp() {
+        noteService = Mockito.mock(NoteService.class);
+        Mockito.when(noteService.findNotesPageUser(ArgumentMatchers.anyInt(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenAnswer(after(4, PageDTO.<NoteFormDTO>builder().items(Collections.emptyList()).build()));
+
+        credentialService = Mockito.mock(CredentialService.class);
+        Mockito.when(credentialService.findCredentialsPageUser(ArgumentMatchers.anyInt(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenAnswer(after(3, PageDTO.<CredentialFormDTO>builder().items(Collections.emptyList()).build()));
+
+        fileService = Mockito.mock(FileService.class);
+        Mockito.when(fileService.findFilesPageUser(ArgumentMatchers.anyInt(), ArgumentMatchers.any(), ArgumentMatchers.anyInt()))
+                .thenAnswer(after(5, PageDTO.<FileFormDTO>builder().items(Collections.emptyList()).build()));
+
+        quotaService = Mockito.mock(QuotaService.class);
+        Mockito.when(quotaService.getUsage(ArgumentMatchers.anyInt()))
+                .thenAnswer(after(1, StorageUsageDTO.builder().userID(USER_ID).build()));
+
+        homePageExecutor = new ThreadPoolTaskExecutor();
+        homePageExecutor.setCorePoolSize(8);
+        homePageExecutor.setMaxPoolSize(8);
+        homePageExecutor.initialize();
+
+        homePageService = new HomePageService(noteService, credentialService, fileService, quotaService,
+                homePageExecutor, Duration.ofSeconds(2));
+    }
+
+    @TearDown
+    public void tearDown() {
+        homePageExecutor.shutdown();
+    }
+
+    @Benchmark
+    public HomePageDTO sequential() {
+        return HomePageDTO.builder()
+                .notes(noteService.findNotesPageUser(USER_ID, null, PAGE_SIZE))
+                .credentials(credentialService.findCredentialsPageUser(USER_ID, null, PAGE_SIZE))
+                .files(fileService.findFilesPageUser(USER_ID, null, PAGE_SIZE))
+                .storageUsage(quotaService.getUsage(USER_ID))
+                .build();
+    }
+
+    @Benchmark
+    public HomePageDTO fanOut() {
+        return homePageService.getHomePage(USER_ID, PAGE_SIZE);
+    }
+
+    private static <T> Answer<T> after(final long millis, final T result) {
+        return invocation -> {
+            TimeUnit.MILLISECONDS.sleep(millis);
+            return result;
+        };
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(HomePageBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
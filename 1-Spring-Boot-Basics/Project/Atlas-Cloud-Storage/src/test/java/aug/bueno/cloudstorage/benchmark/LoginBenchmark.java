@@ -0,0 +1,91 @@
+package aug.bueno.cloudstorage.benchmark;
+
+import aug.bueno.cloudstorage.model.User;
+import aug.bueno.cloudstorage.repository.mapper.UserMapper;
+import aug.bueno.cloudstorage.services.AuthenticationService;
+import aug.bueno.cloudstorage.services.HashService;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Logins per second on a single thread, i.e. per core. The database is mocked out, only the password work is measured.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath aug.bueno.cloudstorage.benchmark.LoginBenchmark"
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+public class LoginBenchmark {
+
+    private static final String USER_NAME = "benchmark";
+    private static final String PASSWORD = "benchmark-password";
+
+    private HashService hashService;
+    private AuthenticationService uncachedAuthenticationService;
+    private AuthenticationService cachedAuthenticationService;
+    private User user;
+    private Authentication loginRequest;
+
+    @Setup
+    public void setUp() {
+        hashService = new HashService("PBKDF2WithHmacSHA256", 5000, 256);
+
+        final String salt = hashService.getEncodedSalt();
+        user = User.builder()
+                .userID(1)
+                .userName(USER_NAME)
+                .salt(salt)
+                .password(hashService.getPasswordHash(PASSWORD, salt))
+                .build();
+
+        final UserMapper userMapper = Mockito.mock(UserMapper.class);
+        Mockito.when(userMapper.getUserByName(USER_NAME)).thenReturn(Optional.of(user));
+
+        uncachedAuthenticationService = new AuthenticationService(userMapper, hashService, new String[0],
+                0, Duration.ZERO);
+        cachedAuthenticationService = new AuthenticationService(userMapper, hashService, new String[0],
+                10_000, Duration.ofMinutes(2));
+
+        loginRequest = new UsernamePasswordAuthenticationToken(USER_NAME, PASSWORD);
+    }
+
+    @Benchmark
+    public String legacyHash() {
+        return hashService.getHashedValue(PASSWORD, user.getSalt());
+    }
+
+    @Benchmark
+    public boolean verifyPassword() {
+        return hashService.verifyPassword(PASSWORD, user.getSalt(), user.getPassword());
+    }
+
+    @Benchmark
+    public Authentication loginUncached() {
+        return uncachedAuthenticationService.authenticate(loginRequest);
+    }
+
+    @Benchmark
+    public Authentication loginCached() {
+        return cachedAuthenticationService.authenticate(loginRequest);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LoginBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,185 @@
+package aug.bueno.cloudstorage.benchmark;
+
+import aug.bueno.cloudstorage.dto.SearchResultDTO;
+import aug.bueno.cloudstorage.model.Note;
+import aug.bueno.cloudstorage.model.SearchItemType;
+import aug.bueno.cloudstorage.repository.mapper.CredentialMapper;
+import aug.bueno.cloudstorage.repository.mapper.FileMapper;
+import aug.bueno.cloudstorage.repository.mapper.NoteMapper;
+import aug.bueno.cloudstorage.repository.mapper.UserMapper;
+import aug.bueno.cloudstorage.services.events.SearchableItemChangedEvent;
+import aug.bueno.cloudstorage.services.search.SearchIndexService;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+ * Search latency over a synthetic corpus of 1M notes, split into users of notesPerUser notes each: a whole word, a
+ * three letter prefix, two words, and re-indexing a saved note. Notes have a two word title and an eight word text
+ * drawn from a 5000 word vocabulary, skewed so that some words are much more common than others. The database is
+ * mocked out; the time to build all the indexes is logged during the setup.
+ *
+ * Run with: mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ *     -Dexec.args="-cp %classpath aug.bueno.cloudstorage.benchmark.SearchIndexBenchmark"
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SearchIndexBenchmark {
+
+    private static final int CORPUS_SIZE = 1_000_000;
+    private static final int VOCABULARY_SIZE = 5000;
+    private static final int TITLE_WORDS = 2;
+    private static final int TEXT_WORDS = 8;
+
+    private Logger LOGGER = LoggerFactory.getLogger(SearchIndexBenchmark.class);
+
+    @Param({"1000", "100000"})
+    private int notesPerUser;
+
+    private int users;
+    private String[] vocabulary;
+    private SearchIndexService searchIndexService;
+    private ThreadPoolTaskExecutor searchIndexExecutor;
+
+    @Setup
+    public void setUp() {
+        users = CORPUS_SIZE / notesPerUser;
+        vocabulary = newVocabulary(new Random(42));
+
+        final NoteMapper noteMapper = Mockito.mock(NoteMapper.class);
+        Mockito.when(noteMapper.getAllNotesByUser(ArgumentMatchers.anyInt()))
+                .thenAnswer(invocation -> this.newNotes(invocation.getArgument(0)));
+
+        final CredentialMapper credentialMapper = Mockito.mock(CredentialMapper.class);
+        final FileMapper fileMapper = Mockito.mock(FileMapper.class);
+        final UserMapper userMapper = Mockito.mock(UserMapper.class);
+        Mockito.when(userMapper.findAllUserIDs())
+                .thenReturn(IntStream.rangeClosed(1, users).boxed().collect(Collectors.toList()));
+
+        searchIndexExecutor = new ThreadPoolTaskExecutor();
+        searchIndexExecutor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+        searchIndexExecutor.setMaxPoolSize(Runtime.getRuntime().availableProcessors());
+        searchIndexExecutor.initialize();
+
+        searchIndexService = new SearchIndexService(noteMapper, credentialMapper, fileMapper, userMapper,
+                searchIndexExecutor, true, 100);
+
+        final long start = System.nanoTime();
+        searchIndexService.buildIndexes();
+
+        // A search waits for the index of its user to be built
+        for (int userID = 1; userID <= users; userID++) {
+            searchIndexService.search(userID, vocabulary[0], 1);
+        }
+
+        LOGGER.info("Indexed {} notes of {} users in {} ms", CORPUS_SIZE, users,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @TearDown
+    public void tearDown() {
+        searchIndexExecutor.shutdown();
+    }
+
+    @Benchmark
+    public List<SearchResultDTO> searchWord() {
+        return searchIndexService.search(this.randomUser(), this.randomWord(), 20);
+    }
+
+    @Benchmark
+    public List<SearchResultDTO> searchPrefix() {
+        return searchIndexService.search(this.randomUser(), this.randomWord().substring(0, 3), 20);
+    }
+
+    @Benchmark
+    public List<SearchResultDTO> searchTwoWords() {
+        return searchIndexService.search(this.randomUser(), this.randomWord() + " " + this.randomWord(), 20);
+    }
+
+    @Benchmark
+    public void indexSavedNote() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        searchIndexService.onSearchableItemChanged(SearchableItemChangedEvent.saved(SearchItemType.NOTE,
+                random.nextInt(notesPerUser), this.randomUser(), this.words(random, TITLE_WORDS),
+                this.words(random, TEXT_WORDS)));
+    }
+
+    private int randomUser() {
+        return 1 + ThreadLocalRandom.current().nextInt(users);
+    }
+
+    private String randomWord() {
+        return vocabulary[skewedIndex(ThreadLocalRandom.current())];
+    }
+
+    private List<Note> newNotes(final int userID) {
+        final Random random = new Random(userID);
+        final List<Note> notes = new ArrayList<>(notesPerUser);
+
+        for (int i = 0; i < notesPerUser; i++) {
+            notes.add(Note.builder()
+                    .noteID(i)
+                    .userID(userID)
+                    .noteTitle(this.words(random, TITLE_WORDS))
+                    .noteDescription(this.words(random, TEXT_WORDS))
+                    .build());
+        }
+        return notes;
+    }
+
+    private String words(final Random random, final int count) {
+        final StringBuilder words = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+            words.append(i == 0 ? "" : " ").append(vocabulary[skewedIndex(random)]);
+        }
+        return words.toString();
+    }
+
+    /*
+     * Low indexes much more likely than high ones
+     */
+    private static int skewedIndex(final Random random) {
+        final double uniform = random.nextDouble();
+        return (int) (uniform * uniform * VOCABULARY_SIZE);
+    }
+
+    private static String[] newVocabulary(final Random random) {
+        final String[] words = new String[VOCABULARY_SIZE];
+
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            final char[] letters = new char[4 + random.nextInt(6)];
+
+            for (int j = 0; j < letters.length; j++) {
+                letters[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(letters);
+        }
+        return words;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(SearchIndexBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package aug.bueno.cloudstorage.benchmark;
+
+import aug.bueno.cloudstorage.services.UserService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/*
+ * Signups per second through the whole MVC stack, from concurrent clients. Also checks that concurrent signups of
+ * the same user name end with exactly one user, which the unique index on USERS.username guarantees.
+ *
+ * Not part of the default test run (surefire only picks *Test classes), run with:
+ *     mvn test -Dtest=SignupLoadBenchmark
+ */
+@SpringBootTest(properties = "atlas.security.hash.queue-capacity=1000")
+@AutoConfigureMockMvc
+class SignupLoadBenchmark {
+
+    private Logger LOGGER = LoggerFactory.getLogger(SignupLoadBenchmark.class);
+
+    private static final int CLIENTS = 16;
+    private static final int SIGNUPS = 400;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void signupThroughput() throws Exception {
+        final AtomicInteger succeeded = new AtomicInteger();
+
+        final long elapsedNanos = this.runConcurrently(SIGNUPS, i -> {
+            if (this.signup("load-" + i).contains("success-signup-msg")) {
+                succeeded.incrementAndGet();
+            }
+        });
+
+        LOGGER.info("{} signups from {} clients in {} ms: {} signups/s", SIGNUPS, CLIENTS,
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), Math.round(SIGNUPS * 1e9 / elapsedNanos));
+
+        Assertions.assertEquals(SIGNUPS, succeeded.get());
+    }
+
+    @Test
+    void concurrentSignupsOfOneUserName() throws Exception {
+        final AtomicInteger succeeded = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+
+        this.runConcurrently(CLIENTS * 2, i -> {
+            final String page = this.signup("load-same");
+
+            if (page.contains("success-signup-msg")) {
+                succeeded.incrementAndGet();
+            } else if (page.contains("The username already exists.")) {
+                rejected.incrementAndGet();
+            }
+        });
+
+        Assertions.assertEquals(1, succeeded.get());
+        Assertions.assertEquals(CLIENTS * 2 - 1, rejected.get());
+        Assertions.assertTrue(userService.findUserByUserName("load-same").isPresent());
+    }
+
+    private String signup(final String userName) throws Exception {
+        final MvcResult started = mockMvc.perform(post("/signup")
+                .param("firstName", "Load")
+                .param("lastName", "Test")
+                .param("userName", userName)
+                .param("password", "load-password")
+                .with(csrf()))
+                .andReturn();
+
+        return mockMvc.perform(asyncDispatch(started)).andReturn().getResponse().getContentAsString();
+    }
+
+    private long runConcurrently(final int tasks, final Task task) throws Exception {
+        final ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+
+        try {
+            final List<Future<?>> futures = new ArrayList<>(tasks);
+            final long start = System.nanoTime();
+
+            for (int i = 0; i < tasks; i++) {
+                final int index = i;
+                futures.add(clients.submit(() -> {
+                    task.run(index);
+                    return null;
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            return System.nanoTime() - start;
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private interface Task {
+        void run(int index) throws Exception;
+    }
+}
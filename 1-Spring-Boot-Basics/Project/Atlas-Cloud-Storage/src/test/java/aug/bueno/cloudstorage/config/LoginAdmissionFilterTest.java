@@ -0,0 +1,71 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import static aug.bueno.cloudstorage.controller.util.MessageWrapperUtil.LOGIN_THROTTLED_MSG;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AtlasIntegrationTest
+class LoginAdmissionFilterTest {
+
+    // Same as atlas.security.login-admission.username.* in AtlasIntegrationTest
+    private static final int USER_NAME_CAPACITY = 3;
+    private static final long USER_NAME_REFILL_MILLIS = 1_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void burstPastTheUserNameBucketIsThrottledUntilItRefills() throws Exception {
+
+        for (int i = 0; i < USER_NAME_CAPACITY; i++) {
+            this.login("10.13.0." + i, "admission-burst")
+                    .andExpect(redirectedUrl("/login?error"));
+        }
+
+        this.login("10.13.0.100", "Admission-Burst")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(status().reason(LOGIN_THROTTLED_MSG))
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"));
+
+        Thread.sleep(USER_NAME_REFILL_MILLIS + 100);
+
+        this.login("10.13.0.101", "admission-burst")
+                .andExpect(redirectedUrl("/login?error"));
+    }
+
+    @Test
+    void burstFromOneAddressIsThrottled() throws Exception {
+        int status;
+        int attempts = 0;
+
+        do {
+            status = this.login("10.13.1.1", "admission-ip-" + attempts++).andReturn().getResponse().getStatus();
+        } while (status != HttpStatus.TOO_MANY_REQUESTS.value() && attempts <= 100);
+
+        this.login("10.13.1.1", "admission-ip-last")
+                .andExpect(status().isTooManyRequests())
+                .andExpect(status().reason(LOGIN_THROTTLED_MSG));
+        this.login("10.13.1.2", "admission-ip-last")
+                .andExpect(redirectedUrl("/login?error"));
+    }
+
+    private ResultActions login(final String remoteAddress, final String userName) throws Exception {
+        return mockMvc.perform(post("/login")
+                .param("username", userName)
+                .param("password", "wrongPassword")
+                .with(request -> {
+                    request.setRemoteAddr(remoteAddress);
+                    return request;
+                })
+                .with(csrf()));
+    }
+}
@@ -0,0 +1,89 @@
+package aug.bueno.cloudstorage.config;
+
+import aug.bueno.cloudstorage.services.UserService;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.http.Cookie;
+
+import static aug.bueno.cloudstorage.config.SessionTokenContextRepository.COOKIE_NAME;
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.TEST_PASSWORD;
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AtlasIntegrationTest
+@TestPropertySource(properties = "atlas.security.session.stateless=true")
+class SessionTokenContextRepositoryTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void loginSetsTheSessionCookieInsteadOfASession() throws Exception {
+        createUser(userService, "stateless-login");
+
+        final MvcResult login = mockMvc.perform(post("/login")
+                .param("username", "stateless-login")
+                .param("password", TEST_PASSWORD)
+                .with(csrf()))
+                .andExpect(redirectedUrl("/home"))
+                .andExpect(cookie().exists(COOKIE_NAME))
+                .andExpect(cookie().httpOnly(COOKIE_NAME, true))
+                .andExpect(cookie().maxAge(COOKIE_NAME, 30 * 60))
+                .andReturn();
+
+        Assertions.assertNull(login.getRequest().getSession(false));
+
+        mockMvc.perform(get("/home").cookie(login.getResponse().getCookie(COOKIE_NAME)))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void requestWithoutAValidCookieIsSentToTheLogin() throws Exception {
+        mockMvc.perform(get("/home"))
+                .andExpect(redirectedUrl("http://localhost/login"));
+
+        mockMvc.perform(get("/home").cookie(new Cookie(COOKIE_NAME, "v1.1.YQ.99999999999.AAAA")))
+                .andExpect(redirectedUrl("http://localhost/login"))
+                .andExpect(cookie().maxAge(COOKIE_NAME, 0));
+    }
+
+    @Test
+    void wrongPasswordSetsNoCookie() throws Exception {
+        createUser(userService, "stateless-wrong");
+
+        mockMvc.perform(post("/login")
+                .param("username", "stateless-wrong")
+                .param("password", TEST_PASSWORD + "x")
+                .with(csrf()))
+                .andExpect(redirectedUrl("/login?error"))
+                .andExpect(cookie().doesNotExist(COOKIE_NAME));
+    }
+
+    @Test
+    void logoutClearsTheSessionCookie() throws Exception {
+        createUser(userService, "stateless-logout");
+
+        final Cookie sessionCookie = mockMvc.perform(post("/login")
+                .param("username", "stateless-logout")
+                .param("password", TEST_PASSWORD)
+                .with(csrf()))
+                .andReturn().getResponse().getCookie(COOKIE_NAME);
+
+        mockMvc.perform(post("/logout").cookie(sessionCookie).with(csrf()))
+                .andExpect(redirectedUrl("/login"))
+                .andExpect(cookie().value(COOKIE_NAME, ""))
+                .andExpect(cookie().maxAge(COOKIE_NAME, 0));
+    }
+}
@@ -0,0 +1,88 @@
+package aug.bueno.cloudstorage.controller;
+
+import aug.bueno.cloudstorage.dto.CredentialFormDTO;
+import aug.bueno.cloudstorage.services.CredentialService;
+import aug.bueno.cloudstorage.services.UserService;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AtlasIntegrationTest
+class CredentialControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CredentialService credentialService;
+
+    @Test
+    void passwordIsOnlyRevealedToItsOwner() throws Exception {
+        final int userID = createUser(userService, "credential-owner");
+        createUser(userService, "credential-other");
+        final int credentialID = this.insertCredential(userID, "s3cret!");
+
+        final String home = mockMvc.perform(get("/home").with(user("credential-owner")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Assertions.assertFalse(home.contains("s3cret!"));
+
+        mockMvc.perform(get("/credential/" + credentialID + "/reveal").with(user("credential-owner")))
+                .andExpect(status().isOk())
+                .andExpect(content().string("s3cret!"))
+                .andExpect(header().string("Cache-Control", containsString("no-store")));
+
+        mockMvc.perform(get("/credential/" + credentialID + "/reveal").with(user("credential-other")))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void editWithoutPasswordKeepsTheStoredOne() throws Exception {
+        final int userID = createUser(userService, "credential-edit");
+        final int credentialID = this.insertCredential(userID, "s3cret!");
+
+        mockMvc.perform(post("/credential")
+                .param("credentialID", String.valueOf(credentialID))
+                .param("url", "http://edited")
+                .param("userName", "bob")
+                .param("password", "")
+                .with(user("credential-edit")).with(csrf()))
+                .andExpect(redirectedUrl("/result?isSuccess=true"));
+
+        Assertions.assertEquals("s3cret!", credentialService.findDecryptedPassword(credentialID, userID).orElseThrow());
+        Assertions.assertEquals("http://edited", credentialService.findAllCredentialsUser(userID).get(0).getUrl());
+
+        mockMvc.perform(post("/credential")
+                .param("credentialID", String.valueOf(credentialID))
+                .param("url", "http://edited")
+                .param("userName", "bob")
+                .param("password", "changed")
+                .with(user("credential-edit")).with(csrf()))
+                .andExpect(redirectedUrl("/result?isSuccess=true"));
+
+        Assertions.assertEquals("changed", credentialService.findDecryptedPassword(credentialID, userID).orElseThrow());
+    }
+
+    private int insertCredential(final int userID, final String password) {
+        credentialService.insertOrUpdateCredential(CredentialFormDTO.builder()
+                .url("http://example.com")
+                .userName("bob")
+                .password(password)
+                .build(), userID);
+
+        return credentialService.findAllCredentialsUser(userID).get(0).getCredentialID();
+    }
+}
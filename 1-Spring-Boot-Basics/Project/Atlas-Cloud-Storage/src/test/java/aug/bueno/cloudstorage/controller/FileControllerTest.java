@@ -0,0 +1,210 @@
+package aug.bueno.cloudstorage.controller;
+
+import aug.bueno.cloudstorage.services.FileService;
+import aug.bueno.cloudstorage.services.UserService;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.csrf;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AtlasIntegrationTest
+class FileControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Test
+    void downloadSendsTheWholeFileWithItsETag() throws Exception {
+        final byte[] data = randomBytes(1, 300_000);
+        createUser(userService, "download-whole");
+        final int fileID = this.upload("download-whole", "a.bin", "application/octet-stream", data);
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-whole")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, data.length))
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void matchingETagIsNotModified() throws Exception {
+        final byte[] data = randomBytes(2, 1_000);
+        createUser(userService, "download-etag");
+        final int fileID = this.upload("download-etag", "a.bin", "application/octet-stream", data);
+        final String eTag = this.eTag("download-etag", fileID);
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-etag"))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().bytes(new byte[0]));
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-etag"))
+                .header(HttpHeaders.IF_NONE_MATCH, "\"other\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void rangeIsPartialContent() throws Exception {
+        final byte[] data = randomBytes(3, 300_000);
+        createUser(userService, "download-range");
+        final int fileID = this.upload("download-range", "a.bin", "application/octet-stream", data);
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-range"))
+                .header(HttpHeaders.RANGE, "bytes=65530-131080"))
+                .andExpect(status().isPartialContent())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 65530-131080/300000"))
+                .andExpect(content().bytes(Arrays.copyOfRange(data, 65530, 131081)));
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-range"))
+                .header(HttpHeaders.RANGE, "bytes=-5"))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(data, data.length - 5, data.length)));
+    }
+
+    @Test
+    void ifRangeSendsTheRangeOnlyForTheCurrentETag() throws Exception {
+        final byte[] data = randomBytes(4, 10_000);
+        createUser(userService, "download-if-range");
+        final int fileID = this.upload("download-if-range", "a.bin", "application/octet-stream", data);
+        final String eTag = this.eTag("download-if-range", fileID);
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-if-range"))
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, eTag))
+                .andExpect(status().isPartialContent())
+                .andExpect(content().bytes(Arrays.copyOfRange(data, 10, 20)));
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-if-range"))
+                .header(HttpHeaders.RANGE, "bytes=10-19")
+                .header(HttpHeaders.IF_RANGE, "\"stale\""))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(data));
+    }
+
+    @Test
+    void rangePastTheEndIsNotSatisfiable() throws Exception {
+        final byte[] data = randomBytes(5, 1_000);
+        createUser(userService, "download-416");
+        final int fileID = this.upload("download-416", "a.bin", "application/octet-stream", data);
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-416"))
+                .header(HttpHeaders.RANGE, "bytes=2000-"))
+                .andExpect(status().isRequestedRangeNotSatisfiable())
+                .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */1000"));
+    }
+
+    @Test
+    void fileOfAnotherUserIsNotFound() throws Exception {
+        createUser(userService, "download-owner");
+        final int fileID = this.upload("download-owner", "a.bin", "application/octet-stream", randomBytes(6, 1_000));
+        createUser(userService, "download-other");
+
+        mockMvc.perform(get("/file/download/" + fileID).with(user("download-other")))
+                .andExpect(redirectedUrl("/result?errorMessage=File not found."));
+    }
+
+    @Test
+    void exportHoldsEveryFileAndTheMetadataWithoutPasswords() throws Exception {
+        createUser(userService, "export-metadata");
+        final byte[] image = randomBytes(7, 200_000);
+        final byte[] text = "text line\n".repeat(5_000).getBytes(StandardCharsets.UTF_8);
+        this.upload("export-metadata", "a.png", "image/png", image);
+        this.upload("export-metadata", "../b.txt", "text/plain", text);
+
+        mockMvc.perform(post("/note").param("noteTitle", "Groceries").param("noteDescription", "Milk")
+                .with(user("export-metadata")).with(csrf()));
+        mockMvc.perform(post("/credential").param("url", "http://example.com").param("userName", "bob")
+                .param("password", "s3cret!").with(user("export-metadata")).with(csrf()));
+
+        final Map<String, byte[]> entries = this.export("export-metadata", true);
+
+        Assertions.assertEquals(Set.of("files/a.png", "files/.._b.txt", "files.json", "notes.json", "credentials.json"),
+                entries.keySet());
+        Assertions.assertArrayEquals(image, entries.get("files/a.png"));
+        Assertions.assertArrayEquals(text, entries.get("files/.._b.txt"));
+        Assertions.assertTrue(new String(entries.get("notes.json"), StandardCharsets.UTF_8).contains("Groceries"));
+        Assertions.assertTrue(new String(entries.get("credentials.json"), StandardCharsets.UTF_8).contains("http://example.com"));
+        Assertions.assertFalse(new String(entries.get("credentials.json"), StandardCharsets.UTF_8).contains("s3cret!"));
+    }
+
+    @Test
+    void exportWithoutMetadataHoldsOnlyTheFiles() throws Exception {
+        createUser(userService, "export-files");
+        final byte[] data = randomBytes(8, 1_000);
+        this.upload("export-files", "a.bin", "application/octet-stream", data);
+
+        final Map<String, byte[]> entries = this.export("export-files", false);
+
+        Assertions.assertEquals(Set.of("files/a.bin"), entries.keySet());
+        Assertions.assertArrayEquals(data, entries.get("files/a.bin"));
+    }
+
+    private Map<String, byte[]> export(final String userName, final boolean includeMetadata) throws Exception {
+        final byte[] export = mockMvc.perform(get("/file/export").param("metadata", String.valueOf(includeMetadata))
+                .with(user(userName)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/zip"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        final Map<String, byte[]> entries = new HashMap<>();
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(export))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.put(entry.getName(), zip.readAllBytes());
+            }
+        }
+        return entries;
+    }
+
+    private int upload(final String userName, final String fileName, final String contentType, final byte[] data)
+            throws Exception {
+        final int userID = userService.findUserByUserName(userName).orElseThrow().getUserID();
+
+        mockMvc.perform(multipart("/file/upload")
+                .file(new MockMultipartFile("fileUpload", fileName, contentType, data))
+                .with(user(userName)).with(csrf()))
+                .andExpect(redirectedUrl("/result?isSuccess=true"));
+
+        return fileService.findFileByFileNameAndUserID(fileName, userID).get(0).getFileID();
+    }
+
+    private String eTag(final String userName, final int fileID) throws Exception {
+        return mockMvc.perform(get("/file/download/" + fileID).with(user(userName)))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private static byte[] randomBytes(final long seed, final int size) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,151 @@
+package aug.bueno.cloudstorage.controller;
+
+import aug.bueno.cloudstorage.dto.NoteFormDTO;
+import aug.bueno.cloudstorage.services.NoteService;
+import aug.bueno.cloudstorage.services.UserService;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@AtlasIntegrationTest
+class HomeControllerTest {
+
+    private static final Pattern NOTES_PAGE_TOKEN = Pattern.compile("id=\"notes-more-btn\"[^>]*data-page-token=\"([^\"]+)\"");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void notesAfterTheFirstPageArePagedByToken() throws Exception {
+        final int userID = createUser(userService, "home-pages");
+        final int otherUserID = createUser(userService, "home-pages-other");
+
+        for (int i = 0; i < 5; i++) {
+            this.insertNote(userID, "Note " + i);
+        }
+        this.insertNote(otherUserID, "Other note");
+
+        final String home = mockMvc.perform(get("/home").with(user("home-pages")))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        Assertions.assertTrue(home.contains(">Note 0<"));
+        Assertions.assertTrue(home.contains(">Note 1<"));
+        Assertions.assertFalse(home.contains(">Note 2<"));
+
+        final Matcher pageToken = NOTES_PAGE_TOKEN.matcher(home);
+        Assertions.assertTrue(pageToken.find());
+
+        final List<String> noteTitles = new ArrayList<>();
+        String nextPageToken = pageToken.group(1);
+
+        while (nextPageToken != null) {
+            final JsonNode page = objectMapper.readTree(mockMvc.perform(get("/home/notes")
+                    .param("pageToken", nextPageToken).with(user("home-pages")))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString());
+
+            page.get("items").forEach(note -> noteTitles.add(note.get("noteTitle").asText()));
+            nextPageToken = page.get("nextPageToken").isNull() ? null : page.get("nextPageToken").asText();
+        }
+
+        Assertions.assertEquals(List.of("Note 2", "Note 3", "Note 4"), noteTitles);
+    }
+
+    @Test
+    void invalidPageTokenIsBadRequest() throws Exception {
+        createUser(userService, "home-bad-token");
+
+        mockMvc.perform(get("/home/notes").param("pageToken", "!!").with(user("home-bad-token")))
+                .andExpect(status().isBadRequest());
+
+        // Base64 of "-1"
+        mockMvc.perform(get("/home/notes").param("pageToken", "LTE").with(user("home-bad-token")))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void unchangedHomePageIsNotModified() throws Exception {
+        createUser(userService, "home-etag");
+        final MockHttpSession session = new MockHttpSession();
+
+        final String eTag = mockMvc.perform(get("/home").session(session).with(user("home-etag")))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "private, no-cache"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        Assertions.assertNotNull(eTag);
+
+        mockMvc.perform(get("/home").session(session).with(user("home-etag")).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void changedNotesGiveANewETag() throws Exception {
+        final int userID = createUser(userService, "home-etag-change");
+        final MockHttpSession session = new MockHttpSession();
+
+        final String eTag = mockMvc.perform(get("/home").session(session).with(user("home-etag-change")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        this.insertNote(userID, "New note");
+
+        final MockHttpServletResponse response = mockMvc.perform(get("/home").session(session)
+                .with(user("home-etag-change")).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse();
+
+        Assertions.assertNotEquals(eTag, response.getHeader(HttpHeaders.ETAG));
+        Assertions.assertTrue(response.getContentAsString().contains(">New note<"));
+    }
+
+    @Test
+    void pageWithAQueryOrOfAnotherSessionIsRendered() throws Exception {
+        createUser(userService, "home-etag-other");
+        final MockHttpSession session = new MockHttpSession();
+
+        final String eTag = mockMvc.perform(get("/home").session(session).with(user("home-etag-other")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // The page embeds the CSRF token of the session
+        mockMvc.perform(get("/home").session(new MockHttpSession()).with(user("home-etag-other"))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/home?noteTitle=draft").session(session).with(user("home-etag-other"))
+                .header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk());
+    }
+
+    private void insertNote(final int userID, final String noteTitle) {
+        noteService.insertOrUpdateNote(NoteFormDTO.builder()
+                .noteTitle(noteTitle)
+                .noteDescription("description")
+                .build(), userID);
+    }
+}
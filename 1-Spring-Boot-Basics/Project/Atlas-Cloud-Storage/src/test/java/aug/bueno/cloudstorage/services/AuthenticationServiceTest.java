@@ -0,0 +1,73 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.TEST_PASSWORD;
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class AuthenticationServiceTest {
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private HashService hashService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyHashLogsInAndIsRewrittenToTheVersionedFormat() {
+        final int userID = createUser(userService, "auth-legacy");
+        final String salt = hashService.getEncodedSalt();
+        jdbcTemplate.update("UPDATE USERS SET salt = ?, password = ? WHERE userid = ?",
+                salt, hashService.getHashedValue(TEST_PASSWORD, salt), userID);
+
+        Assertions.assertNotNull(this.authenticate("auth-legacy", TEST_PASSWORD));
+
+        final String storedHash = this.storedHash(userID);
+        Assertions.assertTrue(storedHash.startsWith("$PBKDF2WithHmacSHA256$5000$256$"));
+        Assertions.assertFalse(hashService.needsRehash(storedHash));
+        Assertions.assertNotNull(this.authenticate("auth-legacy", TEST_PASSWORD));
+    }
+
+    @Test
+    void wrongPasswordIsNotServedFromTheVerifiedLoginCache() {
+        createUser(userService, "auth-wrong");
+
+        Assertions.assertNotNull(this.authenticate("auth-wrong", TEST_PASSWORD));
+        Assertions.assertNull(this.authenticate("auth-wrong", TEST_PASSWORD + "x"));
+        Assertions.assertNull(this.authenticate("auth-wrong", ""));
+    }
+
+    @Test
+    void changedHashInvalidatesTheVerifiedLogin() {
+        final int userID = createUser(userService, "auth-changed");
+        Assertions.assertNotNull(this.authenticate("auth-changed", TEST_PASSWORD));
+
+        final String salt = hashService.getEncodedSalt();
+        jdbcTemplate.update("UPDATE USERS SET salt = ?, password = ? WHERE userid = ?",
+                salt, hashService.getPasswordHash("newPassword", salt), userID);
+
+        Assertions.assertNull(this.authenticate("auth-changed", TEST_PASSWORD));
+        Assertions.assertNotNull(this.authenticate("auth-changed", "newPassword"));
+    }
+
+    private Authentication authenticate(final String userName, final String password) {
+        return authenticationService.authenticate(new UsernamePasswordAuthenticationToken(userName, password));
+    }
+
+    private String storedHash(final int userID) {
+        return jdbcTemplate.queryForObject("SELECT password FROM USERS WHERE userid = ?", String.class, userID);
+    }
+}
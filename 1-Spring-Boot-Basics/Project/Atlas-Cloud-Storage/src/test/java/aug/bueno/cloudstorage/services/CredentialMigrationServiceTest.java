@@ -0,0 +1,91 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.CredentialMigrationStatusDTO;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class CredentialMigrationServiceTest {
+
+    @Autowired
+    private CredentialMigrationService credentialMigrationService;
+
+    @Autowired
+    private CredentialService credentialService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void legacyCredentialsAreResealedWithTheDataKey() throws InterruptedException {
+        final int userA = createUser(userService, "migration-a");
+        final int userB = createUser(userService, "migration-b");
+
+        for (int i = 0; i < 20; i++) {
+            this.insertLegacyCredential(i % 2 == 0 ? userA : userB, "migration-" + i, "pw-" + i);
+        }
+        // Not decryptable with its key, stays as it is
+        jdbcTemplate.update("INSERT INTO CREDENTIALS (url, username, key, password, userid) VALUES (?, ?, ?, ?, ?)",
+                "migration-broken", "bob", "AAAAAAAAAAAAAAAAAAAAAA==", "garbage", userA);
+
+        Assertions.assertTrue(credentialMigrationService.start());
+        final CredentialMigrationStatusDTO status = this.awaitMigration();
+
+        Assertions.assertEquals(CredentialMigrationService.STATE_DONE, status.getState());
+        Assertions.assertTrue(status.getFailed() >= 1);
+
+        final List<Map<String, Object>> migrated = jdbcTemplate.queryForList(
+                "SELECT credentialid, url, key, userid FROM CREDENTIALS WHERE url LIKE 'migration-%' AND url <> 'migration-broken'");
+        Assertions.assertEquals(20, migrated.size());
+
+        for (Map<String, Object> credential : migrated) {
+            Assertions.assertNull(credential.get("KEY"));
+
+            final String url = (String) credential.get("URL");
+            Assertions.assertEquals("pw-" + url.substring("migration-".length()), credentialService.findDecryptedPassword(
+                    (Integer) credential.get("CREDENTIALID"), (Integer) credential.get("USERID")).orElseThrow());
+        }
+
+        Assertions.assertEquals("AAAAAAAAAAAAAAAAAAAAAA==", jdbcTemplate.queryForObject(
+                "SELECT key FROM CREDENTIALS WHERE url = 'migration-broken'", String.class));
+    }
+
+    private CredentialMigrationStatusDTO awaitMigration() throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            final CredentialMigrationStatusDTO status = credentialMigrationService.getStatus();
+
+            if (!CredentialMigrationService.STATE_RUNNING.equals(status.getState())) {
+                return status;
+            }
+            Thread.sleep(50);
+        }
+        return Assertions.fail("Credential migration still running");
+    }
+
+    /*
+     * A credential as stored before data keys: a random key of its own in the row
+     */
+    private void insertLegacyCredential(final int userID, final String url, final String password) {
+        final String key = Base64.getEncoder().encodeToString(
+                String.format("%-16.16s", url).getBytes(StandardCharsets.UTF_8));
+
+        jdbcTemplate.update("INSERT INTO CREDENTIALS (url, username, key, password, userid) VALUES (?, ?, ?, ?, ?)",
+                url, "bob", key, encryptionService.encryptValue(password, key), userID);
+    }
+}
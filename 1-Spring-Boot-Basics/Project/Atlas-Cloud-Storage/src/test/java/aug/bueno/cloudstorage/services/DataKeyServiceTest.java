@@ -0,0 +1,93 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.repository.mapper.UserDataKeyMapper;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.crypto.SecretKey;
+import java.time.Duration;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class DataKeyServiceTest {
+
+    @Autowired
+    private DataKeyService dataKeyService;
+
+    @Autowired
+    private EncryptionService encryptionService;
+
+    @Autowired
+    private UserDataKeyMapper userDataKeyMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${atlas.security.keystore.path}")
+    private String keyStorePath;
+
+    @Value("${atlas.security.keystore.password}")
+    private String keyStorePassword;
+
+    @Test
+    void sealedPasswordOpensWithTheDataKeyOfItsUser() {
+        final int userID = createUser(userService, "data-key-round-trip");
+        final SecretKey dataKey = dataKeyService.getDataKey(userID);
+
+        final String sealed = encryptionService.sealCredentialPassword("s3cret!", dataKey, userID);
+
+        Assertions.assertNotEquals("s3cret!", sealed);
+        Assertions.assertNotEquals(sealed, encryptionService.sealCredentialPassword("s3cret!", dataKey, userID));
+        Assertions.assertEquals("s3cret!", encryptionService.openCredentialPassword(sealed, dataKey, userID));
+        Assertions.assertArrayEquals(dataKey.getEncoded(), dataKeyService.getDataKey(userID).getEncoded());
+    }
+
+    @Test
+    void sealedPasswordDoesNotOpenForAnotherUser() {
+        final int userID = createUser(userService, "data-key-owner");
+        final int otherUserID = createUser(userService, "data-key-other");
+        final SecretKey dataKey = dataKeyService.getDataKey(userID);
+        final SecretKey otherDataKey = dataKeyService.getDataKey(otherUserID);
+
+        final String sealed = encryptionService.sealCredentialPassword("s3cret!", dataKey, userID);
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> encryptionService.openCredentialPassword(sealed, otherDataKey, userID));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> encryptionService.openCredentialPassword(sealed, dataKey, otherUserID));
+    }
+
+    @Test
+    void rewrapWithANewMasterKeyKeepsCredentialsReadable() throws Exception {
+        final int userID = createUser(userService, "data-key-rewrap");
+        final SecretKey dataKey = dataKeyService.getDataKey(userID);
+        final String sealed = encryptionService.sealCredentialPassword("s3cret!", dataKey, userID);
+
+        final MasterKeyService rotatedMasterKeyService = new MasterKeyService(encryptionService, keyStorePath,
+                keyStorePassword, "atlas-master-rotated");
+        final DataKeyService rotatedDataKeyService = new DataKeyService(userDataKeyMapper, rotatedMasterKeyService,
+                transactionManager, 100, Duration.ofMinutes(1));
+
+        Assertions.assertTrue(rotatedDataKeyService.countDataKeysToRewrap() > 0);
+        Assertions.assertTrue(rotatedDataKeyService.rewrapDataKeys() > 0);
+        Assertions.assertEquals(0, rotatedDataKeyService.countDataKeysToRewrap());
+        Assertions.assertEquals("atlas-master-rotated", jdbcTemplate.queryForObject(
+                "SELECT masterkeyalias FROM USER_DATA_KEYS WHERE userid = ?", String.class, userID));
+
+        final SecretKey rewrappedDataKey = rotatedDataKeyService.getDataKey(userID);
+        Assertions.assertArrayEquals(dataKey.getEncoded(), rewrappedDataKey.getEncoded());
+        Assertions.assertEquals("s3cret!", encryptionService.openCredentialPassword(sealed, rewrappedDataKey, userID));
+    }
+}
@@ -0,0 +1,171 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.FileFormDTO;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class FileChunkServiceTest {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void sameContentOfTwoUsersSharesItsChunks() throws IOException {
+        final byte[] data = randomBytes(101, 40_000);
+        final int fileA = this.insertFile(createUser(userService, "chunk-share-a"), data);
+        final int fileB = this.insertFile(createUser(userService, "chunk-share-b"), data);
+
+        final List<String> chunkHashes = this.manifestHashes(fileA);
+        Assertions.assertEquals(3, chunkHashes.size());
+        Assertions.assertEquals(chunkHashes, this.manifestHashes(fileB));
+
+        for (String chunkHash : chunkHashes) {
+            Assertions.assertEquals(2, this.refCount(chunkHash));
+        }
+    }
+
+    @Test
+    void repeatedChunkOfAFileIsStoredOnce() throws IOException {
+        final byte[] block = randomBytes(102, CHUNK_SIZE);
+        final byte[] data = new byte[CHUNK_SIZE * 3];
+        for (int i = 0; i < 3; i++) {
+            System.arraycopy(block, 0, data, i * CHUNK_SIZE, CHUNK_SIZE);
+        }
+
+        final int userID = createUser(userService, "chunk-repeated");
+        // Declared as already compressed so the repeated block is chunked as is instead of deflated
+        final int fileID = this.insertFile(userID, data, "application/zip");
+        final List<String> chunkHashes = this.manifestHashes(fileID);
+
+        Assertions.assertEquals(3, chunkHashes.size());
+        Assertions.assertEquals(1, chunkHashes.stream().distinct().count());
+        Assertions.assertEquals(3, this.refCount(chunkHashes.get(0)));
+
+        final ByteArrayOutputStream stored = new ByteArrayOutputStream();
+        Assertions.assertTrue(fileService.writeFileData(fileID, userID, 0, data.length - 1, stored));
+        Assertions.assertArrayEquals(data, stored.toByteArray());
+    }
+
+    @Test
+    void sameContentStoredConcurrentlyIsReferencedByEveryFile() throws Exception {
+        final byte[] data = randomBytes(104, 40_000);
+        final int uploads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<Integer>> fileIDs = new ArrayList<>();
+        final List<Integer> userIDs = new ArrayList<>();
+
+        for (int i = 0; i < uploads; i++) {
+            final int userID = createUser(userService, "chunk-concurrent-" + i);
+            userIDs.add(userID);
+            fileIDs.add(executor.submit(() -> {
+                start.await();
+                return this.insertFile(userID, data);
+            }));
+        }
+
+        try {
+            start.countDown();
+
+            final List<String> chunkHashes = this.manifestHashes(fileIDs.get(0).get(10, TimeUnit.SECONDS));
+
+            for (int i = 0; i < uploads; i++) {
+                final int fileID = fileIDs.get(i).get(10, TimeUnit.SECONDS);
+                Assertions.assertEquals(chunkHashes, this.manifestHashes(fileID));
+
+                final ByteArrayOutputStream stored = new ByteArrayOutputStream();
+                Assertions.assertTrue(fileService.writeFileData(fileID, userIDs.get(i), 0, data.length - 1, stored));
+                Assertions.assertArrayEquals(data, stored.toByteArray());
+            }
+
+            for (String chunkHash : chunkHashes) {
+                Assertions.assertEquals(uploads, this.refCount(chunkHash));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void chunksAreDeletedWithTheirLastReference() throws IOException {
+        final byte[] data = randomBytes(103, 40_000);
+        final int userA = createUser(userService, "chunk-release-a");
+        final int userB = createUser(userService, "chunk-release-b");
+        final int fileA = this.insertFile(userA, data);
+        final int fileB = this.insertFile(userB, data);
+        final List<String> chunkHashes = this.manifestHashes(fileA);
+
+        fileService.deleteByFileIDAndUserID(fileA, userA);
+
+        for (String chunkHash : chunkHashes) {
+            Assertions.assertEquals(1, this.refCount(chunkHash));
+        }
+
+        fileService.deleteByFileIDAndUserID(fileB, userB);
+
+        for (String chunkHash : chunkHashes) {
+            Assertions.assertEquals(0, this.countChunkRows(chunkHash));
+        }
+        Assertions.assertTrue(this.manifestHashes(fileB).isEmpty());
+    }
+
+    private int insertFile(final int userID, final byte[] data) throws IOException {
+        return this.insertFile(userID, data, "application/octet-stream");
+    }
+
+    private int insertFile(final int userID, final byte[] data, final String contentType) throws IOException {
+        fileService.insertFile(FileFormDTO.builder()
+                .fileName("a.bin")
+                .fileSize(String.valueOf(data.length))
+                .contentType(contentType)
+                .fileDataStream(new ByteArrayInputStream(data))
+                .build(), userID);
+
+        return fileService.findFileByFileNameAndUserID("a.bin", userID).get(0).getFileID();
+    }
+
+    private List<String> manifestHashes(final int fileID) {
+        return jdbcTemplate.queryForList("SELECT chunkhash FROM FILE_CHUNK_MANIFESTS WHERE fileid = ? ORDER BY chunkindex",
+                String.class, fileID);
+    }
+
+    private int refCount(final String chunkHash) {
+        return jdbcTemplate.queryForObject("SELECT refcount FROM FILE_CHUNKS WHERE chunkhash = ?", Integer.class, chunkHash);
+    }
+
+    private int countChunkRows(final String chunkHash) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILE_CHUNKS WHERE chunkhash = ?", Integer.class, chunkHash);
+    }
+
+    private static byte[] randomBytes(final long seed, final int size) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,186 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.UploadSessionDTO;
+import aug.bueno.cloudstorage.services.exception.QuotaExceededException;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.newContentDigest;
+import static aug.bueno.cloudstorage.services.util.ContentHashUtil.toHex;
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class FileUploadSessionServiceTest {
+
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    @Autowired
+    private FileUploadSessionService fileUploadSessionService;
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void partDeclaredOverTheMaximumIsRejectedBeforeItIsRead() {
+        final int userID = createUser(userService, "upload-declared");
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession("a.bin", null, null, userID);
+
+        final InputStream unreadable = new InputStream() {
+            @Override
+            public int read() {
+                throw new AssertionError("part over the maximum read");
+            }
+        };
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fileUploadSessionService.writePart(
+                uploadSession.getUploadID(), userID, 1, "00", 50_000L, unreadable));
+    }
+
+    @Test
+    void partLongerThanTheMaximumIsRejectedAndNothingIsKept() {
+        final int userID = createUser(userService, "upload-longer");
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession("a.bin", null, null, userID);
+        final byte[] part = randomBytes(201, 50_000);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> fileUploadSessionService.writePart(
+                uploadSession.getUploadID(), userID, 1, sha256(part), null, new ByteArrayInputStream(part)));
+
+        Assertions.assertEquals(0, this.countChunkRows(sha256(Arrays.copyOf(part, CHUNK_SIZE))));
+        Assertions.assertTrue(fileUploadSessionService.findSession(uploadSession.getUploadID(), userID).orElseThrow()
+                .getParts().isEmpty());
+    }
+
+    @Test
+    void partsSentOutOfOrderAreCommittedInOrder() throws IOException {
+        final int userID = createUser(userService, "upload-commit");
+        final byte[] part1 = randomBytes(202, 40_000);
+        final byte[] part2 = randomBytes(203, 20_000);
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession("a.bin", null, 60_000L, userID);
+
+        this.writePart(uploadSession.getUploadID(), userID, 2, part2);
+        this.writePart(uploadSession.getUploadID(), userID, 1, part1);
+
+        final int fileID = fileUploadSessionService.commitSession(uploadSession.getUploadID(), userID).orElseThrow();
+
+        final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        Assertions.assertTrue(fileService.writeFileData(fileID, userID, 0, 59_999, content));
+        Assertions.assertArrayEquals(concat(part1, part2), content.toByteArray());
+
+        Assertions.assertTrue(fileUploadSessionService.findSession(uploadSession.getUploadID(), userID).isEmpty());
+        Assertions.assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM UPLOAD_SESSION_CHUNKS WHERE uploadid = ?", Integer.class, uploadSession.getUploadID()));
+        Assertions.assertEquals(60_000, quotaService.getUsage(userID).getUsedBytes());
+        Assertions.assertEquals(0, quotaService.getUsage(userID).getPendingBytes());
+    }
+
+    @Test
+    void sessionWithAMissingPartIsNotCommitted() throws IOException {
+        final int userID = createUser(userService, "upload-missing");
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession("a.bin", null, null, userID);
+
+        this.writePart(uploadSession.getUploadID(), userID, 1, randomBytes(204, 1_000));
+        this.writePart(uploadSession.getUploadID(), userID, 3, randomBytes(205, 1_000));
+
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> fileUploadSessionService.commitSession(uploadSession.getUploadID(), userID));
+
+        Assertions.assertEquals(2, fileUploadSessionService.findSession(uploadSession.getUploadID(), userID).orElseThrow()
+                .getParts().size());
+        Assertions.assertTrue(fileService.findAllUserFiles(userID).isEmpty());
+    }
+
+    @Test
+    void abortedSessionReleasesItsChunks() throws IOException {
+        final int userID = createUser(userService, "upload-abort");
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession("a.bin", null, null, userID);
+
+        this.writePart(uploadSession.getUploadID(), userID, 1, randomBytes(206, 30_000));
+        final List<String> chunkHashes = jdbcTemplate.queryForList(
+                "SELECT chunkhash FROM UPLOAD_SESSION_CHUNKS WHERE uploadid = ?", String.class, uploadSession.getUploadID());
+        Assertions.assertEquals(2, chunkHashes.size());
+
+        Assertions.assertTrue(fileUploadSessionService.abortSession(uploadSession.getUploadID(), userID));
+
+        for (String chunkHash : chunkHashes) {
+            Assertions.assertEquals(0, this.countChunkRows(chunkHash));
+        }
+        Assertions.assertTrue(fileUploadSessionService.findSession(uploadSession.getUploadID(), userID).isEmpty());
+        Assertions.assertEquals(0, quotaService.getUsage(userID).getPendingBytes());
+    }
+
+    @Test
+    void partsBeyondTheQuotaAreRefused() throws IOException {
+        final int userID = createUser(userService, "upload-quota");
+        final byte[] part1 = randomBytes(207, 40_000);
+        final byte[] part2 = randomBytes(208, 40_000);
+        final UploadSessionDTO uploadSession = fileUploadSessionService.createSession("a.bin", null, null, userID);
+
+        quotaService.addFile(userID, 1_000_000);
+
+        this.writePart(uploadSession.getUploadID(), userID, 1, part1);
+        Assertions.assertEquals(40_000, quotaService.getUsage(userID).getPendingBytes());
+
+        // A part sent again replaces its own reservation
+        this.writePart(uploadSession.getUploadID(), userID, 1, part1);
+        Assertions.assertEquals(40_000, quotaService.getUsage(userID).getPendingBytes());
+
+        Assertions.assertThrows(QuotaExceededException.class, () -> fileUploadSessionService.writePart(
+                uploadSession.getUploadID(), userID, 2, sha256(part2), (long) part2.length, new ByteArrayInputStream(part2)));
+        Assertions.assertThrows(QuotaExceededException.class, () -> fileUploadSessionService.writePart(
+                uploadSession.getUploadID(), userID, 2, sha256(part2), null, new ByteArrayInputStream(part2)));
+
+        Assertions.assertEquals(40_000, quotaService.getUsage(userID).getPendingBytes());
+        Assertions.assertEquals(0, this.countChunkRows(sha256(Arrays.copyOf(part2, CHUNK_SIZE))));
+        Assertions.assertEquals(1, fileUploadSessionService.findSession(uploadSession.getUploadID(), userID).orElseThrow()
+                .getParts().size());
+
+        Assertions.assertTrue(fileUploadSessionService.abortSession(uploadSession.getUploadID(), userID));
+        Assertions.assertEquals(0, quotaService.getUsage(userID).getPendingBytes());
+    }
+
+    private void writePart(final String uploadID, final int userID, final int partNumber, final byte[] part)
+            throws IOException {
+        Assertions.assertTrue(fileUploadSessionService.writePart(uploadID, userID, partNumber, sha256(part),
+                (long) part.length, new ByteArrayInputStream(part)).isPresent());
+    }
+
+    private int countChunkRows(final String chunkHash) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILE_CHUNKS WHERE chunkhash = ?", Integer.class, chunkHash);
+    }
+
+    private static String sha256(final byte[] data) {
+        return toHex(newContentDigest().digest(data));
+    }
+
+    private static byte[] concat(final byte[] first, final byte[] second) {
+        final byte[] data = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, data, first.length, second.length);
+        return data;
+    }
+
+    private static byte[] randomBytes(final long seed, final int size) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,55 @@
+package aug.bueno.cloudstorage.services;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class HashServiceTest {
+
+    private final HashService hashService = new HashService("PBKDF2WithHmacSHA256", 5000, 256);
+
+    @Test
+    void versionedHashNamesItsAlgorithmAndCost() {
+        final String salt = hashService.getEncodedSalt();
+        final String hash = hashService.getPasswordHash("secret", salt);
+
+        Assertions.assertTrue(hash.startsWith("$PBKDF2WithHmacSHA256$5000$256$"));
+        Assertions.assertTrue(hashService.verifyPassword("secret", salt, hash));
+        Assertions.assertFalse(hashService.verifyPassword("Secret", salt, hash));
+        Assertions.assertFalse(hashService.needsRehash(hash));
+    }
+
+    @Test
+    void legacyHashIsVerifiedAndNeedsRehash() {
+        final String salt = hashService.getEncodedSalt();
+        final String legacyHash = hashService.getHashedValue("secret", salt);
+
+        Assertions.assertTrue(hashService.verifyPassword("secret", salt, legacyHash));
+        Assertions.assertFalse(hashService.verifyPassword("other", salt, legacyHash));
+        Assertions.assertTrue(hashService.needsRehash(legacyHash));
+    }
+
+    @Test
+    void hashOfAnotherCostIsVerifiedAndNeedsRehash() {
+        final HashService cheaper = new HashService("PBKDF2WithHmacSHA256", 1000, 256);
+        final String salt = hashService.getEncodedSalt();
+        final String hash = cheaper.getPasswordHash("secret", salt);
+
+        Assertions.assertTrue(hashService.verifyPassword("secret", salt, hash));
+        Assertions.assertTrue(hashService.needsRehash(hash));
+    }
+
+    @Test
+    void unreadableHashIsNotVerified() {
+        final String salt = hashService.getEncodedSalt();
+
+        Assertions.assertFalse(hashService.verifyPassword("secret", salt, null));
+        Assertions.assertFalse(hashService.verifyPassword("secret", salt, "$PBKDF2WithHmacSHA256$5000$"));
+        Assertions.assertFalse(hashService.verifyPassword("secret", salt, "$PBKDF2WithHmacSHA256$5000$256$!!"));
+    }
+
+    @Test
+    void keyedDigestSeparatesItsValues() {
+        Assertions.assertEquals(hashService.getKeyedDigest("ab", "c"), hashService.getKeyedDigest("ab", "c"));
+        Assertions.assertNotEquals(hashService.getKeyedDigest("ab", "c"), hashService.getKeyedDigest("a", "bc"));
+    }
+}
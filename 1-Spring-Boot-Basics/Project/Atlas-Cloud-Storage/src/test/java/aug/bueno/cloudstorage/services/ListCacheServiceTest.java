@@ -0,0 +1,121 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.CredentialFormDTO;
+import aug.bueno.cloudstorage.dto.NoteFormDTO;
+import aug.bueno.cloudstorage.dto.PageDTO;
+import aug.bueno.cloudstorage.model.SearchItemType;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class ListCacheServiceTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    @Autowired
+    private NoteService noteService;
+
+    @Autowired
+    private CredentialService credentialService;
+
+    @Autowired
+    private UserService userService;
+
+    @Test
+    void notesPageIsCachedUntilANoteChanges() {
+        final int userID = createUser(userService, "cache-notes");
+        this.saveNote(userID, null, "First");
+
+        final PageDTO<NoteFormDTO> page = noteService.findNotesPageUser(userID, null, PAGE_SIZE);
+        Assertions.assertSame(page, noteService.findNotesPageUser(userID, null, PAGE_SIZE));
+
+        this.saveNote(userID, null, "Second");
+        Assertions.assertEquals(List.of("First", "Second"), this.noteTitles(userID));
+
+        final int noteID = page.getItems().get(0).getNoteID();
+        this.saveNote(userID, noteID, "First edited");
+        Assertions.assertEquals(List.of("First edited", "Second"), this.noteTitles(userID));
+
+        noteService.deleteByNoteIDAndUserID(noteID, userID);
+        Assertions.assertEquals(List.of("Second"), this.noteTitles(userID));
+    }
+
+    @Test
+    void credentialsPageIsDroppedWhenACredentialChanges() {
+        final int userID = createUser(userService, "cache-credentials");
+        Assertions.assertTrue(credentialService.findCredentialsPageUser(userID, null, PAGE_SIZE).getItems().isEmpty());
+
+        credentialService.insertOrUpdateCredential(CredentialFormDTO.builder()
+                .url("http://example.com")
+                .userName("bob")
+                .password("s3cret!")
+                .build(), userID);
+
+        final List<CredentialFormDTO> credentials = credentialService.findCredentialsPageUser(userID, null, PAGE_SIZE).getItems();
+        Assertions.assertEquals(1, credentials.size());
+
+        credentialService.deleteByCredentialIDAndUserID(credentials.get(0).getCredentialID(), userID);
+        Assertions.assertTrue(credentialService.findCredentialsPageUser(userID, null, PAGE_SIZE).getItems().isEmpty());
+    }
+
+    @Test
+    void pageInvalidatedWhileItIsReadIsNotCached() {
+        final ListCacheService listCacheService = new ListCacheService(true, 100, Duration.ofMinutes(1));
+        final AtomicInteger reads = new AtomicInteger();
+
+        listCacheService.getFirstPage(SearchItemType.NOTE, 1, () -> {
+            reads.incrementAndGet();
+            // A change committed while the stale page was being read
+            listCacheService.invalidate(SearchItemType.NOTE, 1);
+            return new PageDTO<>();
+        });
+        listCacheService.getFirstPage(SearchItemType.NOTE, 1, () -> {
+            reads.incrementAndGet();
+            return new PageDTO<>();
+        });
+        listCacheService.getFirstPage(SearchItemType.NOTE, 1, () -> {
+            reads.incrementAndGet();
+            return new PageDTO<>();
+        });
+
+        Assertions.assertEquals(2, reads.get());
+    }
+
+    @Test
+    void disabledCacheReadsEveryPage() {
+        final ListCacheService listCacheService = new ListCacheService(false, 100, Duration.ofMinutes(1));
+        final AtomicInteger reads = new AtomicInteger();
+
+        for (int i = 0; i < 2; i++) {
+            listCacheService.getFirstPage(SearchItemType.NOTE, 1, () -> {
+                reads.incrementAndGet();
+                return new PageDTO<>();
+            });
+        }
+
+        Assertions.assertEquals(2, reads.get());
+    }
+
+    private void saveNote(final int userID, final Integer noteID, final String noteTitle) {
+        noteService.insertOrUpdateNote(NoteFormDTO.builder()
+                .noteID(noteID)
+                .noteTitle(noteTitle)
+                .noteDescription("description")
+                .build(), userID);
+    }
+
+    private List<String> noteTitles(final int userID) {
+        return noteService.findNotesPageUser(userID, null, PAGE_SIZE).getItems().stream()
+                .map(NoteFormDTO::getNoteTitle)
+                .collect(Collectors.toList());
+    }
+}
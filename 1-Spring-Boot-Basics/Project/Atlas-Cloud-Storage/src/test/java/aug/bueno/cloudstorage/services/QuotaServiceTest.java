@@ -0,0 +1,107 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.FileFormDTO;
+import aug.bueno.cloudstorage.services.exception.QuotaExceededException;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+
+import static aug.bueno.cloudstorage.util.AccessAndRegisterUtils.createUser;
+
+@AtlasIntegrationTest
+class QuotaServiceTest {
+
+    @Autowired
+    private FileService fileService;
+
+    @Autowired
+    private QuotaService quotaService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void fileThatFitsIsAccounted() throws IOException {
+        final int userID = createUser(userService, "quota-fits");
+        final byte[] data = randomBytes(301, 600_000);
+
+        Assertions.assertTrue(fileService.insertFile(this.fileForm("a.bin", data.length, new ByteArrayInputStream(data)), userID));
+
+        Assertions.assertEquals(600_000, quotaService.getUsage(userID).getUsedBytes());
+        Assertions.assertEquals(1, quotaService.getUsage(userID).getFileCount());
+    }
+
+    @Test
+    void fileOverTheQuotaIsRejectedBeforeItsContentIsRead() throws IOException {
+        final int userID = createUser(userService, "quota-declared");
+        final byte[] data = randomBytes(302, 600_000);
+        fileService.insertFile(this.fileForm("a.bin", data.length, new ByteArrayInputStream(data)), userID);
+
+        final InputStream unreadable = new InputStream() {
+            @Override
+            public int read() {
+                throw new AssertionError("content read for a file over the quota");
+            }
+        };
+
+        Assertions.assertThrows(QuotaExceededException.class,
+                () -> fileService.insertFile(this.fileForm("b.bin", 600_000, unreadable), userID));
+
+        Assertions.assertEquals(600_000, quotaService.getUsage(userID).getUsedBytes());
+        Assertions.assertEquals(1, this.countFiles(userID));
+    }
+
+    @Test
+    void contentLongerThanDeclaredIsRejectedPastTheQuota() {
+        final int userID = createUser(userService, "quota-longer");
+        final byte[] data = randomBytes(303, 1_500_000);
+
+        Assertions.assertThrows(QuotaExceededException.class,
+                () -> fileService.insertFile(this.fileForm("a.bin", 1_000, new ByteArrayInputStream(data)), userID));
+
+        Assertions.assertEquals(0, quotaService.getUsage(userID).getUsedBytes());
+        Assertions.assertEquals(0, this.countFiles(userID));
+    }
+
+    @Test
+    void deletedFileIsReleased() throws IOException {
+        final int userID = createUser(userService, "quota-delete");
+        final byte[] data = randomBytes(304, 600_000);
+        fileService.insertFile(this.fileForm("a.bin", data.length, new ByteArrayInputStream(data)), userID);
+
+        final int fileID = fileService.findFileByFileNameAndUserID("a.bin", userID).get(0).getFileID();
+        fileService.deleteByFileIDAndUserID(fileID, userID);
+
+        Assertions.assertEquals(0, quotaService.getUsage(userID).getUsedBytes());
+        Assertions.assertTrue(fileService.insertFile(this.fileForm("b.bin", data.length, new ByteArrayInputStream(data)), userID));
+    }
+
+    private FileFormDTO fileForm(final String fileName, final long fileSize, final InputStream fileDataStream) {
+        return FileFormDTO.builder()
+                .fileName(fileName)
+                .fileSize(String.valueOf(fileSize))
+                .contentType("application/octet-stream")
+                .fileDataStream(fileDataStream)
+                .build();
+    }
+
+    private int countFiles(final int userID) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILES WHERE userid = ?", Integer.class, userID);
+    }
+
+    private static byte[] randomBytes(final long seed, final int size) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
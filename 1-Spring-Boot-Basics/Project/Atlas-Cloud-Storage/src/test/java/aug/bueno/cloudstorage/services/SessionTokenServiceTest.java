@@ -0,0 +1,118 @@
+package aug.bueno.cloudstorage.services;
+
+import aug.bueno.cloudstorage.dto.AtlasUserPrincipal;
+import aug.bueno.cloudstorage.dto.SessionTokenDTO;
+import aug.bueno.cloudstorage.util.AtlasIntegrationTest;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+@AtlasIntegrationTest
+class SessionTokenServiceTest {
+
+    private static final String KEY_ALIAS = "atlas-session-test";
+
+    private static final AtlasUserPrincipal PRINCIPAL = AtlasUserPrincipal.builder()
+            .userID(42)
+            .userName("token-user")
+            .build();
+
+    @Autowired
+    private MasterKeyService masterKeyService;
+
+    @Test
+    void issuedTokenIsVerified() {
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+
+        final SessionTokenDTO sessionToken = sessionTokenService.verify(sessionTokenService.issue(PRINCIPAL)).orElseThrow();
+
+        Assertions.assertEquals(42, sessionToken.getUserID());
+        Assertions.assertEquals("token-user", sessionToken.getUserName());
+        Assertions.assertFalse(sessionTokenService.needsRenewal(sessionToken));
+    }
+
+    @Test
+    void tamperedFieldIsRejected() {
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+        final String[] fields = sessionTokenService.issue(PRINCIPAL).split("\\.");
+
+        Assertions.assertTrue(sessionTokenService.verify(String.join(".", fields)).isPresent());
+
+        Assertions.assertTrue(sessionTokenService.verify(this.replace(fields, 1, "43")).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(this.replace(fields, 2, encode("admin"))).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(
+                this.replace(fields, 3, String.valueOf(Long.parseLong(fields[3]) + 3600))).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(this.replace(fields, 0, "v2")).isEmpty());
+    }
+
+    @Test
+    void badSignatureIsRejected() {
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+        final String[] fields = sessionTokenService.issue(PRINCIPAL).split("\\.");
+
+        Assertions.assertTrue(sessionTokenService.verify(this.replace(fields, 4, encode("forged"))).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(this.replace(fields, 4, "")).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(this.replace(fields, 4, "!!not base64!!")).isEmpty());
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+
+        Assertions.assertTrue(sessionTokenService.verify(null).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify("").isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify("v1.42.dG9rZW4tdXNlcg.1").isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify("v1.x.dG9rZW4tdXNlcg.1.AAAA").isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(sessionTokenService.issue(PRINCIPAL) + ".extra").isEmpty());
+    }
+
+    @Test
+    void tokenOfAnotherKeyIsRejected() {
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+        final SessionTokenService otherKeySessionTokenService = new SessionTokenService(masterKeyService, true,
+                KEY_ALIAS + "-other", Duration.ofMinutes(30));
+
+        Assertions.assertTrue(sessionTokenService.verify(otherKeySessionTokenService.issue(PRINCIPAL)).isEmpty());
+    }
+
+    @Test
+    void expiredTokenIsRejected() {
+        final SessionTokenService expiredSessionTokenService = this.newSessionTokenService(Duration.ofSeconds(-1));
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+
+        final String expiredToken = expiredSessionTokenService.issue(PRINCIPAL);
+
+        Assertions.assertTrue(expiredSessionTokenService.verify(expiredToken).isEmpty());
+        Assertions.assertTrue(sessionTokenService.verify(expiredToken).isEmpty());
+    }
+
+    @Test
+    void tokenWithLessThanHalfItsTtlLeftNeedsRenewal() {
+        final SessionTokenService shortSessionTokenService = this.newSessionTokenService(Duration.ofMinutes(10));
+        final SessionTokenService sessionTokenService = this.newSessionTokenService(Duration.ofMinutes(30));
+
+        final SessionTokenDTO sessionToken = sessionTokenService.verify(shortSessionTokenService.issue(PRINCIPAL))
+                .orElseThrow();
+
+        Assertions.assertTrue(sessionTokenService.needsRenewal(sessionToken));
+        Assertions.assertFalse(shortSessionTokenService.needsRenewal(sessionToken));
+    }
+
+    private SessionTokenService newSessionTokenService(final Duration ttl) {
+        return new SessionTokenService(masterKeyService, true, KEY_ALIAS, ttl);
+    }
+
+    private String replace(final String[] fields, final int index, final String value) {
+        final String[] tampered = fields.clone();
+        tampered[index] = value;
+        return String.join(".", tampered);
+    }
+
+    private static String encode(final String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,134 @@
+package aug.bueno.cloudstorage.services.storage;
+
+import aug.bueno.cloudstorage.model.FileChunkManifest;
+import aug.bueno.cloudstorage.services.FileChunkService;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/*
+ * Chunk files follow the transaction that put or released their FILE_CHUNKS row.
+ */
+@SpringBootTest(properties = {"atlas.storage.backend=filesystem", "atlas.storage.filesystem.root=target/test-chunks/blob-store"})
+class FileSystemBlobStoreTest {
+
+    @Autowired
+    private FileChunkService fileChunkService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${atlas.storage.filesystem.root}")
+    private String root;
+
+    @Test
+    void rolledBackPutLeavesNoFile() {
+        final byte[] data = randomBytes(1, 3000);
+
+        final List<String> chunkHashes = transactionTemplate.execute(status -> {
+            final List<String> hashes = this.storeChunks(data);
+            Assertions.assertTrue(Files.exists(this.chunkPath(hashes.get(0))));
+
+            status.setRollbackOnly();
+            return hashes;
+        });
+
+        Assertions.assertFalse(Files.exists(this.chunkPath(chunkHashes.get(0))));
+        Assertions.assertEquals(0, this.countChunkRows(chunkHashes.get(0)));
+    }
+
+    @Test
+    void releasedChunkFileIsDeletedAfterCommit() {
+        final byte[] data = randomBytes(2, 3000);
+        final String chunkHash = transactionTemplate.execute(status -> this.storeChunks(data)).get(0);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            this.releaseChunk(chunkHash);
+            Assertions.assertTrue(Files.exists(this.chunkPath(chunkHash)), "deleted before commit");
+        });
+
+        Assertions.assertFalse(Files.exists(this.chunkPath(chunkHash)));
+    }
+
+    @Test
+    void chunkStoredAgainBeforeTheDeleteKeepsItsFile() {
+        final byte[] data = randomBytes(3, 3000);
+        final String chunkHash = transactionTemplate.execute(status -> this.storeChunks(data)).get(0);
+
+        final TransactionTemplate newTransactionTemplate = new TransactionTemplate(transactionManager);
+        newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Runs between the commit of the release and its file delete, finds the file still there and keeps it
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    newTransactionTemplate.executeWithoutResult(inner -> storeChunks(data));
+                }
+            });
+
+            this.releaseChunk(chunkHash);
+        });
+
+        Assertions.assertTrue(Files.exists(this.chunkPath(chunkHash)));
+        Assertions.assertEquals(1, this.countChunkRows(chunkHash));
+    }
+
+    private List<String> storeChunks(final byte[] data) {
+        final List<String> chunkHashes = new ArrayList<>();
+        try {
+            fileChunkService.writeChunks(new ByteArrayInputStream(data),
+                    (FileChunkManifest chunk) -> chunkHashes.add(chunk.getChunkHash()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return chunkHashes;
+    }
+
+    private void releaseChunk(final String chunkHash) {
+        try {
+            fileChunkService.releaseChunk(chunkHash);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private int countChunkRows(final String chunkHash) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM FILE_CHUNKS WHERE chunkhash = ?", Integer.class, chunkHash);
+    }
+
+    private Path chunkPath(final String chunkHash) {
+        return Paths.get(root).toAbsolutePath()
+                .resolve(chunkHash.substring(0, 2)).resolve(chunkHash.substring(2, 4)).resolve(chunkHash);
+    }
+
+    private static byte[] randomBytes(final long seed, final int size) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+}
@@ -0,0 +1,84 @@
+package aug.bueno.cloudstorage.services.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class StripedTokenBucketsTest {
+
+    private final SteppingClock clock = new SteppingClock();
+    private final StripedTokenBuckets buckets = new StripedTokenBuckets(1024, 3, Duration.ofSeconds(2), clock);
+
+    @Test
+    void fullBucketAllowsItsCapacityAtOnce() {
+        Assertions.assertTrue(buckets.tryAcquire("a"));
+        Assertions.assertTrue(buckets.tryAcquire("a"));
+        Assertions.assertTrue(buckets.tryAcquire("a"));
+        Assertions.assertFalse(buckets.tryAcquire("a"));
+    }
+
+    @Test
+    void oneTokenComesBackEveryRefillPeriod() {
+        for (int i = 0; i < 3; i++) {
+            buckets.tryAcquire("a");
+        }
+
+        clock.advance(Duration.ofMillis(1_999));
+        Assertions.assertFalse(buckets.tryAcquire("a"));
+
+        clock.advance(Duration.ofMillis(1));
+        Assertions.assertTrue(buckets.tryAcquire("a"));
+        Assertions.assertFalse(buckets.tryAcquire("a"));
+    }
+
+    @Test
+    void idleBucketRefillsOnlyUpToItsCapacity() {
+        buckets.tryAcquire("a");
+        clock.advance(Duration.ofHours(1));
+
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertTrue(buckets.tryAcquire("a"));
+        }
+        Assertions.assertFalse(buckets.tryAcquire("a"));
+    }
+
+    @Test
+    void keysOnOtherStripesDontShareTheirBucket() {
+        final StripedTokenBuckets single = new StripedTokenBuckets(2, 1, Duration.ofSeconds(2), clock);
+        final Object first = 0;
+        final Object second = 1;
+
+        Assertions.assertTrue(single.tryAcquire(first));
+        Assertions.assertFalse(single.tryAcquire(first));
+        Assertions.assertTrue(single.tryAcquire(second));
+    }
+
+    private static class SteppingClock extends Clock {
+
+        private Instant now = Instant.parse("2020-01-01T00:00:00Z");
+
+        void advance(final Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(final ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package aug.bueno.cloudstorage.util;
 
+import aug.bueno.cloudstorage.services.UserService;
 import org.junit.jupiter.api.Assertions;
 import org.openqa.selenium.*;
 import org.openqa.selenium.support.ui.ExpectedConditions;
@@ -7,6 +8,16 @@ import org.openqa.selenium.support.ui.WebDriverWait;
 
 public class AccessAndRegisterUtils {
 
+    public static final String TEST_PASSWORD = "testPassword";
+
+    /**
+     * Signs up a user straight through the service, for the tests that don't drive the browser. Returns its userID.
+     */
+    public static int createUser(final UserService userService, final String userName) {
+        userService.createUser(userName, TEST_PASSWORD, "Name", "World").orElseThrow();
+        return userService.findUserByUserName(userName).orElseThrow().getUserID();
+    }
+
     public static void loginUser(final WebDriver driver, final int port, final String password, final String userName) {
 
         driver.get("http://localhost:" + port + "/login");
@@ -0,0 +1,31 @@
+package aug.bueno.cloudstorage.util;
+
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/*
+ * Spring Boot setup shared by the service and controller tests: they all run against one cached application context,
+ * so a setting a test relies on goes here rather than on the test class.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@SpringBootTest(properties = {
+        "atlas.storage.chunk-size=16KB",
+        "atlas.upload.max-part-size=40KB",
+        "atlas.quota.max-bytes-per-user=1MB",
+        "atlas.security.login-admission.username.capacity=3",
+        "atlas.security.login-admission.username.refill-period=1s",
+        "atlas.security.credential-migration.batch-size=7",
+        "atlas.security.credential-migration.max-rows-per-second=2000",
+        "atlas.home.page-size=2"
+})
+@AutoConfigureMockMvc
+public @interface AtlasIntegrationTest {
+}
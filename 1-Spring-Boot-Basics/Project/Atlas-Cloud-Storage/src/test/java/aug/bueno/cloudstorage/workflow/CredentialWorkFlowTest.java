@@ -110,7 +110,9 @@ public class CredentialWorkFlowTest {
         userNameInputField.clear();
         userNameInputField.sendKeys(newUserName);
 
+        // Saving is enabled once the password is revealed into the form
         WebElement credentialForm = this.driver.findElement(By.id("credentialSubmit"));
+        this.webDriverWait.until(webDriver -> credentialForm.isEnabled());
         ((JavascriptExecutor) driver).executeScript("arguments[0].click();", credentialForm);
 
 